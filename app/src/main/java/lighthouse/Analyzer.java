@@ -0,0 +1,268 @@
+package lighthouse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import lighthouse.util.TermCounts;
+
+/**
+ * The Analyzer class turns text into terms, and is shared by document tokenization and query parsing
+ * so that both produce the same terms. Text is split on whitespace, every token is downcased and
+ * stripped of (most) symbols, and empty tokens and stopwords are dropped.
+ *
+ * <p>Text is scanned one character at a time into a reusable buffer, and terms are counted and checked
+ * against the stoplist straight from that buffer, so no String is created for a token unless it is a new
+ * term. Analyzer instances hold no per-call state and can be shared between threads; a Counter must
+ * only be used by one thread.</p>
+ */
+public class Analyzer {
+    /** Initial size of the buffer a token is normalized into */
+    public static final int INITIAL_BUFFER_SIZE = 64;
+
+    private final TermCounts stopwords;
+
+    /**
+     * Constructs an Analyzer that drops the words in stoplist
+     * @param stoplist words that are never turned into terms
+     */
+    public Analyzer(Set<String> stoplist) {
+        stopwords = new TermCounts();
+        for (String stopword : stoplist) {
+            stopwords.increment(stopword);
+        }
+    }
+
+    /**
+     * Analyzes text and counts the occurrences of each of its terms
+     * @param text text to be analyzed
+     * @return counts of every term in text
+     */
+    public TermCounts analyze(CharSequence text) {
+        Counter counter = newCounter();
+        counter.append(text);
+        return counter.finish();
+    }
+
+    /**
+     * Analyzes text into its terms
+     * @param text text to be analyzed
+     * @return terms of text in order of occurrence, including repeated terms
+     */
+    public List<String> terms(CharSequence text) {
+        List<String> terms = new ArrayList<>();
+        TokenScanner scanner = new TokenScanner() {
+            @Override
+            void accept(char[] term, int length) {
+                terms.add(new String(term, 0, length));
+            }
+        };
+        for (int i = 0; i < text.length(); i++) {
+            scanner.append(text.charAt(i));
+        }
+        scanner.endToken();
+        return terms;
+    }
+
+    /**
+     * Creates a Counter that analyzes text passed to it piece by piece
+     * @return new Counter with no terms counted
+     */
+    public Counter newCounter() {
+        return new Counter(false);
+    }
+
+    /**
+     * Creates a Counter that analyzes text passed to it piece by piece, optionally recording the
+     * position of every term. Stopwords do not take up a position, so the terms of "keeper of the
+     * lighthouse" are at consecutive positions.
+     * @param recordPositions true if the position of every term is to be recorded
+     * @return new Counter with no terms counted
+     */
+    public Counter newCounter(boolean recordPositions) {
+        return new Counter(recordPositions);
+    }
+
+    /**
+     * Checks whether a character separates tokens; matches the regular expression \s
+     * @param c character to be checked
+     * @return true if c is a whitespace character, false otherwise
+     */
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Checks whether a character is removed from tokens
+     * @param c character to be checked
+     * @return true if c is removed, false otherwise
+     */
+    private static boolean isStripped(char c) {
+        switch (c) {
+            case '!':
+            case '(':
+            case ')':
+            case '_':
+            case ',':
+            case '.':
+            case '?':
+            case '\'':
+            case ':':
+            case '’':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Checks whether a character can be downcased on its own. Capital sigma depends on the characters
+     * around it, dotted capital I downcases to two characters, and surrogates only make sense in pairs;
+     * tokens containing them are downcased as a whole with String.toLowerCase.
+     * @param c character to be checked
+     * @return true if Character.toLowerCase gives the same result as String.toLowerCase, false otherwise
+     */
+    private static boolean isSimpleCase(char c) {
+        return c != '\u03A3' && c != '\u0130' && !Character.isSurrogate(c);
+    }
+
+    /**
+     * TokenScanner receives text one character at a time and normalizes each token into a buffer it
+     * reuses. The raw characters of the token are kept as well, for tokens that have to be downcased whole.
+     */
+    private abstract class TokenScanner {
+        private char[] buffer = new char[INITIAL_BUFFER_SIZE];
+        private int length;
+        private char[] raw = new char[INITIAL_BUFFER_SIZE];
+        private int rawLength;
+        private boolean simple = true;
+
+        /**
+         * Receives a normalized term that is neither empty nor a stopword
+         * @param term buffer holding the term
+         * @param termLength number of chars of the term
+         */
+        abstract void accept(char[] term, int termLength);
+
+        /**
+         * Scans the next character of the text
+         * @param c next character
+         */
+        final void append(char c) {
+            if (isWhitespace(c)) {
+                endToken();
+                return;
+            }
+
+            if (rawLength == raw.length) {
+                raw = Arrays.copyOf(raw, raw.length * 2);
+            }
+            raw[rawLength++] = c;
+            if (simple && isSimpleCase(c)) {
+                if (!isStripped(c)) {
+                    appendNormalized(Character.toLowerCase(c));
+                }
+            } else {
+                simple = false;
+            }
+        }
+
+        /**
+         * Finishes the current token, passing it on if it is a term
+         */
+        final void endToken() {
+            if (rawLength == 0) {
+                return;
+            }
+            if (!simple) {
+                normalizeWhole(new String(raw, 0, rawLength));
+            }
+            if (length > 0 && !stopwords.contains(buffer, length)) {
+                accept(buffer, length);
+            }
+            length = 0;
+            rawLength = 0;
+            simple = true;
+        }
+
+        /**
+         * Normalizes a token that cannot be downcased one character at a time
+         * @param token token to be normalized
+         */
+        private void normalizeWhole(String token) {
+            String lowered = token.toLowerCase(Locale.ROOT);
+            length = 0;
+            for (int i = 0; i < lowered.length(); i++) {
+                char c = lowered.charAt(i);
+                if (!isStripped(c)) {
+                    appendNormalized(c);
+                }
+            }
+        }
+
+        /**
+         * Appends a character to the normalized token in buffer, growing buffer if needed
+         * @param c character to be appended
+         */
+        private void appendNormalized(char c) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            buffer[length++] = c;
+        }
+    }
+
+    /**
+     * Counter analyzes text that arrives piece by piece, such as text streamed out of a document,
+     * and counts its terms. A token split across two pieces is counted once.
+     */
+    public class Counter extends TokenScanner {
+        private final TermCounts counts;
+
+        /**
+         * Constructs a Counter with no terms counted
+         * @param recordPositions true if the position of every term is to be recorded
+         */
+        private Counter(boolean recordPositions) {
+            counts = new TermCounts(recordPositions);
+        }
+
+        /**
+         * Counts a term
+         * @param term buffer holding the term
+         * @param termLength number of chars of the term
+         */
+        @Override
+        void accept(char[] term, int termLength) {
+            counts.increment(term, termLength);
+        }
+
+        /**
+         * Analyzes the next piece of text
+         * @param text next piece of text
+         */
+        public void append(CharSequence text) {
+            for (int i = 0; i < text.length(); i++) {
+                append(text.charAt(i));
+            }
+        }
+
+        /**
+         * Separates the text analyzed so far from the text that follows, as whitespace would
+         */
+        public void separate() {
+            endToken();
+        }
+
+        /**
+         * Finishes the text and obtains the counts of its terms
+         * @return counts of every term in the text
+         */
+        public TermCounts finish() {
+            endToken();
+            return counts;
+        }
+    }
+}
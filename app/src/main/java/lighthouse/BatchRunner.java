@@ -0,0 +1,283 @@
+package lighthouse;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lighthouse.util.EnumProperty;
+
+/**
+ * The BatchRunner class runs a list of queries against one shared SearchIndex on a pool of threads,
+ * writes the ranked results of every query, and reports the throughput and latency of the run.
+ *
+ * <p>Queries are read one per line; blank lines are skipped. A line may start with a query ID followed
+ * by a tab, otherwise its line number is used. Results are written in the order the queries were read,
+ * whatever order they finished in, so the output of two runs over the same index can be compared
+ * directly.</p>
+ */
+public class BatchRunner {
+    /** system property used to select the output format */
+    public static final String FORMAT_PROPERTY = "lighthouse.batch.format";
+    /** system property holding the number of threads queries are run on */
+    public static final String THREADS_PROPERTY = "lighthouse.batch.threads";
+    /** system property holding the number of documents returned for each query */
+    public static final String K_PROPERTY = "lighthouse.batch.k";
+    /** default filepath of the results, without the extension of the format */
+    public static final String OUTPUT_PATH = "results";
+    /** character separating the query ID from the query, and the columns of TSV results */
+    public static final char SEPARATOR = '\t';
+
+    /**
+     * Formats the results can be written in
+     */
+    public enum Format {
+        /** one line per result: query ID, rank, document and score, after a header line */
+        TSV,
+        /** one JSON object per query and line, holding its ID, the query and its results */
+        JSON;
+
+        /**
+         * Obtains the file extension of this format
+         * @return file extension, without the dot
+         */
+        public String getExtension() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final SearchIndex engine;
+    private final int threads;
+    private final int k;
+    private final Format format;
+
+    /**
+     * Creates a runner for the passed engine, configured by FORMAT_PROPERTY, THREADS_PROPERTY and K_PROPERTY
+     * @param engine index to be queried
+     */
+    public BatchRunner(SearchIndex engine) {
+        this(engine, Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()),
+                Integer.getInteger(K_PROPERTY, Lighthouse.MAX_RESULTS), format());
+    }
+
+    /**
+     * Creates a runner for the passed engine
+     * @param engine index to be queried
+     * @param threads number of threads queries are run on
+     * @param k number of documents returned for each query
+     * @param format format the results are written in
+     */
+    public BatchRunner(SearchIndex engine, int threads, int k, Format format) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        this.engine = engine;
+        this.threads = threads;
+        this.k = k;
+        this.format = format;
+    }
+
+    /**
+     * Obtains the format the results are written in
+     * @return format of the results
+     */
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Reads every query, runs them all and writes their results
+     * @param queries reader of the queries, one per line
+     * @param results writer receiving the results; it is flushed but not closed
+     * @return throughput and latency of the run, which does not include reading and writing
+     * @throws IOException if the queries cannot be read or the results cannot be written
+     * @throws InterruptedException if interrupted while waiting for the queries to finish
+     */
+    public Report run(BufferedReader queries, Writer results) throws IOException, InterruptedException {
+        List<String> ids = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        int lineNumber = 0;
+        String line;
+        while ((line = queries.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            int separator = line.indexOf(SEPARATOR);
+            ids.add(separator < 0 ? Integer.toString(lineNumber) : line.substring(0, separator));
+            texts.add(separator < 0 ? line : line.substring(separator + 1));
+        }
+
+        // every thread takes the next query until there are none left
+        int count = texts.size();
+        List<List<Entry<String, Double>>> rankings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rankings.add(null);
+        }
+        long[] latencies = new long[count];
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                workers.add(executor.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+                        long queryStart = System.nanoTime();
+                        rankings.set(i, engine.query(texts.get(i), k));
+                        latencies[i] = System.nanoTime() - queryStart;
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("query failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (format == Format.TSV) {
+            results.write(String.join(String.valueOf(SEPARATOR), "query", "rank", "document", "score") + "\n");
+        }
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            out.setLength(0);
+            appendResults(out, ids.get(i), texts.get(i), rankings.get(i));
+            results.write(out.toString());
+        }
+        results.flush();
+        return new Report(latencies, elapsed, threads);
+    }
+
+    /**
+     * Appends the results of one query in the configured format
+     * @param out buffer receiving the formatted results
+     * @param id ID of the query
+     * @param query query string
+     * @param ranking documents and weights, most relevant first
+     */
+    private void appendResults(StringBuilder out, String id, String query, List<Entry<String, Double>> ranking) {
+        if (format == Format.JSON) {
+            out.append("{\"id\":");
+            QueryServer.appendString(out, id);
+            out.append(",\"query\":");
+            QueryServer.appendString(out, query);
+            out.append(',');
+            QueryServer.appendResults(out, ranking);
+            out.append("}\n");
+            return;
+        }
+        for (int rank = 0; rank < ranking.size(); rank++) {
+            out.append(id).append(SEPARATOR).append(rank + 1).append(SEPARATOR)
+                    .append(ranking.get(rank).getKey()).append(SEPARATOR).append(ranking.get(rank).getValue())
+                    .append('\n');
+        }
+    }
+
+    /**
+     * Reads the output format from the FORMAT_PROPERTY system property
+     * @return configured output format, TSV by default
+     * @throws IllegalArgumentException if the property names no output format
+     */
+    private static Format format() {
+        return EnumProperty.get(FORMAT_PROPERTY, Format.TSV);
+    }
+
+    /**
+     * Report holds the throughput and latency distribution of a batch run
+     */
+    public static class Report {
+        private final long[] latencies;
+        private final long elapsedNanos;
+        private final int threads;
+
+        /**
+         * Constructs a Report
+         * @param latencies time taken by each query, in nanoseconds; sorted by this constructor
+         * @param elapsedNanos wall-clock time taken by the whole run, in nanoseconds
+         * @param threads number of threads queries were run on
+         */
+        public Report(long[] latencies, long elapsedNanos, int threads) {
+            this.latencies = latencies;
+            this.elapsedNanos = elapsedNanos;
+            this.threads = threads;
+            Arrays.sort(latencies);
+        }
+
+        /**
+         * Obtains the number of queries run
+         * @return number of queries run
+         */
+        public int getQueryCount() {
+            return latencies.length;
+        }
+
+        /**
+         * Obtains the number of queries completed per second of wall-clock time
+         * @return queries per second, or 0 if no query was run
+         */
+        public double getQueriesPerSecond() {
+            return elapsedNanos == 0 ? 0 : latencies.length * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Obtains a latency percentile, using the nearest-rank method
+         * @param percentile percentile between 0 and 100
+         * @return latency in milliseconds that the passed percentage of queries did not exceed,
+         *      or 0 if no query was run
+         */
+        public double getLatencyMillis(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("percentile must be between 0 and 100");
+            }
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * latencies.length);
+            return latencies[Math.max(rank - 1, 0)] / 1e6;
+        }
+
+        /**
+         * Obtains the mean latency of the queries
+         * @return mean latency in milliseconds, or 0 if no query was run
+         */
+        public double getMeanLatencyMillis() {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            long total = 0;
+            for (long latency : latencies) {
+                total += latency;
+            }
+            return total / 1e6 / latencies.length;
+        }
+
+        /**
+         * Summarizes the report in two lines: throughput, then latency
+         * @return summary of the report
+         */
+        @Override
+        public String toString() {
+            return String.format("%d queries in %.3f s on %d threads: %.1f queries/s%n"
+                    + "latency (ms): mean %.3f, p50 %.3f, p95 %.3f, p99 %.3f, max %.3f",
+                    latencies.length, elapsedNanos / 1e9, threads, getQueriesPerSecond(), getMeanLatencyMillis(),
+                    getLatencyMillis(50), getLatencyMillis(95), getLatencyMillis(99), getLatencyMillis(100));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package lighthouse;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * CorpusChanges describes what an incremental tokenization run changed in the token directory,
+ * so that a QueryEngine built from the previous state can be updated instead of rebuilt. The changed
+ * corpus files are listed as well, for an index that tokenizes them itself instead of loading token files.
+ */
+public class CorpusChanges {
+    private final List<String> updatedDocuments;
+    private final List<File> updatedFiles;
+    private final Map<String, Set<String>> previousTerms;
+    private final long previousFingerprint;
+    private final long fingerprint;
+
+    /**
+     * Constructs CorpusChanges from the results of an incremental tokenization run
+     * @param updatedDocuments IDs of the new or re-tokenized documents whose token files must be loaded
+     * @param previousTerms terms that each modified or removed document contained before the run
+     * @param previousFingerprint fingerprint of the corpus before the run
+     * @param fingerprint fingerprint of the corpus after the run
+     */
+    public CorpusChanges(List<String> updatedDocuments, Map<String, Set<String>> previousTerms,
+            long previousFingerprint, long fingerprint) {
+        this(updatedDocuments, List.of(), previousTerms, previousFingerprint, fingerprint);
+    }
+
+    /**
+     * Constructs CorpusChanges from a run that found the changed corpus files
+     * @param updatedDocuments IDs of the new or modified documents
+     * @param updatedFiles corpus files of the new or modified documents, in the same order
+     * @param previousTerms terms that each modified or removed document contained before the run, or null
+     *     for the documents whose terms are unknown
+     * @param previousFingerprint fingerprint of the corpus before the run
+     * @param fingerprint fingerprint of the corpus after the run
+     */
+    public CorpusChanges(List<String> updatedDocuments, List<File> updatedFiles,
+            Map<String, Set<String>> previousTerms, long previousFingerprint, long fingerprint) {
+        this.updatedDocuments = updatedDocuments;
+        this.updatedFiles = updatedFiles;
+        this.previousTerms = previousTerms;
+        this.previousFingerprint = previousFingerprint;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Obtains the IDs of new or re-tokenized documents
+     * @return IDs of the documents whose token files must be loaded
+     */
+    public List<String> getUpdatedDocuments() {
+        return updatedDocuments;
+    }
+
+    /**
+     * Obtains the corpus files of new or modified documents
+     * @return corpus files in the order of getUpdatedDocuments, or an empty list if they were not recorded
+     */
+    public List<File> getUpdatedFiles() {
+        return updatedFiles;
+    }
+
+    /**
+     * Obtains the terms each modified or removed document contained before the run.
+     * The postings of these documents have to be dropped from the index.
+     * @return map of document IDs to their previous terms, which are null if unknown
+     */
+    public Map<String, Set<String>> getPreviousTerms() {
+        return previousTerms;
+    }
+
+    /**
+     * Obtains the fingerprint of the corpus before the run
+     * @return fingerprint of the corpus before the run
+     */
+    public long getPreviousFingerprint() {
+        return previousFingerprint;
+    }
+
+    /**
+     * Obtains the fingerprint of the corpus after the run
+     * @return fingerprint of the corpus after the run
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Checks whether the run changed anything
+     * @return true if no document was added, modified or removed, false otherwise
+     */
+    public boolean isEmpty() {
+        return updatedDocuments.isEmpty() && previousTerms.isEmpty();
+    }
+}
@@ -0,0 +1,211 @@
+package lighthouse;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+
+/**
+ * CorpusManifest records the size, modification time and content hash of every
+ * corpus file that was tokenized, so that later runs only re-tokenize what changed.
+ * The manifest is stored in csv format: filename, size, mtime, hash.
+ */
+public class CorpusManifest {
+    /** Algorithm used to hash the contents of corpus files */
+    public static final String HASH_ALGORITHM = "SHA-256";
+
+    private final TreeMap<String, Entry> entries;
+
+    /**
+     * Constructs an empty CorpusManifest
+     */
+    public CorpusManifest() {
+        entries = new TreeMap<>();
+    }
+
+    /**
+     * Loads the manifest stored at manifestPath. A missing manifest is treated as empty.
+     * @param manifestPath filepath of the manifest
+     * @return manifest read from manifestPath
+     */
+    public static CorpusManifest load(String manifestPath) {
+        CorpusManifest manifest = new CorpusManifest();
+        File manifestFile = new File(manifestPath);
+        if (!manifestFile.exists()) {
+            return manifest;
+        }
+
+        try (CSVParser parser = CSVParser.parse(manifestFile, StandardCharsets.UTF_8, CSVFormat.DEFAULT)) {
+            for (CSVRecord record : parser) {
+                manifest.put(new Entry(record.get(0), Long.parseLong(record.get(1)), Long.parseLong(record.get(2)),
+                        record.get(3)));
+            }
+        } catch (IOException | RuntimeException e) {
+            // an unreadable manifest only means that every file is treated as new
+            e.printStackTrace();
+            return new CorpusManifest();
+        }
+        return manifest;
+    }
+
+    /**
+     * Saves the manifest into manifestPath in csv format
+     * @param manifestPath filepath of the manifest
+     */
+    public void save(String manifestPath) {
+        try (FileWriter fileWriter = new FileWriter(manifestPath);
+                BufferedWriter writer = new BufferedWriter(fileWriter)) {
+            CSVPrinter printer = new CSVPrinter(writer, CSVFormat.DEFAULT);
+            for (Entry entry : entries.values()) {
+                printer.printRecord(entry.getName(), entry.getSize(), entry.getModified(), entry.getHash());
+            }
+            printer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Obtains the entry recorded for a corpus file
+     * @param name name of the corpus file
+     * @return entry for the file, or null if the file is not in the manifest
+     */
+    public Entry get(String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * Records an entry, replacing any previous entry for the same file
+     * @param entry entry to be recorded
+     */
+    public void put(Entry entry) {
+        entries.put(entry.getName(), entry);
+    }
+
+    /**
+     * Obtains the names of all files recorded in the manifest
+     * @return names of all recorded files, in sorted order
+     */
+    public Set<String> names() {
+        return entries.keySet();
+    }
+
+    /**
+     * Computes a fingerprint of the corpus contents described by this manifest.
+     * Two manifests listing the same files with the same hashes have the same fingerprint,
+     * regardless of modification times.
+     * @return fingerprint of the corpus contents
+     */
+    public long fingerprint() {
+        CRC32 crc = new CRC32();
+        for (Entry entry : entries.values()) {
+            crc.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+            crc.update(0);
+            crc.update(entry.getHash().getBytes(StandardCharsets.UTF_8));
+            crc.update('\n');
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Entry describes a single corpus file as it was when it was last tokenized.
+     */
+    public static class Entry {
+        private final String name;
+        private final long size;
+        private final long modified;
+        private final String hash;
+
+        /**
+         * Constructs an Entry with the passed file attributes
+         * @param name name of the corpus file
+         * @param size size of the file in bytes
+         * @param modified last modification time of the file in milliseconds
+         * @param hash hex encoded content hash of the file
+         */
+        public Entry(String name, long size, long modified, String hash) {
+            this.name = name;
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+
+        /**
+         * Creates an Entry describing the current state of file, hashing its contents
+         * @param file corpus file to be described
+         * @return entry for file
+         * @throws IOException if the file cannot be read
+         */
+        public static Entry of(File file) throws IOException {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance(HASH_ALGORITHM);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+
+            try (InputStream in = new DigestInputStream(Files.newInputStream(file.toPath()), digest)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            return new Entry(file.getName(), file.length(), file.lastModified(),
+                    HexFormat.of().formatHex(digest.digest()));
+        }
+
+        /**
+         * Checks whether file still has the size and modification time recorded in this entry
+         * @param file corpus file to be checked
+         * @return true if size and modification time are unchanged, false otherwise
+         */
+        public boolean matches(File file) {
+            return file.length() == size && file.lastModified() == modified;
+        }
+
+        /**
+         * Obtains the name of the corpus file
+         * @return name of the corpus file
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Obtains the size of the corpus file in bytes
+         * @return size of the corpus file in bytes
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Obtains the last modification time of the corpus file
+         * @return last modification time in milliseconds
+         */
+        public long getModified() {
+            return modified;
+        }
+
+        /**
+         * Obtains the content hash of the corpus file
+         * @return hex encoded content hash
+         */
+        public String getHash() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package lighthouse;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The CorpusStatistics class holds the statistics BM25 needs about a corpus whose documents are split
+ * over several shards: the number of documents, the sum of their lengths and the number of documents
+ * containing each term. Shards weight their postings with these rather than with their own statistics,
+ * so every document gets the weight it would get in a single index over the whole corpus.
+ *
+ * <p>Shards running in other processes send their statistics to the coordinator with writeTo, and the
+ * coordinator sends the merged statistics back to every shard the same way.</p>
+ */
+public class CorpusStatistics {
+    private final Map<String, Integer> documentFrequencies = new HashMap<>();
+    private int numDocuments;
+    private int totalDocumentLengths;
+
+    /**
+     * Adds the documents of one shard
+     * @param numDocuments number of documents in the shard
+     * @param totalDocumentLengths sum of the lengths of the documents in the shard
+     */
+    public void addDocuments(int numDocuments, int totalDocumentLengths) {
+        this.numDocuments += numDocuments;
+        this.totalDocumentLengths += totalDocumentLengths;
+    }
+
+    /**
+     * Adds the number of documents of one shard containing a term
+     * @param term indexed term
+     * @param documentFrequency number of documents in the shard containing the term
+     */
+    public void addDocumentFrequency(String term, int documentFrequency) {
+        documentFrequencies.merge(term, documentFrequency, Integer::sum);
+    }
+
+    /**
+     * Obtains the number of documents in the corpus
+     * @return number of documents
+     */
+    public int getNumDocuments() {
+        return numDocuments;
+    }
+
+    /**
+     * Obtains the sum of the lengths of all documents in the corpus
+     * @return sum of the document lengths
+     */
+    public int getTotalDocumentLengths() {
+        return totalDocumentLengths;
+    }
+
+    /**
+     * Obtains the average length of the documents in the corpus
+     * @return average document length
+     */
+    public double getAvgDocLength() {
+        return (double) totalDocumentLengths / numDocuments;
+    }
+
+    /**
+     * Obtains the number of documents in the corpus containing a term
+     * @param term indexed term
+     * @return number of documents containing the term, or 0 if no shard has it
+     */
+    public int getDocumentFrequency(String term) {
+        return documentFrequencies.getOrDefault(term, 0);
+    }
+
+    /**
+     * Obtains the number of distinct terms in the corpus
+     * @return number of distinct terms
+     */
+    public int getTermCount() {
+        return documentFrequencies.size();
+    }
+
+    /**
+     * Obtains the number of postings of the corpus, one for every term of every document
+     * @return sum of the document frequencies of all terms
+     */
+    public long getPostingCount() {
+        long postings = 0;
+        for (int documentFrequency : documentFrequencies.values()) {
+            postings += documentFrequency;
+        }
+        return postings;
+    }
+
+    /**
+     * Writes these statistics in the form read by readFrom
+     * @param out output receiving the statistics
+     * @throws IOException if the statistics cannot be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(numDocuments);
+        out.writeInt(totalDocumentLengths);
+        out.writeInt(documentFrequencies.size());
+        for (Map.Entry<String, Integer> term : documentFrequencies.entrySet()) {
+            out.writeUTF(term.getKey());
+            out.writeInt(term.getValue());
+        }
+    }
+
+    /**
+     * Reads statistics written by writeTo and adds them to these statistics
+     * @param in input holding the statistics
+     * @throws IOException if the statistics cannot be read
+     */
+    public void readFrom(DataInput in) throws IOException {
+        addDocuments(in.readInt(), in.readInt());
+        int termCount = in.readInt();
+        for (int i = 0; i < termCount; i++) {
+            addDocumentFrequency(in.readUTF(), in.readInt());
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package lighthouse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+
+import org.jsoup.Jsoup;
+import org.jsoup.helper.DataUtil;
+import org.jsoup.helper.ValidationException;
+import org.jsoup.internal.StringUtil;
+import org.jsoup.nodes.CDataNode;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import lighthouse.util.TermCounts;
+
+/**
+ * The HtmlTextExtractor class streams the visible body text of an HTML document into an Analyzer.Counter
+ * without keeping the whole DOM tree of the document. The document is parsed by jsoup's StreamParser, and
+ * every child of the body is analyzed and removed from the tree once the parser has moved past it, so
+ * memory per document is bounded by its largest top level element rather than by its size.
+ *
+ * <p>The text is the same as that of {@code Jsoup.parse(f).body().text()}: the tree is built by jsoup's own
+ * tree builder, and its text is gathered with the same rules as Element.text, which separate block elements
+ * from their neighbours and normalize whitespace outside of elements that preserve it. A child of the body is
+ * only analyzed after the parser has started a later element, when the tree builder no longer moves any
+ * nodes into or around it.</p>
+ */
+public class HtmlTextExtractor {
+    private final Analyzer.Counter counter;
+    private final StringBuilder text = new StringBuilder();
+    private boolean empty = true;
+    private boolean lastSpace;
+
+    /**
+     * Constructs an HtmlTextExtractor that passes the text of a document to counter
+     * @param counter counter receiving the body text
+     */
+    private HtmlTextExtractor(Analyzer.Counter counter) {
+        this.counter = counter;
+    }
+
+    /**
+     * Extracts the body text of an HTML file and counts its terms. The charset is detected the same
+     * way as Jsoup.parse(File) does: from a byte order mark, then from a meta element near the start of
+     * the file, and UTF-8 otherwise.
+     * @param file HTML file to be read
+     * @param analyzer analyzer turning the text into terms
+     * @return counts of every term in the body text of file
+     * @throws IOException if file cannot be read
+     */
+    public static TermCounts extract(File file, Analyzer analyzer) throws IOException {
+        return extract(file, analyzer.newCounter());
+    }
+
+    /**
+     * Extracts the body text of an HTML file into counter and finishes it, see extract(File, Analyzer)
+     * @param file HTML file to be read
+     * @param counter counter receiving the body text
+     * @return counts of every term in the body text of file
+     * @throws IOException if file cannot be read
+     */
+    public static TermCounts extract(File file, Analyzer.Counter counter) throws IOException {
+        StreamParser parser;
+        try {
+            parser = DataUtil.streamParser(file.toPath(), null, file.getAbsolutePath(), Parser.htmlParser());
+        } catch (ValidationException e) {
+            // jsoup cannot stream a file it already read to the end while looking for its charset,
+            // which only happens to files smaller than its read buffer, so those are parsed whole
+            new HtmlTextExtractor(counter).analyzeChildren(Jsoup.parse(file).body());
+            return counter.finish();
+        }
+        try (parser) {
+            new HtmlTextExtractor(counter).extract(parser);
+            return counter.finish();
+        }
+    }
+
+    /**
+     * Extracts the body text of an HTML document and passes it to counter, which is not finished
+     * @param reader reader positioned at the start of the document
+     * @param counter counter receiving the body text
+     * @throws IOException if the document cannot be read
+     */
+    public static void extract(Reader reader, Analyzer.Counter counter) throws IOException {
+        try (StreamParser parser = new StreamParser(Parser.htmlParser()).parse(reader, "")) {
+            new HtmlTextExtractor(counter).extract(parser);
+        }
+    }
+
+    /**
+     * Analyzes the children of the body as the parser completes them, and the rest once it is done
+     * @param parser parser of the document
+     * @throws IOException if the document cannot be read
+     */
+    private void extract(StreamParser parser) throws IOException {
+        Document document = parser.document();
+        try {
+            Iterator<Element> elements = parser.iterator();
+            while (elements.hasNext()) {
+                Element element = elements.next();
+                Element parent = element.parent();
+                if (parent != null && parent.nameIs("body") && parent.parent() != null
+                        && parent.parent().parent() == document) {
+                    // the nodes before a completed child of the body are final, and so are their next siblings
+                    while (parent.childNode(0) != element) {
+                        analyze(parent.childNode(0));
+                    }
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        analyzeChildren(document.body());
+    }
+
+    /**
+     * Analyzes the remaining children of the body
+     * @param body body of a completely parsed document
+     */
+    private void analyzeChildren(Element body) {
+        while (body.childNodeSize() > 0) {
+            analyze(body.childNode(0));
+        }
+    }
+
+    /**
+     * Passes the text of a child of the body to the counter and removes it from the tree
+     * @param node child of the body
+     */
+    private void analyze(Node node) {
+        NodeTraversor.traverse(new TextVisitor(), node);
+        node.remove();
+        if (text.length() > 0) {
+            empty = false;
+            lastSpace = text.charAt(text.length() - 1) == ' ';
+            counter.append(text);
+            text.setLength(0);
+        }
+    }
+
+    /**
+     * Checks whether the text passed on so far ends with a space, as Element.text does
+     * @return true if the last char of the text is a space
+     */
+    private boolean lastCharIsSpace() {
+        return text.length() > 0 ? text.charAt(text.length() - 1) == ' ' : lastSpace;
+    }
+
+    /**
+     * Checks whether any text has been passed on so far
+     * @return true if no text has been gathered yet
+     */
+    private boolean isEmpty() {
+        return empty && text.length() == 0;
+    }
+
+    /**
+     * Checks whether whitespace is preserved in the text of an element, looking at it and five of its
+     * ancestors as jsoup does
+     * @param node parent of a text node
+     * @return true if whitespace is preserved
+     */
+    private static boolean preserveWhitespace(Node node) {
+        if (node instanceof Element) {
+            Element element = (Element) node;
+            for (int i = 0; i < 6 && element != null; i++) {
+                if (element.tag().preserveWhitespace()) {
+                    return true;
+                }
+                element = element.parent();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * TextVisitor gathers the text of nodes with the rules of jsoup's Element.text
+     */
+    private class TextVisitor implements NodeVisitor {
+
+        @Override
+        public void head(Node node, int depth) {
+            if (node instanceof TextNode) {
+                TextNode textNode = (TextNode) node;
+                if (preserveWhitespace(textNode.parentNode()) || textNode instanceof CDataNode) {
+                    text.append(textNode.getWholeText());
+                } else {
+                    StringUtil.appendNormalisedWhitespace(text, textNode.getWholeText(), lastCharIsSpace());
+                }
+            } else if (node instanceof Element) {
+                Element element = (Element) node;
+                if (!isEmpty() && (element.isBlock() || element.nameIs("br")) && !lastCharIsSpace()) {
+                    text.append(' ');
+                }
+            }
+        }
+
+        @Override
+        public void tail(Node node, int depth) {
+            // block elements are separated from the text and inline elements that follow them
+            if (node instanceof Element && ((Element) node).isBlock()) {
+                Node next = node.nextSibling();
+                if ((next instanceof TextNode || next instanceof Element && !((Element) next).tag().formatAsBlock())
+                        && !lastCharIsSpace()) {
+                    text.append(' ');
+                }
+            }
+        }
+    }
+}
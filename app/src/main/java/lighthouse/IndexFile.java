@@ -0,0 +1,298 @@
+package lighthouse;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import lighthouse.util.CompressedPostingList;
+import lighthouse.util.DocumentTable;
+import lighthouse.util.OffHeapTermDictionary;
+import lighthouse.util.TDMHeader;
+import lighthouse.util.TermDictionary;
+
+/**
+ * IndexFile saves a finished QueryEngine index in a compact binary format and
+ * loads it back through a memory-mapped file, so restarts can skip tokenization.
+ *
+ * <p>The file starts with a fixed header (magic number, format version, CRC32 checksum
+ * and payload length) followed by the payload: corpus statistics and fingerprint, the
+ * document table and the term dictionary, in term order, with the postings of each term. Postings are stored in
+ * their compressed block form, along with their positions if they have any, so loading them does not
+ * re-encode anything.</p>
+ *
+ * <p>Unless the index is loaded off the heap, the encoded postings and positions of a loaded index are read
+ * straight from the mapped file, and only the terms, block headers and document table are copied onto the
+ * heap. The file must therefore not be modified in place while such an index is in use; write replaces
+ * it with a new file instead, which leaves the mapping of the old one intact.</p>
+ */
+public class IndexFile {
+    /** Magic number identifying a lighthouse index file ("LHIX") */
+    public static final int MAGIC = 0x4C484958;
+    /** Version of the binary format written by this class */
+    public static final int VERSION = 6;
+    /** Size in bytes of the fixed header preceding the payload */
+    public static final int HEADER_SIZE = 24;
+
+    /**
+     * Private default constructor for creation of an IndexFile object
+     */
+    private IndexFile() {
+    }
+
+    /**
+     * Writes the index held by engine to indexPath. The file is written next to indexPath
+     * first and then moved into place, so a crash never leaves a half-written index behind.
+     * @param engine QueryEngine whose index is saved
+     * @param indexPath filepath of the index file
+     * @throws IOException if the index file cannot be written
+     */
+    public static void write(QueryEngine engine, Path indexPath) throws IOException {
+        Path tempPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        DocumentTable documents = engine.getDocuments();
+        TermDictionary dictionary = engine.getDictionary();
+
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // the payload is written after the header, which is filled in once the checksum is known
+            channel.position(HEADER_SIZE);
+            CRC32 checksum = new CRC32();
+            CheckedOutputStream checkedStream = new CheckedOutputStream(Channels.newOutputStream(channel), checksum);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checkedStream));
+
+            // corpus statistics
+            out.writeInt(engine.getNumDocuments());
+            out.writeInt(engine.getTotalDocumentLengths());
+            out.writeLong(engine.getCorpusFingerprint());
+
+            // document table, indexed by document ID; removed documents are written without a name
+            out.writeInt(documents.size());
+            for (int id = 0; id < documents.size(); id++) {
+                writeString(out, documents.getName(id));
+                out.writeInt(documents.getLength(id));
+            }
+
+            // term dictionary and postings
+            out.writeInt(dictionary.size());
+            for (TDMHeader header : dictionary.getHeaders()) {
+                CompressedPostingList postings = header.getCompressedPostings();
+                writeString(out, header.getTerm());
+                out.writeDouble(header.getMaxWeight());
+                out.writeInt(postings.size());
+                out.writeInt(postings.getBlockCount());
+                for (int block = 0; block < postings.getBlockCount(); block++) {
+                    out.writeInt(postings.getBlockLastDocument(block));
+                    out.writeInt(postings.getBlockOffset(block));
+                }
+                ByteBuffer data = postings.getData();
+                out.writeInt(data.remaining());
+                writeBytes(out, data);
+
+                // positions, if any; a length of -1 marks postings without them
+                if (!postings.hasPositions()) {
+                    out.writeInt(-1);
+                    continue;
+                }
+                ByteBuffer positionData = postings.getPositionData();
+                out.writeInt(positionData.remaining());
+                for (int block = 0; block < postings.getBlockCount(); block++) {
+                    out.writeInt(postings.getBlockPositionOffset(block));
+                }
+                writeBytes(out, positionData);
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putLong(checksum.getValue());
+            header.putLong(channel.size() - HEADER_SIZE);
+            header.flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+
+        Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads the index stored at indexPath by memory-mapping the file. The encoded postings are served from
+     * the mapping, so they are only paged in when queries read them. If QueryEngine.OFF_HEAP_PROPERTY
+     * is set, the terms and postings are copied out of the heap one term at a time instead, see
+     * OffHeapTermDictionary.
+     * @param indexPath filepath of the index file
+     * @return QueryEngine serving the stored index
+     * @throws IOException if the file cannot be read, was written by another format version, or is corrupt
+     */
+    public static QueryEngine read(Path indexPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Index file is truncated");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            // validate the header before trusting any of the payload
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a lighthouse index file");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Index file version " + version + " does not match expected version " + VERSION);
+            }
+            long expectedChecksum = buffer.getLong();
+            long payloadLength = buffer.getLong();
+            if (payloadLength != channel.size() - HEADER_SIZE) {
+                throw new IOException("Index file is truncated");
+            }
+
+            CRC32 checksum = new CRC32();
+            checksum.update(buffer.slice());
+            if (checksum.getValue() != expectedChecksum) {
+                throw new IOException("Index file checksum does not match");
+            }
+
+            try {
+                return readPayload(buffer);
+            } catch (RuntimeException e) {
+                throw new IOException("Index file payload is malformed", e);
+            }
+        }
+    }
+
+    /**
+     * Decodes the payload of a validated index file into a QueryEngine
+     * @param buffer mapped index file, positioned at the start of the payload
+     * @return QueryEngine serving the stored index
+     */
+    private static QueryEngine readPayload(ByteBuffer buffer) {
+        int numDocuments = buffer.getInt();
+        int totalDocumentLengths = buffer.getInt();
+        long corpusFingerprint = buffer.getLong();
+
+        int documentCount = buffer.getInt();
+        DocumentTable documents = new DocumentTable();
+        for (int id = 0; id < documentCount; id++) {
+            String name = readString(buffer);
+            documents.add(name, buffer.getInt());
+            if (name == null) {
+                documents.remove(id);
+            }
+        }
+
+        // terms are stored in order, so each of them can be copied out of the heap as soon as it is read
+        int termCount = buffer.getInt();
+        boolean offHeap = Boolean.getBoolean(QueryEngine.OFF_HEAP_PROPERTY);
+        List<TDMHeader> headers = new ArrayList<>(offHeap ? 0 : termCount);
+        OffHeapTermDictionary.Builder offHeapHeaders = offHeap ? new OffHeapTermDictionary.Builder(termCount) : null;
+        for (int t = 0; t < termCount; t++) {
+            String term = readString(buffer);
+            double maxWeight = buffer.getDouble();
+            int len = buffer.getInt();
+            int blockCount = buffer.getInt();
+            int[] blockLastDocuments = new int[blockCount];
+            int[] blockOffsets = new int[blockCount];
+            for (int block = 0; block < blockCount; block++) {
+                blockLastDocuments[block] = buffer.getInt();
+                blockOffsets[block] = buffer.getInt();
+            }
+            ByteBuffer data = readSlice(buffer, buffer.getInt());
+
+            int positionLength = buffer.getInt();
+            IntBuffer blockPositionOffsets = null;
+            ByteBuffer positionData = null;
+            if (positionLength >= 0) {
+                int[] positionOffsets = new int[blockCount];
+                for (int block = 0; block < blockCount; block++) {
+                    positionOffsets[block] = buffer.getInt();
+                }
+                blockPositionOffsets = IntBuffer.wrap(positionOffsets);
+                positionData = readSlice(buffer, positionLength);
+            }
+
+            TDMHeader header = new TDMHeader(term, new CompressedPostingList(len, IntBuffer.wrap(blockLastDocuments),
+                    IntBuffer.wrap(blockOffsets), data, blockPositionOffsets, positionData));
+            header.setMaxWeight(maxWeight);
+            if (offHeap) {
+                offHeapHeaders.add(header);
+            } else {
+                headers.add(header);
+            }
+        }
+
+        TermDictionary dictionary = offHeap ? offHeapHeaders.build() : new TermDictionary(headers);
+        QueryEngine engine = new QueryEngine(dictionary, documents, numDocuments, totalDocumentLengths);
+        engine.setCorpusFingerprint(corpusFingerprint);
+        return engine;
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string; null is written as length -1
+     * @param out stream the string is written to
+     * @param value string to be written, may be null
+     * @throws IOException if the stream cannot be written
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes the remaining bytes of a buffer, which may lie outside of the heap
+     * @param out stream the bytes are written to
+     * @param bytes buffer holding the bytes to be written
+     * @throws IOException if the stream cannot be written
+     */
+    private static void writeBytes(DataOutputStream out, ByteBuffer bytes) throws IOException {
+        byte[] chunk = new byte[Math.min(bytes.remaining(), 8192)];
+        while (bytes.hasRemaining()) {
+            int length = Math.min(bytes.remaining(), chunk.length);
+            bytes.get(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+    }
+
+    /**
+     * Reads bytes as a view of the buffer instead of copying them
+     * @param buffer buffer positioned at the start of the bytes, which is moved past them
+     * @param length number of bytes to be read
+     * @return read-only view of the bytes, from index 0 to its limit
+     */
+    private static ByteBuffer readSlice(ByteBuffer buffer, int length) {
+        ByteBuffer slice = buffer.slice(buffer.position(), length).asReadOnlyBuffer();
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string
+     * @param buffer buffer positioned at the start of the string
+     * @return decoded string, or null if it was written as null
+     */
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,154 @@
+package lighthouse;
+
+/**
+ * The IndexingMetrics class records how long the most recent run of every indexing phase took and how
+ * much it processed. There is one instance per process, shared by the Tokenizer and every QueryEngine,
+ * and it is exposed over JMX by MetricsReporter.
+ */
+public class IndexingMetrics implements IndexingMetricsMBean {
+    /**
+     * Phases of building an index
+     */
+    public enum Phase {
+        /** extracting and counting the terms of corpus files into token files, or straight into the index */
+        TOKENIZE,
+        /** reading token files into the term document matrix, or reading a saved index */
+        LOAD,
+        /** compressing the postings and computing the weight bounds of every term */
+        WEIGHT
+    }
+
+    private static final IndexingMetrics INSTANCE = new IndexingMetrics();
+
+    private final long[] nanos = new long[Phase.values().length];
+    private final long[] documents = new long[Phase.values().length];
+    private final long[] bytes = new long[Phase.values().length];
+
+    /**
+     * Constructs an IndexingMetrics with no phase recorded
+     */
+    private IndexingMetrics() {
+    }
+
+    /**
+     * Obtains the metrics of this process
+     * @return shared IndexingMetrics
+     */
+    public static IndexingMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records a run of a phase, replacing the previous one
+     * @param phase phase that was run
+     * @param elapsedNanos duration of the run in nanoseconds
+     * @param documentCount number of documents processed
+     * @param byteCount number of bytes read, or 0 if the phase reads nothing
+     */
+    public synchronized void record(Phase phase, long elapsedNanos, long documentCount, long byteCount) {
+        nanos[phase.ordinal()] = elapsedNanos;
+        documents[phase.ordinal()] = documentCount;
+        bytes[phase.ordinal()] = byteCount;
+    }
+
+    /**
+     * Obtains the duration of the most recent run of a phase
+     * @param phase phase of indexing
+     * @return duration in milliseconds, or 0 if the phase has not run
+     */
+    public synchronized double getMillis(Phase phase) {
+        return nanos[phase.ordinal()] / 1e6;
+    }
+
+    /**
+     * Obtains the number of documents processed per second by the most recent run of a phase
+     * @param phase phase of indexing
+     * @return documents per second, or 0 if the phase has not run
+     */
+    public synchronized double getDocumentsPerSecond(Phase phase) {
+        long elapsed = nanos[phase.ordinal()];
+        return elapsed == 0 ? 0 : documents[phase.ordinal()] * 1e9 / elapsed;
+    }
+
+    /**
+     * Obtains the number of bytes read per second by the most recent run of a phase
+     * @param phase phase of indexing
+     * @return bytes per second, or 0 if the phase has not run
+     */
+    public synchronized double getBytesPerSecond(Phase phase) {
+        long elapsed = nanos[phase.ordinal()];
+        return elapsed == 0 ? 0 : bytes[phase.ordinal()] * 1e9 / elapsed;
+    }
+
+    /**
+     * Obtains the duration of the most recent tokenization run
+     * @return duration in milliseconds
+     */
+    @Override
+    public double getTokenizeMillis() {
+        return getMillis(Phase.TOKENIZE);
+    }
+
+    /**
+     * Obtains the throughput of the most recent tokenization run
+     * @return documents tokenized per second
+     */
+    @Override
+    public double getTokenizeDocumentsPerSecond() {
+        return getDocumentsPerSecond(Phase.TOKENIZE);
+    }
+
+    /**
+     * Obtains the throughput of the most recent tokenization run
+     * @return bytes of corpus files read per second
+     */
+    @Override
+    public double getTokenizeBytesPerSecond() {
+        return getBytesPerSecond(Phase.TOKENIZE);
+    }
+
+    /**
+     * Obtains the duration of the most recent index load, from token files or from a saved index
+     * @return duration in milliseconds
+     */
+    @Override
+    public double getLoadMillis() {
+        return getMillis(Phase.LOAD);
+    }
+
+    /**
+     * Obtains the throughput of the most recent index load
+     * @return documents loaded per second
+     */
+    @Override
+    public double getLoadDocumentsPerSecond() {
+        return getDocumentsPerSecond(Phase.LOAD);
+    }
+
+    /**
+     * Obtains the throughput of the most recent index load
+     * @return bytes of token files or saved index read per second
+     */
+    @Override
+    public double getLoadBytesPerSecond() {
+        return getBytesPerSecond(Phase.LOAD);
+    }
+
+    /**
+     * Obtains the duration of the most recent weight calculation
+     * @return duration in milliseconds
+     */
+    @Override
+    public double getWeightMillis() {
+        return getMillis(Phase.WEIGHT);
+    }
+
+    /**
+     * Obtains the throughput of the most recent weight calculation
+     * @return documents of the index per second
+     */
+    @Override
+    public double getWeightDocumentsPerSecond() {
+        return getDocumentsPerSecond(Phase.WEIGHT);
+    }
+}
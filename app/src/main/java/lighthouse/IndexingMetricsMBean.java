@@ -0,0 +1,54 @@
+package lighthouse;
+
+/**
+ * Management interface of IndexingMetrics, exposing the most recent run of every indexing phase over JMX
+ */
+public interface IndexingMetricsMBean {
+    /**
+     * Obtains the duration of the most recent tokenization run
+     * @return duration in milliseconds
+     */
+    double getTokenizeMillis();
+
+    /**
+     * Obtains the throughput of the most recent tokenization run
+     * @return documents tokenized per second
+     */
+    double getTokenizeDocumentsPerSecond();
+
+    /**
+     * Obtains the throughput of the most recent tokenization run
+     * @return bytes of corpus files read per second
+     */
+    double getTokenizeBytesPerSecond();
+
+    /**
+     * Obtains the duration of the most recent index load, from token files or from a saved index
+     * @return duration in milliseconds
+     */
+    double getLoadMillis();
+
+    /**
+     * Obtains the throughput of the most recent index load
+     * @return documents loaded per second
+     */
+    double getLoadDocumentsPerSecond();
+
+    /**
+     * Obtains the throughput of the most recent index load
+     * @return bytes of token files or saved index read per second
+     */
+    double getLoadBytesPerSecond();
+
+    /**
+     * Obtains the duration of the most recent weight calculation
+     * @return duration in milliseconds
+     */
+    double getWeightMillis();
+
+    /**
+     * Obtains the throughput of the most recent weight calculation
+     * @return documents of the index per second
+     */
+    double getWeightDocumentsPerSecond();
+}
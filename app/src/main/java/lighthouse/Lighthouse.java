@@ -1,8 +1,23 @@
 package lighthouse;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Scanner;
+import java.util.function.IntConsumer;
+
+import javax.management.JMException;
 
 /**
  * Lighthouse.java is the entry point to the information retrieval engine.
@@ -11,6 +26,8 @@ import java.util.Scanner;
 public class Lighthouse {
     /** Format for table rows */
     public static final String TABLE_ROW_FORMAT = "| %-9s | %-8.3f |%n";
+    /** Maximum number of documents listed for a query */
+    public static final int MAX_RESULTS = 10;
 
     /**
      * Prints a table of document weights based off of each entry in result
@@ -27,15 +44,211 @@ public class Lighthouse {
         System.out.format("+-----------+----------+%n");
     }
 
+    /**
+     * Finds the documents changed in the corpus since the last run, then loads the saved index.
+     * A saved index built from the previous state of the corpus is updated incrementally;
+     * if there is no usable saved index, a new one is built. Documents are tokenized straight into
+     * the index, and token files are only written if Tokenizer.EXPORT_PROPERTY asks for them.
+     * The resulting index is saved for the next run. If ShardedQueryEngine.SHARDS_PROPERTY asks for several
+     * shards, the index is built from the corpus instead, as a sharded index is not saved. Impact-ordered
+     * evaluation is turned on as QueryEngine.IMPACT_BITS_PROPERTY asks.
+     * @return index ready to serve queries
+     */
+    private static SearchIndex loadIndex() {
+        // new and modified documents are tokenized by the index itself
+        CorpusChanges changes = Tokenizer.findChanges();
+        String exportDirPath = Tokenizer.exportTokens() ? Tokenizer.OUTPUT_DIR : null;
+
+        int shardCount = Integer.getInteger(ShardedQueryEngine.SHARDS_PROPERTY, 1);
+        if (shardCount > 1) {
+            ShardedQueryEngine engine = ShardedQueryEngine.fromCorpus(Tokenizer.INPUT_DIR, exportDirPath, shardCount);
+            useImpacts(engine::useImpacts);
+            return engine;
+        }
+
+        QueryEngine engine = null;
+        if (new File(QueryEngine.INDEX_PATH).exists()) {
+            try {
+                engine = QueryEngine.load(QueryEngine.INDEX_PATH);
+            } catch (IOException e) {
+                System.out.println("Saved index is unusable (" + e.getMessage() + "), rebuilding.");
+            }
+        }
+
+        if (engine != null && engine.getCorpusFingerprint() == changes.getFingerprint() && changes.isEmpty()) {
+            // the saved index already reflects the current corpus
+            return engine;
+        } else if (engine != null && engine.getCorpusFingerprint() == changes.getPreviousFingerprint()) {
+            // this includes unchanged documents whose token files are missing while exporting them
+            engine.updateFromCorpus(changes, exportDirPath);
+        } else {
+            if (engine != null) {
+                System.out.println("Saved index does not match the corpus, rebuilding.");
+            }
+            engine = QueryEngine.fromCorpus(Tokenizer.INPUT_DIR, exportDirPath);
+            engine.setCorpusFingerprint(changes.getFingerprint());
+        }
+
+        try {
+            engine.save(QueryEngine.INDEX_PATH);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        useImpacts(engine::useImpacts);
+        return engine;
+    }
+
+    /**
+     * Turns on impact-ordered evaluation of top k queries if QueryEngine.IMPACT_BITS_PROPERTY asks for it
+     * @param useImpacts useImpacts method of the index whose weights are quantized
+     */
+    private static void useImpacts(IntConsumer useImpacts) {
+        int impactBits = Integer.getInteger(QueryEngine.IMPACT_BITS_PROPERTY, 0);
+        if (impactBits > 0) {
+            useImpacts.accept(impactBits);
+        }
+    }
+
+    /**
+     * Publishes the metrics of the engine over JMX and starts printing them periodically if
+     * configured, see MetricsReporter
+     * @param engine index whose metrics are reported
+     */
+    private static void startMetrics(SearchIndex engine) {
+        MetricsReporter reporter = new MetricsReporter(engine);
+        try {
+            reporter.registerMBeans();
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+        reporter.start();
+    }
+
+    /**
+     * Serves queries over HTTP until the process is stopped, see QueryServer
+     * @param engine index to be queried
+     */
+    private static void serve(SearchIndex engine) {
+        try {
+            QueryServer server = new QueryServer(engine);
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            System.out.println("Serving queries on http://localhost:" + server.getPort() + "/search?q=");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Loads one shard of the token files and serves it to a coordinator until the process is stopped,
+     * see ShardServer. The port is read from ShardServer.PORT_PROPERTY, and defaults to
+     * ShardServer.DEFAULT_PORT plus the index of the shard.
+     * @param shardIndex index of the shard, from 0
+     * @param shardCount number of shards the token files are split over
+     */
+    private static void shard(int shardIndex, int shardCount) {
+        QueryEngine shard = QueryEngine.loadShard(Tokenizer.OUTPUT_DIR, shardIndex, shardCount);
+        useImpacts(shard::useImpacts);
+        startMetrics(shard);
+        try {
+            ShardServer server = new ShardServer(shard,
+                    Integer.getInteger(ShardServer.PORT_PROPERTY, ShardServer.DEFAULT_PORT + shardIndex));
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            System.out.println("Serving shard " + (shardIndex + 1) + " of " + shardCount + " on port " + server.getPort());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Connects to shards served by other processes and gathers their statistics, see ShardCoordinator.
+     * The shards are given ShardClient.TIMEOUT_PROPERTY milliseconds to answer each query.
+     * @param addresses host:port of every shard, separated by commas, in shard order
+     * @return coordinator of the shards, or null if a shard cannot be reached
+     */
+    private static ShardCoordinator coordinate(String addresses) {
+        int timeoutMillis = Integer.getInteger(ShardClient.TIMEOUT_PROPERTY, ShardClient.DEFAULT_TIMEOUT_MILLIS);
+        List<ShardClient> shards = new ArrayList<>();
+        for (String address : addresses.split(",")) {
+            shards.add(ShardClient.of(address.trim(), timeoutMillis));
+        }
+        try {
+            return new ShardCoordinator(shards, timeoutMillis);
+        } catch (IOException e) {
+            System.out.println("Shards are unreachable (" + e.getMessage() + ")");
+            return null;
+        }
+    }
+
+    /**
+     * Runs every query of a file and writes their results, see BatchRunner
+     * @param engine index to be queried
+     * @param queriesPath file holding one query per line, or "-" to read standard input
+     * @param resultsPath file the results are written to, or null for the default of the configured format
+     */
+    private static void batch(SearchIndex engine, String queriesPath, String resultsPath) {
+        BatchRunner runner = new BatchRunner(engine);
+        if (resultsPath == null) {
+            resultsPath = BatchRunner.OUTPUT_PATH + "." + runner.getFormat().getExtension();
+        }
+        InputStream input = System.in;
+        try {
+            if (!queriesPath.equals("-")) {
+                input = new FileInputStream(queriesPath);
+            }
+            try (BufferedReader queries = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+                    Writer results = new OutputStreamWriter(new FileOutputStream(resultsPath), StandardCharsets.UTF_8)) {
+                BatchRunner.Report report = runner.run(queries, results);
+                System.out.println("Results written to " + resultsPath);
+                System.out.println(report);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * The main method for the lighthouse information retrieval engine, used for querying the corpus
-     * @param args passed command line arguments. No arguments expected.
+     * @param args passed command line arguments. With "serve", queries are served over HTTP instead
+     *     of being read from the console. With "batch", followed by a file of queries ("-" for standard
+     *     input) and optionally the file to write the results to, the queries are run in a batch.
+     *     With "tokenize", the corpus is only tokenized. With "shard" followed by the index of a shard
+     *     and the number of shards, one shard of the token files is served to a coordinator. With
+     *     "coordinate" followed by the comma-separated host:port of every shard, queries are answered
+     *     by those shards, and any further arguments apply as above.
      */
     public static void main(String[] args) {
-        // tokenize the corpus
-        Tokenizer.tokenize();
+        if (args.length > 0 && args[0].equals("tokenize")) {
+            Tokenizer.update();
+            return;
+        }
+        if (args.length > 2 && args[0].equals("shard")) {
+            shard(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
 
-        QueryEngine engine = new QueryEngine("tokens");
+        SearchIndex engine;
+        if (args.length > 1 && args[0].equals("coordinate")) {
+            engine = coordinate(args[1]);
+            if (engine == null) {
+                return;
+            }
+            args = Arrays.copyOfRange(args, 2, args.length);
+        } else {
+            engine = loadIndex();
+        }
+        startMetrics(engine);
+        if (args.length > 0 && args[0].equals("serve")) {
+            serve(engine);
+            return;
+        }
+        if (args.length > 1 && args[0].equals("batch")) {
+            batch(engine, args[1], args.length > 2 ? args[2] : null);
+            return;
+        }
 
         Scanner queryScanner = new Scanner(System.in);
         String query;
@@ -50,7 +263,8 @@ public class Lighthouse {
             } else if (query.equals("q")) {
                 System.out.println("Goodbye!");
             } else {
-                printTable(engine.query(query));
+                System.out.println("Querying: " + String.join(" ", engine.normalizeQuery(query)));
+                printTable(engine.query(query, MAX_RESULTS));
             }
         } while (!query.equals("q"));
         queryScanner.close();
@@ -0,0 +1,113 @@
+package lighthouse;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import lighthouse.util.Histogram;
+
+/**
+ * The MetricsReporter class publishes the IndexingMetrics and the QueryEngineMetrics of a SearchIndex
+ * as MBeans, so they can be watched with JConsole or any other JMX client, and optionally prints a
+ * summary line of them at a fixed interval.
+ */
+public class MetricsReporter {
+    /** system property holding the number of seconds between two metrics lines, 0 to print none */
+    public static final String INTERVAL_PROPERTY = "lighthouse.metrics.interval";
+    /** name the IndexingMetrics are registered under */
+    public static final String INDEXING_NAME = "lighthouse:type=Indexing";
+    /** name the QueryEngineMetrics are registered under */
+    public static final String QUERY_ENGINE_NAME = "lighthouse:type=QueryEngine";
+
+    private final QueryEngineMetrics metrics;
+    private ScheduledExecutorService scheduler;
+    private long lastQueryCount;
+    private long lastTime;
+
+    /**
+     * Creates a reporter for the metrics of the passed engine
+     * @param engine index whose metrics are reported
+     */
+    public MetricsReporter(SearchIndex engine) {
+        this.metrics = engine.getMetrics();
+    }
+
+    /**
+     * Registers the IndexingMetrics and the metrics of this reporter's engine with the platform MBean
+     * server, replacing any MBeans registered under the same names before
+     * @throws JMException if the MBeans cannot be registered
+     */
+    public void registerMBeans() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        register(server, new ObjectName(INDEXING_NAME), IndexingMetrics.getInstance());
+        register(server, new ObjectName(QUERY_ENGINE_NAME), metrics);
+    }
+
+    /**
+     * Registers one MBean, unregistering the MBean previously registered under its name
+     * @param server MBean server
+     * @param name name of the MBean
+     * @param mbean MBean to be registered
+     * @throws JMException if the MBean cannot be registered
+     */
+    private static void register(MBeanServer server, ObjectName name, Object mbean) throws JMException {
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(mbean, name);
+    }
+
+    /**
+     * Starts printing a metrics line every INTERVAL_PROPERTY seconds, if that property is positive.
+     * Lines are printed from a daemon thread, which does not keep the process alive.
+     */
+    public synchronized void start() {
+        int interval = Integer.getInteger(INTERVAL_PROPERTY, 0);
+        if (interval <= 0 || scheduler != null) {
+            return;
+        }
+        lastQueryCount = metrics.getQueryCount();
+        lastTime = System.nanoTime();
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "lighthouse-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> System.out.println(nextLine()), interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops printing metrics lines
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Formats the current metrics into one line, with the query rate since the previous line
+     * @return metrics line
+     */
+    synchronized String nextLine() {
+        long queryCount = metrics.getQueryCount();
+        long time = System.nanoTime();
+        double queriesPerSecond = time == lastTime ? 0 : (queryCount - lastQueryCount) * 1e9 / (time - lastTime);
+        lastQueryCount = queryCount;
+        lastTime = time;
+
+        Histogram latencies = metrics.getLatencies();
+        return String.format("[metrics] %d queries, %.1f queries/s; latency (ms): p50 %.3f, p95 %.3f, p99 %.3f,"
+                + " max %.3f; postings/query %.0f; index: %d terms, %d postings, ~%d MB",
+                queryCount, queriesPerSecond, latencies.getValueAtPercentile(50) / 1e6,
+                latencies.getValueAtPercentile(95) / 1e6, latencies.getValueAtPercentile(99) / 1e6,
+                latencies.getMax() / 1e6, metrics.getMeanPostingsScanned(), metrics.getTermCount(),
+                metrics.getPostingCount(), metrics.getIndexBytes() >> 20);
+    }
+}
@@ -0,0 +1,236 @@
+package lighthouse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The ParsedQuery class splits a query string into optional, required and excluded terms and quoted
+ * phrases, each analyzed the same way as documents. A term prefixed with + is required and one prefixed
+ * with - is excluded; other terms are optional. In <code>history +lighthouse -museum "lighthouse keeper"</code>,
+ * history is optional, lighthouse required, museum excluded, and lighthouse keeper a phrase. Phrases are
+ * always required unless excluded. A quote that is never closed extends the phrase to the end of the query.
+ *
+ * <p>The operators AND, OR and NOT, in capitals, are read before the query is analyzed, as their lower
+ * case forms are stopwords. They apply to the terms or phrases right next to them and there are no
+ * parentheses: <code>a AND b</code> requires both a and b, <code>NOT a</code> excludes a, and
+ * <code>a OR b</code> leaves both optional, as they would be without it.</p>
+ */
+public class ParsedQuery {
+    /** Character that starts and ends a phrase */
+    public static final char QUOTE = '"';
+    /** Prefix of a required term or phrase */
+    public static final char REQUIRED = '+';
+    /** Prefix of an excluded term or phrase */
+    public static final char EXCLUDED = '-';
+    /** Operator requiring the terms on both of its sides */
+    public static final String AND = "AND";
+    /** Operator leaving the terms on both of its sides optional */
+    public static final String OR = "OR";
+    /** Operator excluding the term following it */
+    public static final String NOT = "NOT";
+
+    /**
+     * Ways a term or phrase can take part in a query
+     */
+    private enum Occur {
+        /** documents may contain it */
+        OPTIONAL,
+        /** documents must contain it */
+        REQUIRED,
+        /** documents must not contain it */
+        EXCLUDED
+    }
+
+    private final List<String> terms = new ArrayList<>();
+    private final List<String> requiredTerms = new ArrayList<>();
+    private final List<String> excludedTerms = new ArrayList<>();
+    private final List<List<String>> phrases = new ArrayList<>();
+    private final List<List<String>> excludedPhrases = new ArrayList<>();
+
+    /**
+     * Constructs an empty ParsedQuery
+     */
+    private ParsedQuery() {
+    }
+
+    /**
+     * Parses a query string. Terms and phrases that only consist of stopwords are dropped. A required
+     * prefix query such as +light* is treated as optional, since it stands for several terms.
+     * @param query query string passed by the user
+     * @param analyzer analyzer turning text into terms
+     * @return parsed query
+     */
+    public static ParsedQuery parse(String query, Analyzer analyzer) {
+        ParsedQuery parsed = new ParsedQuery();
+        // clauses of the query so far; only the last one can still be changed by AND
+        List<String> lastTerms = null;
+        Occur next = Occur.OPTIONAL;
+        int i = 0;
+        int n = query.length();
+        while (i < n) {
+            char c = query.charAt(i);
+            if (Analyzer.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+
+            Occur occur = next;
+            boolean prefixed = false;
+            if ((c == REQUIRED || c == EXCLUDED) && i + 1 < n && !Analyzer.isWhitespace(query.charAt(i + 1))) {
+                occur = c == REQUIRED ? Occur.REQUIRED : Occur.EXCLUDED;
+                prefixed = true;
+                c = query.charAt(++i);
+            }
+
+            if (c == QUOTE) {
+                int end = query.indexOf(QUOTE, i + 1);
+                if (end < 0) {
+                    end = n;
+                }
+                List<String> phrase = analyzer.terms(query.substring(i + 1, end));
+                i = end + 1;
+                if (!phrase.isEmpty()) {
+                    (occur == Occur.EXCLUDED ? parsed.excludedPhrases : parsed.phrases)
+                            .add(Collections.unmodifiableList(phrase));
+                }
+                lastTerms = null;
+                next = Occur.OPTIONAL;
+                continue;
+            }
+
+            int end = i;
+            while (end < n && !Analyzer.isWhitespace(query.charAt(end)) && query.charAt(end) != QUOTE) {
+                end++;
+            }
+            String word = query.substring(i, end);
+            i = end;
+
+            if (!prefixed) {
+                if (word.equals(AND)) {
+                    // the clause before AND becomes required, unless it was excluded
+                    if (lastTerms != null && lastTerms == parsed.terms) {
+                        parsed.require(parsed.terms.remove(parsed.terms.size() - 1));
+                    }
+                    next = Occur.REQUIRED;
+                    continue;
+                } else if (word.equals(OR)) {
+                    next = Occur.OPTIONAL;
+                    continue;
+                } else if (word.equals(NOT)) {
+                    next = Occur.EXCLUDED;
+                    continue;
+                }
+            }
+
+            lastTerms = null;
+            for (String term : analyzer.terms(word)) {
+                lastTerms = parsed.add(term, occur);
+            }
+            next = Occur.OPTIONAL;
+        }
+        return parsed;
+    }
+
+    /**
+     * Adds a term to the list matching the way it takes part in the query
+     * @param term normalized term
+     * @param occur way the term takes part in the query
+     * @return list the term was added to
+     */
+    private List<String> add(String term, Occur occur) {
+        switch (occur) {
+            case REQUIRED:
+                return require(term);
+            case EXCLUDED:
+                excludedTerms.add(term);
+                return excludedTerms;
+            default:
+                terms.add(term);
+                return terms;
+        }
+    }
+
+    /**
+     * Adds a required term, or an optional one if it is a prefix query
+     * @param term normalized term
+     * @return list the term was added to
+     */
+    private List<String> require(String term) {
+        List<String> list = term.endsWith(QueryEngine.WILDCARD) ? terms : requiredTerms;
+        list.add(term);
+        return list;
+    }
+
+    /**
+     * Obtains the optional terms of the query
+     * @return normalized optional terms, in query order
+     */
+    public List<String> getTerms() {
+        return Collections.unmodifiableList(terms);
+    }
+
+    /**
+     * Obtains the required terms of the query
+     * @return normalized required terms, in query order
+     */
+    public List<String> getRequiredTerms() {
+        return Collections.unmodifiableList(requiredTerms);
+    }
+
+    /**
+     * Obtains the excluded terms of the query
+     * @return normalized excluded terms, in query order
+     */
+    public List<String> getExcludedTerms() {
+        return Collections.unmodifiableList(excludedTerms);
+    }
+
+    /**
+     * Obtains the required phrases of the query
+     * @return normalized terms of each required phrase, in query order
+     */
+    public List<List<String>> getPhrases() {
+        return Collections.unmodifiableList(phrases);
+    }
+
+    /**
+     * Obtains the excluded phrases of the query
+     * @return normalized terms of each excluded phrase, in query order
+     */
+    public List<List<String>> getExcludedPhrases() {
+        return Collections.unmodifiableList(excludedPhrases);
+    }
+
+    /**
+     * Checks whether the query contains any term at all
+     * @return true if there are no terms or phrases of any kind, false otherwise
+     */
+    public boolean isEmpty() {
+        return terms.isEmpty() && requiredTerms.isEmpty() && excludedTerms.isEmpty() && phrases.isEmpty()
+                && excludedPhrases.isEmpty();
+    }
+
+    /**
+     * Obtains the normalized form of the query: the optional terms, the required terms prefixed with +,
+     * the excluded terms prefixed with -, and every phrase as a single entry enclosed in quotes, prefixed
+     * with - if it is excluded. Two queries with the same normalized form have the same results.
+     * @return normalized form of the query
+     */
+    public List<String> getKey() {
+        List<String> key = new ArrayList<>(terms);
+        for (String term : requiredTerms) {
+            key.add(REQUIRED + term);
+        }
+        for (String term : excludedTerms) {
+            key.add(EXCLUDED + term);
+        }
+        for (List<String> phrase : phrases) {
+            key.add(QUOTE + String.join(" ", phrase) + QUOTE);
+        }
+        for (List<String> phrase : excludedPhrases) {
+            key.add(EXCLUDED + (QUOTE + String.join(" ", phrase) + QUOTE));
+        }
+        return key;
+    }
+}
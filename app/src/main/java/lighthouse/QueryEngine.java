@@ -3,219 +3,1857 @@ package lighthouse;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.stream.Collectors;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 
-import lighthouse.util.ProgressBar;
+import lighthouse.util.CompressedPostingList;
+import lighthouse.util.DocumentTable;
+import lighthouse.util.ImpactPostingList;
+import lighthouse.util.OffHeapTermDictionary;
+import lighthouse.util.PostingCounter;
+import lighthouse.util.PostingCursor;
+import lighthouse.util.PostingList;
+import lighthouse.util.ProgressTracker;
+import lighthouse.util.QueryCache;
+import lighthouse.util.ScoreAccumulator;
 import lighthouse.util.TDMHeader;
-import lighthouse.util.TDMNode;
+import lighthouse.util.TermCounts;
+import lighthouse.util.TermDictionary;
+import lighthouse.util.TopDocuments;
 
 /**
  * The QueryEngine class is used to calculate weights for each of the tokens, along with
  * initialization of efficient data structure for use when user begins making queries.
  */
-public class QueryEngine {
+public class QueryEngine implements SearchIndex {
     /** The BM25 constant K. */
     public static final double BM25_K = 1.5;
     /** The BM25 constant B. */
     public static final double BM25_B = .75;
+    /** default filepath location of the saved binary index */
+    public static final String INDEX_PATH = "lighthouse.idx";
+    /** Suffix that turns a query term into a prefix query */
+    public static final String WILDCARD = "*";
+    /** system property used to set the number of query results kept in the cache; 0 disables it */
+    public static final String CACHE_SIZE_PROPERTY = "lighthouse.cache.size";
+    /** default number of query results kept in the cache */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+    /** Largest proximity boost of a document, as a multiple of the summed IDF of the query terms */
+    public static final double PROXIMITY_WEIGHT = 1.0;
+    /** system property holding the number of bits term weights are quantized to for impact-ordered evaluation,
+     * 8 or 16; 0 keeps exact evaluation */
+    public static final String IMPACT_BITS_PROPERTY = "lighthouse.impact.bits";
+    /** system property that keeps the terms and postings of the index outside of the heap when set to true,
+     * see OffHeapTermDictionary */
+    public static final String OFF_HEAP_PROPERTY = "lighthouse.offheap";
+    // rough memory taken by the objects of a document besides its name: table entries and length norm
+    private static final int DOCUMENT_OVERHEAD_BYTES = 64;
+    // impact-ordered evaluation checks whether it can stop each time it has read one posting for every
+    // IMPACT_CHECK_RATIO documents found so far
+    private static final int IMPACT_CHECK_RATIO = 8;
 
+    // the term document matrix is only kept while the index is built or updated;
+    // queries look terms up in the sorted dictionary
     private Map<String, TDMHeader> termMatrix;
-    private Map<String, Integer> documentLengths;
+    private TermDictionary dictionary;
+    private DocumentTable documents;
     private int totalDocumentLengths;
     private int numDocuments;
     private double avgDocLength;
+    private double[] lengthNorms;
+    private long corpusFingerprint;
+    private volatile long generation;
+    private final QueryCache cache = new QueryCache(Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE));
+    // queries hold the read lock, so any number of them run at once; updates hold the write lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // score accumulators reused across queries, so scoring does not allocate per posting; a pool rather
+    // than a ThreadLocal, as queries served on virtual threads would otherwise get a new one every time
+    private final Queue<ScoreAccumulator> accumulators = new ConcurrentLinkedQueue<>();
+    private final QueryEngineMetrics metrics = new QueryEngineMetrics();
+    // statistics of the whole corpus, used by a shard instead of its own
+    private CorpusStatistics statistics;
+    // bits of the quantized term weights of the impact-ordered postings, or 0 if there are none
+    private int impactBits;
+    // weight of one impact
+    private double impactWeight;
+    // largest weight of any term of the whole corpus, which a shard quantizes its weights against so
+    // that impacts of every shard are on the same scale; 0 until the coordinator sets it
+    private double corpusLargestWeight;
+    // whether the term dictionary is kept outside of the heap
+    private final boolean offHeap = Boolean.getBoolean(OFF_HEAP_PROPERTY);
 
     /**
      * Constructor for QueryEngine. Calls functions to load the term document matrix and calculate term weights.
      * @param tokenDirPath filepath for previously generated token files
      */
     public QueryEngine(String tokenDirPath) {
-        loadTDM(tokenDirPath);
-        calculateWeights(tokenDirPath);
+        this(tokenDirPath, false, null);
     }
 
     /**
-     * Constructs Term-Document Matrix from tokenized files inside of tokenDirPath
+     * Constructor for QueryEngine over the documents of a directory
+     * @param dirPath filepath for previously generated token files, or for the corpus if corpus is true
+     * @param corpus true if the documents are tokenized straight into the index, see addDocuments
+     * @param exportDir directory the token files of tokenized documents are written into, or null
+     */
+    private QueryEngine(String dirPath, boolean corpus, File exportDir) {
+        loadTDM(dirPath, corpus, exportDir);
+        calculateWeights();
+    }
+
+    /**
+     * Builds a QueryEngine by tokenizing the documents inside of inputDirPath straight into the index,
+     * without writing and parsing token files in between. The documents are named as their token files
+     * would be, so the engine returns exactly what QueryEngine(String) would over the token files of the
+     * same corpus.
+     * @param inputDirPath filepath for the corpus
+     * @param exportDirPath filepath the token files are written into as well, or null to write none
+     * @return QueryEngine over the documents of the corpus
+     */
+    public static QueryEngine fromCorpus(String inputDirPath, String exportDirPath) {
+        return new QueryEngine(inputDirPath, true, exportDirPath == null ? null : new File(exportDirPath));
+    }
+
+    /**
+     * Constructor for an empty shard, filled by ShardedQueryEngine or loadShard
+     */
+    QueryEngine() {
+        termMatrix = new HashMap<>();
+        documents = new DocumentTable();
+    }
+
+    /**
+     * Loads one shard of the token files inside of tokenDirPath, for a ShardServer. The token files are
+     * split as by ShardedQueryEngine(String, int); the shard cannot be queried until useStatistics gives
+     * it the statistics of the whole corpus.
      * @param tokenDirPath filepath for previously generated token files
+     * @param shardIndex index of the shard, from 0
+     * @param shardCount number of shards
+     * @return shard awaiting the statistics of the corpus
+     */
+    static QueryEngine loadShard(String tokenDirPath, int shardIndex, int shardCount) {
+        if (shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("shardIndex must be between 0 and shardCount - 1");
+        }
+        System.out.println("(2/3) Building shard " + (shardIndex + 1) + " of " + shardCount + "...");
+        long start = System.nanoTime();
+        List<File> tokenFiles = partition(listFiles(tokenDirPath, false), shardCount).get(shardIndex);
+        ProgressTracker progress = new ProgressTracker(tokenFiles.size());
+        progress.start();
+        QueryEngine shard = loadShard(tokenFiles, progress);
+        System.out.println();
+        long bytes = 0;
+        for (File tokenFile : tokenFiles) {
+            bytes += tokenFile.length();
+        }
+        IndexingMetrics.getInstance().record(IndexingMetrics.Phase.LOAD, System.nanoTime() - start,
+                tokenFiles.size(), bytes);
+        return shard;
+    }
+
+    /**
+     * Loads a shard holding the passed token files, which awaits the statistics of the corpus
+     * @param tokenFiles token files of the shard, sorted by name
+     * @param progress tracker receiving a step for every document added
+     * @return shard awaiting the statistics of the corpus
+     */
+    static QueryEngine loadShard(List<File> tokenFiles, ProgressTracker progress) {
+        QueryEngine shard = new QueryEngine();
+        shard.loadDocuments(tokenFiles, false, null, progress);
+        return shard;
+    }
+
+    /**
+     * Obtains the statistics of the documents of this shard, to be merged with those of the other shards
+     * @return statistics of this shard
+     */
+    CorpusStatistics getShardStatistics() {
+        lock.readLock().lock();
+        try {
+            CorpusStatistics shardStatistics = new CorpusStatistics();
+            addStatistics(shardStatistics);
+            return shardStatistics;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the document count, document lengths and document frequencies of this shard to statistics
+     * @param corpusStatistics statistics receiving those of this shard
+     */
+    void addStatistics(CorpusStatistics corpusStatistics) {
+        corpusStatistics.addDocuments(numDocuments, totalDocumentLengths);
+        for (TDMHeader header : termMatrix != null ? termMatrix.values() : dictionary.getHeaders()) {
+            corpusStatistics.addDocumentFrequency(header.getTerm(), header.getLen());
+        }
+    }
+
+    /**
+     * Weights the postings of this shard with the statistics of the whole corpus, so it can be queried.
+     * Statistics may be set again, for instance when a coordinator reconnects; queries wait until the
+     * weights are recalculated.
+     * @param corpusStatistics statistics of the whole corpus, including this shard
+     */
+    void useStatistics(CorpusStatistics corpusStatistics) {
+        lock.writeLock().lock();
+        try {
+            if (termMatrix == null) {
+                termMatrix = dictionary.toMap();
+            }
+            statistics = corpusStatistics;
+            avgDocLength = corpusStatistics.getAvgDocLength();
+            calculateWeights();
+            // results cached with the previous statistics no longer apply
+            generation++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Weights the postings of a shard that was just built with the statistics of the whole corpus, as
+     * useStatistics does, while the shards of a ShardedQueryEngine are weighted together
+     * @param corpusStatistics statistics of the whole corpus, including this shard
+     * @param progress tracker receiving a step for every term weighted
+     */
+    void weight(CorpusStatistics corpusStatistics, ProgressTracker progress) {
+        statistics = corpusStatistics;
+        avgDocLength = corpusStatistics.getAvgDocLength();
+        computeWeights(progress);
+        recordIndexSize();
+    }
+
+    /**
+     * Obtains the number of distinct terms of this shard
+     * @return number of terms
+     */
+    int getTermCount() {
+        return termMatrix != null ? termMatrix.size() : dictionary.size();
+    }
+
+    /**
+     * Obtains the largest weight of any term of this shard, to be merged with those of the other shards
+     * @return largest weight of any term, or 0 if the postings are not weighted yet
+     */
+    double getLargestWeight() {
+        lock.readLock().lock();
+        try {
+            double largestWeight = 0;
+            if (dictionary != null) {
+                for (TDMHeader header : dictionary.getHeaders()) {
+                    largestWeight = Math.max(largestWeight, header.getMaxWeight());
+                }
+            }
+            return largestWeight;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the largest weight of any term of the whole corpus, which the impacts of this shard are
+     * quantized against, see buildImpacts. The impacts are rebuilt if they are in use.
+     * @param largestWeight largest weight of any term of the whole corpus, at least that of this shard
+     */
+    void useLargestWeight(double largestWeight) {
+        lock.writeLock().lock();
+        try {
+            corpusLargestWeight = largestWeight;
+            if (impactBits > 0 && dictionary != null) {
+                buildImpacts();
+                // results cached with the previous impacts no longer apply
+                generation++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Turns impact-ordered evaluation of top k queries on or off, see rankImpacts. The weight of every
+     * posting is quantized to bits bits and the postings of every term are copied in impact order. The
+     * document-ordered postings are kept, as Boolean and phrase queries and the exact weighting of the
+     * candidates need them, and the impacts are rebuilt whenever the weights change.
+     * @param bits number of bits of a quantized weight, 8 or 16, or 0 to turn impact-ordered evaluation off
+     */
+    public void useImpacts(int bits) {
+        if (bits != 0 && bits != 8 && bits != 16) {
+            throw new IllegalArgumentException("bits must be 0, 8 or 16");
+        }
+        lock.writeLock().lock();
+        try {
+            impactBits = bits;
+            // a shard still waiting for the corpus statistics or the largest weight of the corpus
+            // builds its impacts once it has both
+            if (dictionary != null) {
+                buildImpacts();
+                recordIndexSize();
+            }
+            generation++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Constructor for QueryEngine over an already built term dictionary, used when loading a saved index.
+     * @param dictionary sorted dictionary of terms and their compressed postings, with maximum weights set
+     * @param documents table of document names and lengths
+     * @param numDocuments total number of documents in the corpus
+     * @param totalDocumentLengths sum of all document lengths in the corpus
+     */
+    QueryEngine(TermDictionary dictionary, DocumentTable documents, int numDocuments,
+            int totalDocumentLengths) {
+        this.dictionary = dictionary;
+        this.documents = documents;
+        this.numDocuments = numDocuments;
+        this.totalDocumentLengths = totalDocumentLengths;
+        this.avgDocLength = (double) totalDocumentLengths / numDocuments;
+        calculateLengthNorms();
+        recordIndexSize();
+    }
+
+    /**
+     * Loads a QueryEngine from a binary index file previously written by save.
+     * @param indexPath filepath of the saved index
+     * @return QueryEngine serving the saved index
+     * @throws IOException if the index is missing, was written by another format version, or is corrupt
+     */
+    public static QueryEngine load(String indexPath) throws IOException {
+        System.out.println("Loading index from " + indexPath + "...");
+        long start = System.nanoTime();
+        QueryEngine engine = IndexFile.read(Path.of(indexPath));
+        IndexingMetrics.getInstance().record(IndexingMetrics.Phase.LOAD, System.nanoTime() - start,
+                engine.numDocuments, Files.size(Path.of(indexPath)));
+        return engine;
+    }
+
+    /**
+     * Saves the index of this QueryEngine into a binary index file so that later runs can load it.
+     * @param indexPath filepath of the saved index
+     * @throws IOException if the index file cannot be written
+     */
+    public void save(String indexPath) throws IOException {
+        lock.readLock().lock();
+        try {
+            IndexFile.write(this, Path.of(indexPath));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Constructs Term-Document Matrix from tokenized files inside of dirPath, or from the documents
+     * inside of it if corpus is true
+     * @param dirPath filepath for previously generated token files, or for the corpus
+     * @param corpus true if the documents are tokenized straight into the index
+     * @param exportDir directory the token files of tokenized documents are written into, or null
      */
-    private void loadTDM(String tokenDirPath) {
+    private void loadTDM(String dirPath, boolean corpus, File exportDir) {
         // initializes all instance variables
         // performs all necessary setup to calculate weights
 
         System.out.println("(2/3) Building index...");
+        long start = System.nanoTime();
+
+        File[] files = listFiles(dirPath, corpus);
+        ProgressTracker progress = new ProgressTracker(files.length);
+        progress.start();
+        long bytes = loadDocuments(Arrays.asList(files), corpus, exportDir, progress);
+        System.out.println();
+        IndexingMetrics.getInstance().record(loadPhase(corpus), System.nanoTime() - start, files.length, bytes);
+
+        // setting values to be used in BM25 weight formula
+        avgDocLength = (double) totalDocumentLengths / numDocuments;
 
+    }
+
+    /**
+     * Lists the token files inside of dirPath in name order, or the corpus files in the order of the names
+     * of their token files. Documents receive their IDs in this order, and loading them in ID order keeps
+     * every posting list sorted while only appending.
+     * @param dirPath filepath for previously generated token files, or for the corpus
+     * @param corpus true if dirPath holds the corpus
+     * @return files sorted by document name
+     */
+    static File[] listFiles(String dirPath, boolean corpus) {
+        File[] files = new File(dirPath).listFiles();
+        if (files == null) {
+            throw new IllegalArgumentException(dirPath + " is not a directory");
+        }
+        Arrays.sort(files, Comparator.comparing(corpus ? Tokenizer::documentName : File::getName));
+        return files;
+    }
+
+    /**
+     * Obtains the indexing phase that adding documents is recorded as
+     * @param corpus true if the documents are tokenized straight into the index
+     * @return TOKENIZE if corpus is true, which then includes indexing, or LOAD otherwise
+     */
+    static IndexingMetrics.Phase loadPhase(boolean corpus) {
+        return corpus ? IndexingMetrics.Phase.TOKENIZE : IndexingMetrics.Phase.LOAD;
+    }
+
+    /**
+     * Constructs the Term-Document Matrix of the passed files, see addDocuments
+     * @param files token files sorted by name, or corpus files sorted by document name
+     * @param corpus true if the files are tokenized straight into the index
+     * @param exportDir directory the token files of tokenized documents are written into, or null
+     * @param progress tracker receiving a step for every document added
+     * @return total size of the files in bytes
+     */
+    private long loadDocuments(List<File> files, boolean corpus, File exportDir, ProgressTracker progress) {
         termMatrix = new HashMap<>();
-        documentLengths = new HashMap<>();
+        documents = new DocumentTable();
+        return addDocuments(files, corpus, exportDir, progress);
+    }
 
-        int documentLength;
+    /**
+     * Appends the documents of the passed files to the Term-Document Matrix, in order. Token files are
+     * parsed one at a time. Corpus files are tokenized on several threads a few files ahead of the index,
+     * see Tokenizer.tokenizeFiles, and their term counts added without any token file in between.
+     * @param files token files, or corpus files if corpus is true, in the order of the new document IDs
+     * @param corpus true if the files are tokenized straight into the index
+     * @param exportDir directory the token files of tokenized documents are written into, or null
+     * @param progress tracker receiving a step for every document added, or null
+     * @return total size of the files in bytes
+     */
+    private long addDocuments(List<File> files, boolean corpus, File exportDir, ProgressTracker progress) {
+        if (corpus) {
+            Tokenizer.tokenizeFiles(files, exportDir, (file, tokens) -> {
+                addDocument(Tokenizer.documentName(file), tokens);
+                if (progress != null) {
+                    progress.step();
+                }
+            });
+        } else {
+            // load tokens from each token file
+            for (File tokenFile : files) {
+                loadDocument(tokenFile);
+                if (progress != null) {
+                    progress.step();
+                }
+            }
+        }
 
-        File tokenDir = new File(tokenDirPath);
-        File[] tokenFiles = tokenDir.listFiles();
-        int fileCount = tokenFiles.length;
-        long progressPct = Math.max(Math.round(fileCount * ProgressBar.TICKMARK_PCT), 1);
+        long bytes = 0;
+        for (File file : files) {
+            bytes += file.length();
+        }
+        return bytes;
+    }
 
-        // load tokens from each token file
+    /**
+     * Splits token files into consecutive ranges holding about as many bytes each, so that the shards
+     * have about as many postings to rank. Shards may be empty if there are fewer files than shards.
+     * @param tokenFiles token files sorted by name
+     * @param shardCount number of ranges
+     * @return token files of each range, in name order
+     */
+    static List<List<File>> partition(File[] tokenFiles, int shardCount) {
+        List<List<File>> partitions = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        // every file counts one byte more than its size, so empty files are spread out as well
+        long total = 0;
+        for (File tokenFile : tokenFiles) {
+            total += tokenFile.length() + 1;
+        }
+        long offset = 0;
         for (File tokenFile : tokenFiles) {
-            documentLength = 0;
+            long size = tokenFile.length() + 1;
+            // the range holding the middle of the file takes it
+            partitions.get((int) ((offset + size / 2) * shardCount / total)).add(tokenFile);
+            offset += size;
+        }
+        return partitions;
+    }
+
+    /**
+     * Appends the postings of a single token file to the Term-Document Matrix and
+     * updates the corpus statistics accordingly
+     * @param tokenFile previously generated token file of one document
+     */
+    private void loadDocument(File tokenFile) {
+        int documentLength = 0;
+        int documentID = documents.add(tokenFile.getName(), 0);
 
-            if (numDocuments % progressPct == 0) {
-                ProgressBar.printProgressBar(numDocuments, fileCount);
+        // parse the token, count CSV format and store it in a hashmap
+        try (CSVParser tokenParser = CSVParser.parse(tokenFile, StandardCharsets.UTF_8, CSVFormat.DEFAULT)) {
+            for (CSVRecord tokenRecord : tokenParser) {
+                String token = tokenRecord.get(0);
+                int count = Integer.parseInt(tokenRecord.get(1));
+                // token files written with positions hold them in a third column
+                int[] positions = tokenRecord.size() > 2 ? Tokenizer.decodePositions(tokenRecord.get(2), count) : null;
+
+                documentLength += count;
+
+                // include the term in the term document matrix if it is not there yet,
+                // then append the posting for this document
+                termMatrix.computeIfAbsent(token, TDMHeader::new)
+                        .getPostings()
+                        .add(documentID, count, positions);
             }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
 
-            // parse the token, count CSV format and store it in a hashmap
-            try (CSVParser tokenParser = CSVParser.parse(tokenFile, StandardCharsets.UTF_8, CSVFormat.DEFAULT)) {
-                for (CSVRecord tokenRecord : tokenParser) {
-                    String token = tokenRecord.get(0);
-                    int count = Integer.parseInt(tokenRecord.get(1));
+        finishDocument(documentID, documentLength);
+    }
 
-                    documentLength += count;
+    /**
+     * Appends the postings of a single tokenized document to the Term-Document Matrix and
+     * updates the corpus statistics accordingly, as loadDocument does for its token file
+     * @param documentName name of the document, which is that of its token file
+     * @param tokens terms of the document with their counts and, if recorded, positions
+     */
+    private void addDocument(String documentName, TermCounts tokens) {
+        int documentLength = 0;
+        int documentID = documents.add(documentName, 0);
 
-                    TDMNode newNode = new TDMNode(tokenFile.getName(), count);
-                    if (!termMatrix.containsKey(token)) {
-                        // if the term is not in the term document matrix yet, include it
-                        termMatrix.put(token, new TDMHeader(token, newNode));
-                    } else {
-                        // if the term has been added, append the new TDMNode
-                        termMatrix.get(token).append(newNode);
-                    }
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
+        for (int i = 0; i < tokens.size(); i++) {
+            int count = tokens.getCount(i);
+            documentLength += count;
+            termMatrix.computeIfAbsent(tokens.getTerm(i), TDMHeader::new)
+                    .getPostings()
+                    .add(documentID, count, tokens.hasPositions() ? tokens.getPositions(i) : null);
+        }
+
+        finishDocument(documentID, documentLength);
+    }
+
+    /**
+     * Appends a tokenized document to a shard being built by ShardedQueryEngine, see addDocument
+     * @param documentName name of the document, which is that of its token file
+     * @param tokens terms of the document with their counts and, if recorded, positions
+     */
+    void addShardDocument(String documentName, TermCounts tokens) {
+        addDocument(documentName, tokens);
+    }
+
+    /**
+     * Adds a document whose postings were appended to the corpus statistics
+     * @param documentID ID of the document
+     * @param documentLength number of terms in the document
+     */
+    private void finishDocument(int documentID, int documentLength) {
+        numDocuments++;
+
+        // keep track of statistical variables to be used later in term weight
+        // calculations
+        totalDocumentLengths += documentLength;
+        documents.setLength(documentID, documentLength);
+    }
+
+    /**
+     * Removes the postings of a single document from the Term-Document Matrix and
+     * updates the corpus statistics accordingly
+     * @param documentName name of the document to be removed
+     * @param terms terms the document contained
+     */
+    private void removeDocument(String documentName, Set<String> terms) {
+        int documentID = documents.getID(documentName);
+        if (documentID < 0) {
+            return;
+        }
+        numDocuments--;
+        totalDocumentLengths -= documents.getLength(documentID);
+        documents.remove(documentID);
+
+        for (String term : terms) {
+            TDMHeader header = termMatrix.get(term);
+            if (header != null && header.getPostings().remove(documentID) && header.getLen() == 0) {
+                termMatrix.remove(term);
             }
+        }
+    }
 
-            numDocuments++;
+    /**
+     * Removes the postings of documents whose terms are unknown from the Term-Document Matrix and
+     * updates the corpus statistics accordingly. Every posting list is searched once for all of them,
+     * and only those holding one of the documents are decompressed.
+     * @param documentNames names of the documents to be removed; those not in the index are skipped
+     */
+    private void removeDocuments(Collection<String> documentNames) {
+        int[] documentIDs = new int[documentNames.size()];
+        int count = 0;
+        for (String documentName : documentNames) {
+            int documentID = documents.getID(documentName);
+            if (documentID >= 0) {
+                numDocuments--;
+                totalDocumentLengths -= documents.getLength(documentID);
+                documents.remove(documentID);
+                documentIDs[count++] = documentID;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        Arrays.sort(documentIDs, 0, count);
 
-            // keep track of statistical variables to be used later in term weight
-            // calculations
-            totalDocumentLengths += documentLength;
-            documentLengths.put(tokenFile.getName(), documentLength);
+        Iterator<TDMHeader> headers = termMatrix.values().iterator();
+        while (headers.hasNext()) {
+            TDMHeader header = headers.next();
+            PostingCursor cursor = new PostingCursor(header);
+            boolean found = false;
+            for (int i = 0; i < count && !found && !cursor.isExhausted(); i++) {
+                cursor.advance(documentIDs[i]);
+                found = !cursor.isExhausted() && cursor.getDocumentID() == documentIDs[i];
+            }
+            if (!found) {
+                continue;
+            }
+            PostingList postings = header.getPostings();
+            for (int i = 0; i < count; i++) {
+                postings.remove(documentIDs[i]);
+            }
+            if (header.getLen() == 0) {
+                headers.remove();
+            }
         }
-        System.out.println();
+    }
+
+    /**
+     * Applies the result of an incremental tokenization run to this index. Postings of modified and
+     * removed documents are dropped, the token files of new and modified documents are loaded, and the
+     * corpus statistics and term weight bounds are brought up to date. Only the posting lists that
+     * changed are decompressed and compressed again. Queries wait until the update is complete.
+     * @param tokenDirPath filepath for previously generated token files
+     * @param changes documents added, modified or removed by the tokenization run
+     */
+    public void update(String tokenDirPath, CorpusChanges changes) {
+        updateIndex(changes, false, tokenDirPath);
+    }
+
+    /**
+     * Applies the changes found by Tokenizer.findChanges to this index as update does, tokenizing the
+     * new and modified documents straight into the index instead of loading their token files.
+     * @param changes documents added, modified or removed, along with their corpus files
+     * @param exportDirPath filepath the token files are written into as well, or null to write none
+     * @throws IllegalArgumentException if the corpus files of the changes were not recorded
+     */
+    public void updateFromCorpus(CorpusChanges changes, String exportDirPath) {
+        if (changes.getUpdatedFiles().size() != changes.getUpdatedDocuments().size()) {
+            throw new IllegalArgumentException("the corpus files of the updated documents are missing");
+        }
+        updateIndex(changes, true, exportDirPath);
+    }
+
+    /**
+     * Applies changes to this index under the write lock, see update
+     * @param changes documents added, modified or removed
+     * @param corpus true if the updated documents are tokenized straight into the index
+     * @param dirPath filepath for previously generated token files, or the one token files are exported
+     *     into if corpus is true, which may be null
+     */
+    private void updateIndex(CorpusChanges changes, boolean corpus, String dirPath) {
+        lock.writeLock().lock();
+        try {
+            applyChanges(changes, corpus, dirPath);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Applies the result of an incremental tokenization run to this index, see update
+     * @param changes documents added, modified or removed by the tokenization run
+     * @param corpus true if the updated documents are tokenized straight into the index
+     * @param dirPath filepath for previously generated token files, or the one token files are exported
+     *     into if corpus is true, which may be null
+     */
+    private void applyChanges(CorpusChanges changes, boolean corpus, String dirPath) {
+        System.out.println("(2/3) Updating index...");
+        long start = System.nanoTime();
+        termMatrix = dictionary.toMap();
+
+        // documents whose previous terms are unknown may have postings in any list; this includes
+        // updated documents without previous terms, which are skipped if they are new
+        List<String> unknownTerms = new ArrayList<>();
+        for (Entry<String, Set<String>> document : changes.getPreviousTerms().entrySet()) {
+            if (document.getValue() == null) {
+                unknownTerms.add(document.getKey());
+            }
+        }
+        for (String documentName : changes.getUpdatedDocuments()) {
+            if (!changes.getPreviousTerms().containsKey(documentName)) {
+                unknownTerms.add(documentName);
+            }
+        }
+        removeDocuments(unknownTerms);
+        for (Entry<String, Set<String>> document : changes.getPreviousTerms().entrySet()) {
+            if (document.getValue() != null) {
+                removeDocument(document.getKey(), document.getValue());
+            }
+        }
+
+        // the updated documents get new IDs at the end of the table
+        List<File> files = changes.getUpdatedFiles();
+        if (!corpus) {
+            files = new ArrayList<>();
+            for (String documentName : changes.getUpdatedDocuments()) {
+                files.add(new File(dirPath, documentName));
+            }
+        }
+        long bytes = addDocuments(files, corpus, corpus && dirPath != null ? new File(dirPath) : null, null);
+        IndexingMetrics.getInstance().record(loadPhase(corpus), System.nanoTime() - start, files.size(), bytes);
 
-        // setting values to be used in BM25 weight formula
         avgDocLength = (double) totalDocumentLengths / numDocuments;
+        calculateWeights();
+        corpusFingerprint = changes.getFingerprint();
 
+        // results cached before the update no longer apply
+        generation++;
     }
 
     /**
-     * Calculates BM25 weights for each token organized by document
-     * For each document in tokenDirPath, a file containing tokens and corresponding weights is outputted
-     * @param tokenDirPath filepath for previously generated token files
+     * Computes the BM25 length normalization of every document, so term weights can be derived
+     * from term counts at query time.
+     */
+    private void calculateLengthNorms() {
+        lengthNorms = new double[documents.size()];
+        for (int id = 0; id < lengthNorms.length; id++) {
+            lengthNorms[id] = lengthNorm(documents.getLength(id), avgDocLength);
+        }
+    }
+
+    /**
+     * Compresses the postings of every term and records the largest BM25 weight of each term.
+     * Term weights themselves are not stored; queries compute them from the term counts, so only
+     * the per-term upper bounds used for pruning depend on this pass. Finally the term document
+     * matrix is replaced by the sorted term dictionary that queries use, which is copied out of the
+     * heap if OFF_HEAP_PROPERTY is set.
      */
-    private void calculateWeights(String tokenDirPath) {
+    private void calculateWeights() {
         // calculate the weights of each token
         System.out.println("(3/3) Calculating weights...");
+        long start = System.nanoTime();
+        ProgressTracker progress = new ProgressTracker(termMatrix.size());
+        progress.start();
+        computeWeights(progress);
+        System.out.println();
 
-        int documentCounter = 0;
+        IndexingMetrics.getInstance().record(IndexingMetrics.Phase.WEIGHT, System.nanoTime() - start, numDocuments, 0);
+        recordIndexSize();
+    }
 
-        File tokenDir = new File(tokenDirPath);
-        File[] tokenFiles = tokenDir.listFiles();
-        int fileCount = tokenFiles.length;
-        long progressPct = Math.max(Math.round(fileCount * ProgressBar.TICKMARK_PCT), 1);
+    /**
+     * Computes the length norms and the maximum weight of every term, and replaces the term document
+     * matrix by the sorted term dictionary, see calculateWeights
+     * @param progress tracker receiving a step for every term weighted
+     */
+    private void computeWeights(ProgressTracker progress) {
+        calculateLengthNorms();
 
-        for (File tokenFile : tokenFiles) {
-            if (documentCounter % progressPct == 0) {
-                ProgressBar.printProgressBar(documentCounter, fileCount);
-            }
+        int[] documentIDs = new int[CompressedPostingList.BLOCK_SIZE];
+        int[] termCounts = new int[CompressedPostingList.BLOCK_SIZE];
 
-            // calculate the weight of each term in each document
-            try (CSVParser tokenParser = CSVParser.parse(tokenFile, StandardCharsets.UTF_8, CSVFormat.DEFAULT)) {
-                for (CSVRecord tokenRecord : tokenParser) {
-                    String token = tokenRecord.get(0);
-                    int frequency = Integer.parseInt(tokenRecord.get(1));
+        for (TDMHeader header : termMatrix.values()) {
+            // calculate the weight of the term in each document that contains it
+            // and remember the largest one as the term's score upper bound
+            CompressedPostingList postings = header.getCompressedPostings();
+            double idf = idf(header);
+            double maxWeight = 0;
+            for (int block = 0; block < postings.getBlockCount(); block++) {
+                int count = postings.decodeBlock(block, documentIDs, termCounts);
+                for (int i = 0; i < count; i++) {
+                    maxWeight = Math.max(maxWeight, termWeight(idf, termCounts[i], lengthNorms[documentIDs[i]]));
+                }
+            }
+            header.setMaxWeight(maxWeight);
+            progress.step();
+        }
 
-                    TDMHeader posting = termMatrix.get(token);
+        dictionary = offHeap ? OffHeapTermDictionary.copyOf(termMatrix.values())
+                : new TermDictionary(termMatrix.values());
+        termMatrix = null;
+        if (impactBits > 0) {
+            buildImpacts();
+        }
+    }
 
-                    // compute the term weight
-                    int nqi = posting.getLen();
-                    double termWeight = BM25(frequency, nqi, numDocuments, documentLengths.get(tokenFile.getName()),
-                            avgDocLength);
+    /**
+     * Builds the impact-ordered postings of every term, or drops them if impactBits is 0. Weights are
+     * quantized linearly: the largest weight of any term gets the largest impact, and every other weight
+     * the nearest impact, at least 1. All terms share the scale, so adding up the impacts of a document
+     * ranks it about as adding up its weights does. A shard takes the largest weight of the whole corpus
+     * instead of its own, so all shards share the scale too and their results merge as those of a single
+     * index would; until that weight is set, it builds no impacts.
+     */
+    private void buildImpacts() {
+        if (impactBits == 0 || (statistics != null && corpusLargestWeight == 0)) {
+            for (TDMHeader header : dictionary.getHeaders()) {
+                header.setImpactPostings(null);
+            }
+            return;
+        }
+        double largestWeight = corpusLargestWeight;
+        if (statistics == null) {
+            for (TDMHeader header : dictionary.getHeaders()) {
+                largestWeight = Math.max(largestWeight, header.getMaxWeight());
+            }
+        }
+        impactWeight = largestWeight / ((1 << impactBits) - 1);
 
-                    // locate the term weight in the postings file and update the weight
-                    for (TDMNode node : posting) {
-                        if (node.getDocumentID().equals(tokenFile.getName())) {
-                            node.setTermWeight(termWeight);
-                            break;
-                        }
-                    }
+        int[] documentIDs = new int[CompressedPostingList.BLOCK_SIZE];
+        int[] termCounts = new int[CompressedPostingList.BLOCK_SIZE];
+        for (TDMHeader header : dictionary.getHeaders()) {
+            CompressedPostingList postings = header.getCompressedPostings();
+            double idf = idf(header);
+            int[] postingDocuments = new int[postings.size()];
+            int[] impacts = new int[postings.size()];
+            int size = 0;
+            for (int block = 0; block < postings.getBlockCount(); block++) {
+                int count = postings.decodeBlock(block, documentIDs, termCounts);
+                for (int i = 0; i < count; i++) {
+                    double weight = termWeight(idf, termCounts[i], lengthNorms[documentIDs[i]]);
+                    postingDocuments[size] = documentIDs[i];
+                    impacts[size++] = impact(weight);
                 }
-            } catch (IOException e) {
-                e.printStackTrace();
             }
+            header.setImpactPostings(new ImpactPostingList(postingDocuments, impacts, size));
+        }
+    }
 
-            documentCounter++;
+    /**
+     * Computes the IDF of a term over the whole corpus; for a shard, that includes the documents of
+     * the other shards
+     * @param header header of the term
+     * @return IDF of the term
+     */
+    private double idf(TDMHeader header) {
+        if (statistics == null) {
+            return IDF(numDocuments, header.getLen());
         }
-        System.out.println();
+        return IDF(statistics.getNumDocuments(), statistics.getDocumentFrequency(header.getTerm()));
+    }
+
+    /**
+     * Quantizes a term weight to the nearest impact, see buildImpacts
+     * @param weight term weight
+     * @return impact of the weight, at least 1
+     */
+    private int impact(double weight) {
+        return Math.max(1, (int) Math.round(weight / impactWeight));
+    }
+
+    /**
+     * Counts the terms and postings of the index and estimates its memory use, for the metrics of
+     * this QueryEngine
+     */
+    private void recordIndexSize() {
+        metrics.recordIndexSize(numDocuments, dictionary.size(), countPostings(), estimateBytes());
+    }
+
+    /**
+     * Counts the postings of the term dictionary
+     * @return number of postings
+     */
+    private long countPostings() {
+        long postings = 0;
+        for (TDMHeader header : dictionary.getHeaders()) {
+            postings += header.getLen();
+        }
+        return postings;
+    }
+
+    /**
+     * Estimates the memory used by the term dictionary and the document table
+     * @return approximate size of the index in bytes
+     */
+    private long estimateBytes() {
+        long bytes = dictionary.sizeInBytes();
+        if (impactBits > 0) {
+            for (TDMHeader header : dictionary.getHeaders()) {
+                if (header.getImpactPostings() != null) {
+                    bytes += header.getImpactPostings().sizeInBytes();
+                }
+            }
+        }
+        for (int id = 0; id < documents.size(); id++) {
+            String name = documents.getName(id);
+            bytes += DOCUMENT_OVERHEAD_BYTES + (name == null ? 0 : 2L * name.length());
+        }
+        return bytes;
     }
 
     /**
      * Queries the index on a specific string, and returns a list of documents and weights associated with given query.
-     * Query is normalized before search is carried out.
+     * Query is normalized before search is carried out. Every matching document is returned;
+     * use query(String, int) when only the best few documents are needed. Terms may be required or
+     * excluded and quoted phrases are required, see ParsedQuery and rankRequired, and documents
+     * containing every term of a query of several terms get a proximity boost, see proximityBoost.
+     * Results of recent queries are served from the query cache.
+     * Safe to call from any number of threads at once.
      * @param query String passed by user to use as query on index
-     * @return List of documents and weights associated with passed query
+     * @return unmodifiable List of documents and weights associated with passed query
      */
+    @Override
     public List<Entry<String, Double>> query(String query) {
         // return the most relevant documents for a given query
+        return answer(query, 0);
+    }
 
-        // simplest case
-        if (query.isBlank()) {
-            System.out.println("Querying: (empty)");
-            return new ArrayList<>();
+    /**
+     * Answers a query from the query cache, or ranks its documents and caches them, and records the
+     * latency and cost of the query in the metrics of this QueryEngine
+     * @param query String passed by user to use as query on index
+     * @param k maximum number of documents to return, or 0 to return all of them
+     * @return unmodifiable List of documents and weights, most relevant first
+     */
+    private List<Entry<String, Double>> answer(String query, int k) {
+        long start = System.nanoTime();
+        ParsedQuery parsedQuery = parseQuery(query);
+        List<String> key = parsedQuery.getKey();
+        lock.readLock().lock();
+        try {
+            List<Entry<String, Double>> cached = cache.get(key, k, generation);
+            if (cached != null) {
+                metrics.recordQuery(System.nanoTime() - start, 0, true);
+                return cached;
+            }
+            PostingCounter scanned = new PostingCounter();
+            List<Entry<String, Double>> ranking = rank(parsedQuery, k, scanned);
+            metrics.recordQuery(System.nanoTime() - start, scanned.getCount(), false);
+            return cache.put(key, k, generation, ranking);
+        } finally {
+            lock.readLock().unlock();
         }
+    }
 
-        Map<String, Double> documentWeights = new HashMap<>();
+    /**
+     * Ranks the documents matching a parsed query. A ShardedQueryEngine calls this for each of its shards,
+     * whose postings it keeps from changing while queries run.
+     * @param parsedQuery parsed query
+     * @param k maximum number of documents to return, or 0 to return all of them
+     * @param scanned counter receiving the number of postings decoded
+     * @return List of documents and weights, most relevant first
+     */
+    List<Entry<String, Double>> rank(ParsedQuery parsedQuery, int k, PostingCounter scanned) {
+        boolean[] excluded = excludedDocuments(parsedQuery, scanned);
+        if (!parsedQuery.getRequiredTerms().isEmpty() || !parsedQuery.getPhrases().isEmpty()) {
+            return rankRequired(parsedQuery, excluded, k, scanned);
+        }
+        List<TDMHeader> headers = lookupTerms(parsedQuery.getTerms());
+        List<TDMHeader> proximity = proximityHeaders(parsedQuery.getTerms(), headers);
+        if (k == 0) {
+            return rankAll(headers, proximity, excluded, scanned);
+        }
+        // impacts hold no positions, so queries earning a proximity boost are evaluated exactly, and so
+        // are queries of more terms than rankImpacts can keep track of
+        return impactBits > 0 && proximity == null && headers.size() <= Long.SIZE
+                ? rankImpacts(headers, excluded, k, scanned)
+                : rankTop(headers, proximity, excluded, k, scanned);
+    }
 
-        // preprocess the query
-        List<String> queryTerms = normalizeQuery(query);
+    /**
+     * Marks the documents containing an excluded term or phrase of the query. The postings of excluded
+     * terms are read in full, so an exclusion costs about as much as an optional term of the same frequency.
+     * @param parsedQuery parsed query
+     * @param scanned counter receiving the number of postings decoded
+     * @return flags indexed by document ID, or null if the query excludes nothing
+     */
+    private boolean[] excludedDocuments(ParsedQuery parsedQuery, PostingCounter scanned) {
+        List<TDMHeader> headers = lookupTerms(parsedQuery.getExcludedTerms());
+        List<List<String>> phrases = parsedQuery.getExcludedPhrases();
+        if (headers.isEmpty() && phrases.isEmpty()) {
+            return null;
+        }
+        boolean[] excluded = new boolean[documents.size()];
+        int[] documentIDs = new int[CompressedPostingList.BLOCK_SIZE];
+        for (TDMHeader header : headers) {
+            CompressedPostingList postings = header.getCompressedPostings();
+            for (int block = 0; block < postings.getBlockCount(); block++) {
+                postings.decodeDocuments(block, documentIDs);
+                scanned.add(postings.getBlockSize(block));
+                for (int i = 0; i < postings.getBlockSize(block); i++) {
+                    excluded[documentIDs[i]] = true;
+                }
+            }
+        }
+
+        phrases:
+        for (List<String> phrase : phrases) {
+            PostingCursor[] cursors = new PostingCursor[phrase.size()];
+            for (int i = 0; i < cursors.length; i++) {
+                TDMHeader header = dictionary.get(phrase.get(i));
+                // a phrase containing a term that does not exist in the index excludes nothing
+                if (header == null) {
+                    continue phrases;
+                }
+                cursors[i] = new PostingCursor(header, scanned);
+            }
+            // phraseFrequency needs the cursors in phrase order, so the first term leads the intersection
+            int[] scratch = new int[cursors.length];
+            for (int documentID = alignCursors(cursors); documentID >= 0; documentID = alignCursors(cursors)) {
+                if (phraseFrequency(cursors, scratch) > 0) {
+                    excluded[documentID] = true;
+                }
+                cursors[0].next();
+            }
+        }
+        return excluded;
+    }
+
+    /**
+     * Ranks every document containing at least one of the passed terms
+     * @param headers headers of the query terms
+     * @param proximity distinct headers whose proximity boosts documents containing all of them, or null
+     * @param excluded flags of the documents that must not be returned, or null
+     * @param scanned counter receiving the number of postings decoded
+     * @return List of documents and weights, most relevant first
+     */
+    private List<Entry<String, Double>> rankAll(List<TDMHeader> headers, List<TDMHeader> proximity,
+            boolean[] excluded, PostingCounter scanned) {
+        // sum all of the weights for each document in a reusable accumulator,
+        // decoding the postings one block at a time
+        ScoreAccumulator accumulator = accumulators.poll();
+        if (accumulator == null) {
+            accumulator = new ScoreAccumulator(documents.size());
+        }
+        accumulator.ensureCapacity(documents.size());
+        int[] documentIDs = accumulator.getDocumentBuffer();
+        int[] termCounts = accumulator.getCountBuffer();
+        double[] termWeights = accumulator.getWeightBuffer();
+        try {
+            for (TDMHeader header : headers) {
+                CompressedPostingList postings = header.getCompressedPostings();
+                double idf = idf(header);
+                for (int block = 0; block < postings.getBlockCount(); block++) {
+                    int count = postings.decodeBlock(block, documentIDs, termCounts);
+                    scanned.add(count);
+                    for (int i = 0; i < count; i++) {
+                        termWeights[i] = termWeight(idf, termCounts[i], lengthNorms[documentIDs[i]]);
+                    }
+                    accumulator.add(documentIDs, termWeights, count);
+                }
+            }
+            if (proximity != null) {
+                addProximityBoosts(accumulator, proximity, scanned);
+            }
+
+            // now rank every matching document
+            int matchCount = accumulator.getTouchedCount();
+            TopDocuments ranking = new TopDocuments(matchCount);
+            for (int i = 0; i < matchCount; i++) {
+                int documentID = accumulator.getTouchedDocument(i);
+                if (excluded == null || !excluded[documentID]) {
+                    ranking.offer(documentID, accumulator.getScore(documentID));
+                }
+            }
+            return toResults(ranking);
+        } finally {
+            accumulator.reset();
+            accumulators.offer(accumulator);
+        }
+    }
+
+    /**
+     * Queries the index on a specific string, and returns the k documents with the highest weights.
+     * Documents are evaluated in ID order with MaxScore dynamic pruning: once k documents are known,
+     * terms whose combined maximum weight cannot beat the k-th best document no longer produce candidates,
+     * and their postings are only probed for documents that can still make it into the result.
+     * Only k documents are kept in a bounded min-heap, so the result is identical to the first k
+     * documents of query(String). Results of recent queries are served from the query cache.
+     * Safe to call from any number of threads at once.
+     * @param query String passed by user to use as query on index
+     * @param k maximum number of documents to return
+     * @return unmodifiable List of at most k documents and weights, most relevant first
+     */
+    @Override
+    public List<Entry<String, Double>> query(String query, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        return answer(query, k);
+    }
+
+    /**
+     * Ranks the k documents with the highest weights for the passed terms, see query(String, int).
+     * The proximity boost a document may get is added to every score bound used for pruning, and
+     * excluded documents are passed over like pruned ones.
+     * @param headers headers of the query terms
+     * @param proximity distinct headers whose proximity boosts documents containing all of them, or null
+     * @param excluded flags of the documents that must not be returned, or null
+     * @param k maximum number of documents to return
+     * @param scanned counter receiving the number of postings decoded
+     * @return List of at most k documents and weights, most relevant first
+     */
+    private List<Entry<String, Double>> rankTop(List<TDMHeader> headers, List<TDMHeader> proximity,
+            boolean[] excluded, int k, PostingCounter scanned) {
+        int n = headers.size();
+
+        // cursors are ordered by increasing maximum weight; upperBounds[i] is the most that
+        // cursors 0..i together can add to a document's score
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> headers.get(i).getMaxWeight()));
+
+        PostingCursor[] cursors = new PostingCursor[n];
+        double[] idfs = new double[n];
+        double[] upperBounds = new double[n];
+        for (int i = 0; i < n; i++) {
+            TDMHeader header = headers.get(order[i]);
+            cursors[i] = new PostingCursor(header, scanned);
+            idfs[i] = idf(header);
+            upperBounds[i] = (i == 0 ? 0 : upperBounds[i - 1]) + cursors[i].getMaxWeight();
+        }
+
+        // the cursor of the first occurrence of each distinct term positions the proximity boost
+        double proximityBound = 0;
+        PostingCursor[] proximityCursors = null;
+        int[] proximitySlots = null;
+        if (proximity != null) {
+            proximityBound = proximityBound(proximity);
+            proximityCursors = new PostingCursor[proximity.size()];
+            proximitySlots = new int[proximity.size()];
+            for (int j = 0; j < proximity.size(); j++) {
+                int slot = 0;
+                while (headers.get(order[slot]) != proximity.get(j)) {
+                    slot++;
+                }
+                proximitySlots[j] = slot;
+                proximityCursors[j] = cursors[slot];
+            }
+        }
+        int[] proximityScratch = new int[proximity == null ? 0 : proximity.size()];
+
+        TopDocuments topDocuments = new TopDocuments(k);
+        // cursors before firstEssential cannot produce a top-k document on their own
+        int firstEssential = 0;
+        double[] termWeights = new double[n];
+        // cursors positioned on the candidate; they move on once the candidate is scored
+        boolean[] matched = new boolean[n];
+
+        while (true) {
+            // the next candidate is the smallest document ID among the essential cursors
+            int candidate = Integer.MAX_VALUE;
+            for (int i = firstEssential; i < n; i++) {
+                if (!cursors[i].isExhausted()) {
+                    candidate = Math.min(candidate, cursors[i].getDocumentID());
+                }
+            }
+            if (candidate == Integer.MAX_VALUE) {
+                break;
+            }
+
+            Arrays.fill(termWeights, 0);
+            double score = 0;
+            for (int i = firstEssential; i < n; i++) {
+                PostingCursor cursor = cursors[i];
+                if (!cursor.isExhausted() && cursor.getDocumentID() == candidate) {
+                    double termWeight = termWeight(idfs[i], cursor.getTermCount(), lengthNorms[candidate]);
+                    termWeights[order[i]] = termWeight;
+                    score += termWeight;
+                    matched[i] = true;
+                }
+            }
+
+            // probe the non-essential cursors, largest bound first, while the document can still qualify
+            boolean full = topDocuments.isFull();
+            double threshold = topDocuments.threshold();
+            boolean pruned = excluded != null && excluded[candidate];
+            for (int i = firstEssential - 1; i >= 0 && !pruned; i--) {
+                if (full && score + upperBounds[i] + proximityBound <= threshold) {
+                    pruned = true;
+                    break;
+                }
+                PostingCursor cursor = cursors[i];
+                cursor.advance(candidate);
+                if (!cursor.isExhausted() && cursor.getDocumentID() == candidate) {
+                    double termWeight = termWeight(idfs[i], cursor.getTermCount(), lengthNorms[candidate]);
+                    termWeights[order[i]] = termWeight;
+                    score += termWeight;
+                    matched[i] = true;
+                }
+            }
+
+            if (!pruned) {
+                // sum in query order so scores match query(String) exactly
+                double weight = 0;
+                for (double termWeight : termWeights) {
+                    weight += termWeight;
+                }
+                if (proximity != null && allMatched(proximitySlots, matched)) {
+                    weight += proximityBoost(proximityBound, proximityCursors, proximityScratch);
+                }
+                topDocuments.offer(candidate, weight);
+
+                if (topDocuments.isFull()) {
+                    while (firstEssential < n
+                            && upperBounds[firstEssential] + proximityBound <= topDocuments.threshold()) {
+                        firstEssential++;
+                    }
+                }
+            }
+
+            for (int i = 0; i < n; i++) {
+                if (matched[i]) {
+                    cursors[i].next();
+                    matched[i] = false;
+                }
+            }
+        }
+
+        return toResults(topDocuments);
+    }
 
-        System.out.println("Querying: " + String.join(" ", queryTerms));
+    /**
+     * Ranks the k documents with the highest quantized weights for the passed terms from their
+     * impact-ordered postings, see useImpacts. The segments of all terms are read score-at-a-time,
+     * highest impact first, adding up the impacts of every document they hold. Reading stops once no
+     * other document can overtake the k-th best one: a document not read yet can at most get the
+     * highest impacts left of all terms, and a document already read those of the terms it was not
+     * found in yet. The rest of the postings are never read. The k best documents then get the impacts
+     * of the postings not read, see complete, so they are ranked and weighted by their whole quantized
+     * weight, which differs from the exact one by at most half an impact per term.
+     * @param headers headers of the query terms
+     * @param excluded flags of the documents that must not be returned, or null
+     * @param k maximum number of documents to return
+     * @param scanned counter receiving the number of postings decoded
+     * @return List of at most k documents and weights, most relevant first
+     */
+    private List<Entry<String, Double>> rankImpacts(List<TDMHeader> headers, boolean[] excluded, int k,
+            PostingCounter scanned) {
+        int n = headers.size();
+        ImpactPostingList[] lists = new ImpactPostingList[n];
+        // next segment of each term, and the impact of that segment or 0 once the term is read
+        int[] segments = new int[n];
+        int[] nextImpacts = new int[n];
+        long remaining = 0;
+        for (int i = 0; i < n; i++) {
+            lists[i] = headers.get(i).getImpactPostings();
+            nextImpacts[i] = lists[i].getSegmentCount() == 0 ? 0 : lists[i].getSegmentImpact(0);
+            remaining += nextImpacts[i];
+        }
+
+        ScoreAccumulator accumulator = accumulators.poll();
+        if (accumulator == null) {
+            accumulator = new ScoreAccumulator(documents.size());
+        }
+        accumulator.ensureCapacity(documents.size());
+        int[] documentIDs = accumulator.getDocumentBuffer();
+        try {
+            long unchecked = 0;
+            while (remaining > 0) {
+                // read the segment with the highest impact of any term
+                int term = 0;
+                for (int i = 1; i < n; i++) {
+                    if (nextImpacts[i] > nextImpacts[term]) {
+                        term = i;
+                    }
+                }
+                int count = lists[term].decodeSegment(segments[term], documentIDs);
+                scanned.add(count);
+                accumulator.add(documentIDs, nextImpacts[term], count, term);
+                unchecked += count;
+
+                remaining -= nextImpacts[term];
+                nextImpacts[term] = ++segments[term] == lists[term].getSegmentCount() ? 0
+                        : lists[term].getSegmentImpact(segments[term]);
+                remaining += nextImpacts[term];
+
+                // checking ranks every document found so far, so its cost is spread over the postings read
+                if (remaining > 0 && unchecked * IMPACT_CHECK_RATIO >= accumulator.getTouchedCount()) {
+                    unchecked = 0;
+                    if (isSettled(accumulator, excluded, k, nextImpacts, remaining)) {
+                        break;
+                    }
+                }
+            }
+
+            TopDocuments ranking = new TopDocuments(k);
+            for (int i = 0; i < accumulator.getTouchedCount(); i++) {
+                int documentID = accumulator.getTouchedDocument(i);
+                if (excluded == null || !excluded[documentID]) {
+                    ranking.offer(documentID, accumulator.getScore(documentID));
+                }
+            }
+            int[] candidates = new int[ranking.sort()];
+            for (int i = 0; i < candidates.length; i++) {
+                candidates[i] = ranking.getDocumentID(i);
+            }
+            return complete(headers, candidates, nextImpacts, accumulator, scanned);
+        } finally {
+            accumulator.reset();
+            accumulators.offer(accumulator);
+        }
+    }
+
+    /**
+     * Adds to the impacts of the best documents those of the terms whose postings holding them were not
+     * read, so every one of them gets its whole quantized weight, and ranks them. The missing impacts are
+     * found in the document-ordered postings, and computed from the term counts as by buildImpacts.
+     * @param headers headers of the query terms
+     * @param candidates IDs of the best documents, in any order
+     * @param nextImpacts highest impact left of each term, 0 once the term is read
+     * @param accumulator accumulator holding the impacts read and the terms each document was found in
+     * @param scanned counter receiving the number of postings decoded
+     * @return List of the documents and their quantized weights, most relevant first
+     */
+    private List<Entry<String, Double>> complete(List<TDMHeader> headers, int[] candidates, int[] nextImpacts,
+            ScoreAccumulator accumulator, PostingCounter scanned) {
+        long[] impacts = new long[candidates.length];
+        for (int c = 0; c < candidates.length; c++) {
+            impacts[c] = (long) accumulator.getScore(candidates[c]);
+        }
+        // cursors only move forward, so the candidates are visited in document order
+        Integer[] order = new Integer[candidates.length];
+        for (int c = 0; c < candidates.length; c++) {
+            order[c] = c;
+        }
+        Arrays.sort(order, Comparator.comparingInt(c -> candidates[c]));
+
+        for (int i = 0; i < headers.size(); i++) {
+            // a term read to its end has given every document all of its impacts
+            if (nextImpacts[i] == 0) {
+                continue;
+            }
+            PostingCursor cursor = null;
+            double idf = idf(headers.get(i));
+            for (int c : order) {
+                int candidate = candidates[c];
+                if ((accumulator.getTerms(candidate) & 1L << i) != 0) {
+                    continue;
+                }
+                if (cursor == null) {
+                    cursor = new PostingCursor(headers.get(i), scanned);
+                }
+                cursor.advance(candidate);
+                if (!cursor.isExhausted() && cursor.getDocumentID() == candidate) {
+                    impacts[c] += impact(termWeight(idf, cursor.getTermCount(), lengthNorms[candidate]));
+                }
+            }
+        }
 
+        TopDocuments ranking = new TopDocuments(candidates.length);
+        for (int c = 0; c < candidates.length; c++) {
+            ranking.offer(candidates[c], impacts[c] * impactWeight);
+        }
+        return toResults(ranking);
+    }
+
+    /**
+     * Checks whether the k documents with the most impacts so far are the k best ones, whatever the
+     * postings left to read hold, see rankImpacts
+     * @param accumulator accumulator holding the impacts read so far and the terms each document was found in
+     * @param excluded flags of the documents that must not be returned, or null
+     * @param k number of documents returned
+     * @param nextImpacts highest impact left of each term, 0 once the term is read
+     * @param remaining sum of nextImpacts
+     * @return true if no document can overtake the k-th best one any more, false otherwise
+     */
+    private static boolean isSettled(ScoreAccumulator accumulator, boolean[] excluded, int k, int[] nextImpacts,
+            long remaining) {
+        TopDocuments ranking = new TopDocuments(k);
+        for (int i = 0; i < accumulator.getTouchedCount(); i++) {
+            int documentID = accumulator.getTouchedDocument(i);
+            if (excluded == null || !excluded[documentID]) {
+                ranking.offer(documentID, accumulator.getScore(documentID));
+            }
+        }
+        int count = ranking.sort();
+        // until k documents were read, any document not read yet may still get in; one reaching the
+        // weakest score may too, as ties go to the lower document ID
+        if (count < k || ranking.getScore(k - 1) <= remaining) {
+            return false;
+        }
+        double weakest = ranking.getScore(k - 1);
+        int weakestID = ranking.getDocumentID(k - 1);
+        int[] best = new int[k];
+        for (int i = 0; i < k; i++) {
+            best[i] = ranking.getDocumentID(i);
+        }
+        Arrays.sort(best);
+
+        for (int i = 0; i < accumulator.getTouchedCount(); i++) {
+            int documentID = accumulator.getTouchedDocument(i);
+            double score = accumulator.getScore(documentID);
+            if (score + remaining < weakest || (score + remaining == weakest && documentID > weakestID)
+                    || (excluded != null && excluded[documentID]) || Arrays.binarySearch(best, documentID) >= 0) {
+                continue;
+            }
+            // the terms the document was found in have nothing more to give it
+            double bound = score + remaining;
+            for (long terms = accumulator.getTerms(documentID); terms != 0; terms &= terms - 1) {
+                bound -= nextImpacts[Long.numberOfTrailingZeros(terms)];
+            }
+            if (bound > weakest || (bound == weakest && documentID < weakestID)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Ranks the documents that contain every required term and phrase of the query. The candidates are
+     * found by intersecting the postings of the required terms and of all terms of all phrases, rarest
+     * first: the rarest term proposes each document, and the others skip ahead to it, so the cost grows
+     * with the postings of the rarest term rather than with those of the most common one. Positions are
+     * only decoded for documents that can match. A phrase is weighted like a single term whose IDF is
+     * the sum of the IDFs of its terms and whose frequency is the number of times the phrase occurs;
+     * required terms add their usual weights, and so do the optional terms a document contains. Without
+     * positions, a phrase matches every document containing all of its terms, with the frequency of its
+     * least frequent term. Queries without phrases give a proximity boost to the documents containing
+     * all of their required and optional terms, as plain queries do.
+     * @param parsedQuery parsed query containing at least one required term or phrase
+     * @param excluded flags of the documents that must not be returned, or null
+     * @param k maximum number of documents to return, or 0 to return all of them
+     * @param scanned counter receiving the number of postings decoded
+     * @return List of documents and weights, most relevant first
+     */
+    private List<Entry<String, Double>> rankRequired(ParsedQuery parsedQuery, boolean[] excluded, int k,
+            PostingCounter scanned) {
+        List<List<String>> phrases = parsedQuery.getPhrases();
+        PostingCursor[][] phraseCursors = new PostingCursor[phrases.size()][];
+        double[] phraseIdfs = new double[phrases.size()];
+        List<PostingCursor> required = new ArrayList<>();
+        int longestPhrase = 0;
+        for (int p = 0; p < phrases.size(); p++) {
+            List<String> phrase = phrases.get(p);
+            phraseCursors[p] = new PostingCursor[phrase.size()];
+            for (int i = 0; i < phrase.size(); i++) {
+                TDMHeader header = dictionary.get(phrase.get(i));
+                // a phrase containing a term that does not exist in the index cannot match any document
+                if (header == null) {
+                    return List.of();
+                }
+                phraseCursors[p][i] = new PostingCursor(header, scanned);
+                phraseIdfs[p] += idf(header);
+                required.add(phraseCursors[p][i]);
+            }
+            longestPhrase = Math.max(longestPhrase, phrase.size());
+        }
+
+        // required terms come first among the scored terms, then the optional ones
+        List<String> requiredTerms = parsedQuery.getRequiredTerms();
+        List<TDMHeader> headers = new ArrayList<>();
+        for (String term : requiredTerms) {
+            TDMHeader header = dictionary.get(term);
+            if (header == null) {
+                return List.of();
+            }
+            headers.add(header);
+        }
+        headers.addAll(lookupTerms(parsedQuery.getTerms()));
+        int n = headers.size();
+        PostingCursor[] cursors = new PostingCursor[n];
+        double[] idfs = new double[n];
+        // cursors positioned on the candidate; required ones always are
+        boolean[] matched = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            cursors[i] = new PostingCursor(headers.get(i), scanned);
+            idfs[i] = idf(headers.get(i));
+            if (i < requiredTerms.size()) {
+                required.add(cursors[i]);
+                matched[i] = true;
+            }
+        }
+        // the rarest term leads the intersection
+        required.sort(Comparator.comparingInt(PostingCursor::size));
+        PostingCursor[] candidates = required.toArray(new PostingCursor[0]);
+
+        List<TDMHeader> proximity = null;
+        if (phrases.isEmpty()) {
+            List<String> scoredTerms = new ArrayList<>(requiredTerms);
+            scoredTerms.addAll(parsedQuery.getTerms());
+            proximity = proximityHeaders(scoredTerms, headers);
+        }
+        // the cursor of the first occurrence of each distinct term positions the proximity boost
+        double proximityBound = 0;
+        PostingCursor[] proximityCursors = null;
+        int[] proximitySlots = null;
+        if (proximity != null) {
+            proximityBound = proximityBound(proximity);
+            proximityCursors = new PostingCursor[proximity.size()];
+            proximitySlots = new int[proximity.size()];
+            for (int j = 0; j < proximity.size(); j++) {
+                proximitySlots[j] = headers.indexOf(proximity.get(j));
+                proximityCursors[j] = cursors[proximitySlots[j]];
+            }
+        }
+
+        TopDocuments ranking = new TopDocuments(k == 0 ? documents.size() : k);
+        int[] scratch = new int[Math.max(longestPhrase, proximity == null ? 0 : proximity.size())];
+        for (int documentID = alignCursors(candidates); documentID >= 0; documentID = alignCursors(candidates)) {
+            double score = 0;
+            boolean matches = excluded == null || !excluded[documentID];
+            for (int p = 0; p < phraseCursors.length && matches; p++) {
+                int frequency = phraseFrequency(phraseCursors[p], scratch);
+                score += termWeight(phraseIdfs[p], frequency, lengthNorms[documentID]);
+                matches = frequency > 0;
+            }
+            if (matches) {
+                for (int i = 0; i < n; i++) {
+                    PostingCursor cursor = cursors[i];
+                    if (i >= requiredTerms.size()) {
+                        cursor.advance(documentID);
+                        matched[i] = !cursor.isExhausted() && cursor.getDocumentID() == documentID;
+                    }
+                    if (matched[i]) {
+                        score += termWeight(idfs[i], cursor.getTermCount(), lengthNorms[documentID]);
+                    }
+                }
+                if (proximity != null && allMatched(proximitySlots, matched)) {
+                    score += proximityBoost(proximityBound, proximityCursors, scratch);
+                }
+                ranking.offer(documentID, score);
+            }
+            candidates[0].next();
+        }
+        return toResults(ranking);
+    }
+
+    /**
+     * Moves the cursors forward to the next document that all of them contain. The first cursor
+     * leads, so it should be the one with the fewest postings; each cursor gallops ahead to the
+     * largest document ID seen so far until they all agree.
+     * @param cursors cursors to be aligned
+     * @return document ID all cursors are positioned on, or -1 if one of them is exhausted
+     */
+    private static int alignCursors(PostingCursor[] cursors) {
+        if (cursors[0].isExhausted()) {
+            return -1;
+        }
+        int target = cursors[0].getDocumentID();
+        int agreeing = 1;
+        int i = 0;
+        while (agreeing < cursors.length) {
+            i = (i + 1) % cursors.length;
+            PostingCursor cursor = cursors[i];
+            cursor.advance(target);
+            if (cursor.isExhausted()) {
+                return -1;
+            }
+            if (cursor.getDocumentID() == target) {
+                agreeing++;
+            } else {
+                target = cursor.getDocumentID();
+                agreeing = 1;
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Counts the occurrences of a phrase in the document all of its cursors are positioned on
+     * @param cursors cursors of the terms of the phrase, in phrase order
+     * @param next scratch array holding at least one entry per term
+     * @return number of positions at which the phrase starts
+     */
+    private static int phraseFrequency(PostingCursor[] cursors, int[] next) {
+        int frequency = Integer.MAX_VALUE;
+        boolean positions = true;
+        for (PostingCursor cursor : cursors) {
+            frequency = Math.min(frequency, cursor.getTermCount());
+            positions &= cursor.hasPositions();
+        }
+        if (cursors.length == 1 || !positions) {
+            return frequency;
+        }
+
+        // positions only grow, so every later term is scanned once while looking for start + i
+        Arrays.fill(next, 0);
+        int[] firstPositions = cursors[0].getPositions();
+        int firstCount = cursors[0].getTermCount();
+        frequency = 0;
+        starts:
+        for (int f = 0; f < firstCount; f++) {
+            int start = firstPositions[f];
+            for (int i = 1; i < cursors.length; i++) {
+                int[] termPositions = cursors[i].getPositions();
+                int count = cursors[i].getTermCount();
+                while (next[i] < count && termPositions[next[i]] < start + i) {
+                    next[i]++;
+                }
+                if (next[i] == count) {
+                    break starts;
+                }
+                if (termPositions[next[i]] != start + i) {
+                    continue starts;
+                }
+            }
+            frequency++;
+        }
+        return frequency;
+    }
+
+    /**
+     * Selects the terms whose proximity boosts documents containing all of them. Only queries of at
+     * least two distinct terms qualify, without prefix queries and with every term indexed with positions.
+     * @param queryTerms normalized query terms
+     * @param headers headers of the query terms, as found by lookupTerms
+     * @return distinct headers of the query terms in query order, or null if the query does not qualify
+     */
+    private static List<TDMHeader> proximityHeaders(List<String> queryTerms, List<TDMHeader> headers) {
         for (String term : queryTerms) {
-            TDMHeader posting = termMatrix.get(term);
+            if (term.endsWith(WILDCARD)) {
+                return null;
+            }
+        }
+        // a term that does not exist in the index leaves no document containing all of them
+        if (headers.size() != queryTerms.size()) {
+            return null;
+        }
+        List<TDMHeader> distinct = new ArrayList<>();
+        for (TDMHeader header : headers) {
+            if (!header.getCompressedPostings().hasPositions()) {
+                return null;
+            }
+            if (!distinct.contains(header)) {
+                distinct.add(header);
+            }
+        }
+        return distinct.size() > 1 ? distinct : null;
+    }
+
+    /**
+     * Computes the largest proximity boost a document can get for the passed terms
+     * @param proximity distinct headers of the query terms
+     * @return PROXIMITY_WEIGHT times the summed IDF of the terms
+     */
+    private double proximityBound(List<TDMHeader> proximity) {
+        double idf = 0;
+        for (TDMHeader header : proximity) {
+            idf += idf(header);
+        }
+        return PROXIMITY_WEIGHT * idf;
+    }
 
-            // if the term exists, sum all of the weights for each document
-            if (posting != null) {
-                for (TDMNode node : posting) {
-                    documentWeights.put(node.getDocumentID(),
-                            documentWeights.getOrDefault(node.getDocumentID(), 0d) + node.getTermWeight());
+    /**
+     * Computes the proximity boost of the document all of the cursors are positioned on: bound
+     * scaled by the number of terms over the length of the smallest span of the document containing
+     * every term, so a document where the terms are adjacent gets the whole bound
+     * @param bound largest boost, as computed by proximityBound
+     * @param cursors cursors of the distinct query terms
+     * @param next scratch array holding at least one entry per cursor
+     * @return proximity boost of the document
+     */
+    private static double proximityBoost(double bound, PostingCursor[] cursors, int[] next) {
+        // slide over the positions of all terms in order, always moving past the smallest one
+        Arrays.fill(next, 0);
+        int smallestSpan = Integer.MAX_VALUE;
+        while (smallestSpan > cursors.length) {
+            int first = Integer.MAX_VALUE;
+            int last = -1;
+            int firstCursor = 0;
+            for (int i = 0; i < cursors.length; i++) {
+                int position = cursors[i].getPositions()[next[i]];
+                if (position < first) {
+                    first = position;
+                    firstCursor = i;
                 }
+                last = Math.max(last, position);
+            }
+            smallestSpan = Math.min(smallestSpan, last - first + 1);
+            if (++next[firstCursor] == cursors[firstCursor].getTermCount()) {
+                break;
             }
         }
+        return bound * cursors.length / smallestSpan;
+    }
 
-        // now turn the map into a list of document/weight pairs and sort
-        return documentWeights.entrySet()
-                .stream()
-                .sorted(Map.Entry.comparingByValue())
-                .collect(Collectors.toList())
-                .reversed();
+    /**
+     * Checks whether every cursor positioning the proximity boost is on the candidate document
+     * @param slots indexes of the cursors of the distinct query terms
+     * @param matched flags of the cursors positioned on the candidate
+     * @return true if the candidate contains every term, false otherwise
+     */
+    private static boolean allMatched(int[] slots, boolean[] matched) {
+        for (int slot : slots) {
+            if (!matched[slot]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the proximity boost of every document containing all of the passed terms to its score.
+     * Positions are only decoded for those documents.
+     * @param accumulator accumulator holding the scores of the query
+     * @param proximity distinct headers of the query terms
+     * @param scanned counter receiving the number of postings decoded
+     */
+    private void addProximityBoosts(ScoreAccumulator accumulator, List<TDMHeader> proximity,
+            PostingCounter scanned) {
+        double bound = proximityBound(proximity);
+        PostingCursor[] cursors = new PostingCursor[proximity.size()];
+        for (int i = 0; i < cursors.length; i++) {
+            cursors[i] = new PostingCursor(proximity.get(i), scanned);
+        }
+        Arrays.sort(cursors, Comparator.comparingInt(PostingCursor::size));
+        int[] scratch = new int[cursors.length];
+        for (int documentID = alignCursors(cursors); documentID >= 0; documentID = alignCursors(cursors)) {
+            accumulator.add(documentID, proximityBoost(bound, cursors, scratch));
+            cursors[0].next();
+        }
+    }
+
+    /**
+     * Converts ranked documents into the list of document names and weights returned by queries
+     * @param ranking ranked documents, emptied by this method
+     * @return List of documents and weights, most relevant first
+     */
+    private List<Entry<String, Double>> toResults(TopDocuments ranking) {
+        int count = ranking.sort();
+        List<Entry<String, Double>> results = new ArrayList<>(count);
+        for (int rank = 0; rank < count; rank++) {
+            results.add(Map.entry(documents.getName(ranking.getDocumentID(rank)), ranking.getScore(rank)));
+        }
+        return results;
+    }
+
+    /**
+     * Splits the query into optional, required and excluded terms and phrases, and normalizes them
+     * @param query String passed by user to use as query on index
+     * @return parsed query
+     */
+    private ParsedQuery parseQuery(String query) {
+        return ParsedQuery.parse(query, Tokenizer.ANALYZER);
+    }
+
+    /**
+     * Looks up the postings of each query term.
+     * A term ending in '*' is a prefix query and expands to every indexed term starting with the
+     * rest of it; each expanded term is scored like a separate query term.
+     * @param queryTerms normalized query terms
+     * @return headers of the query terms that occur in the index, in query order
+     */
+    private List<TDMHeader> lookupTerms(List<String> queryTerms) {
+        List<TDMHeader> headers = new ArrayList<>();
+        for (String term : queryTerms) {
+            if (term.endsWith(WILDCARD)) {
+                // a lone wildcard would expand to the whole vocabulary, so it is ignored
+                String prefix = term.substring(0, term.length() - WILDCARD.length());
+                if (!prefix.isEmpty()) {
+                    headers.addAll(dictionary.getPrefixed(prefix));
+                }
+                continue;
+            }
+
+            TDMHeader header = dictionary.get(term);
+
+            // terms that do not exist in the index cannot match any document
+            if (header != null) {
+                headers.add(header);
+            }
+        }
+        return headers;
     }
 
     /**
      * Normalizes passed terms after splitting query words into individual tokens.
+     * Uses the same Analyzer as tokenization, so query terms match the indexed terms.
+     * Required and excluded terms follow the optional ones, prefixed with + and -, and quoted phrases
+     * come last, each as a single entry in quotes.
      * @param query query string that will be normalized
      * @return list of Strings following normalization of query.
      */
-    private List<String> normalizeQuery(String query) {
+    @Override
+    public List<String> normalizeQuery(String query) {
         // 1. split on whitespace
         // 2. downcase
         // 3. remove (most) symbols
-        // 4. remove empty strings
-        String[] queryTerms = query.split("\\s+");
-        return Arrays.asList(queryTerms).stream()
-                .map(String::toLowerCase)
-                .map(t -> t.replaceAll("[!()_,.?]", ""))
-                .filter(t -> t.length() != 0)
-                .collect(Collectors.toList());
+        // 4. remove empty strings and stopwords
+        return parseQuery(query).getKey();
+    }
+
+    /**
+     * Obtains the sorted term dictionary
+     * @return dictionary of terms and their postings
+     */
+    TermDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Obtains the metrics of this QueryEngine: the size of its index and the latency and cost of its queries
+     * @return metrics of this QueryEngine
+     */
+    @Override
+    public QueryEngineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Obtains the cache of recent query results, whose counters help to size it
+     * @return cache of recent query results
+     */
+    public QueryCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Obtains the generation of the index, which increases every time the index is updated
+     * @return generation of the index
+     */
+    @Override
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Obtains the table of document names and lengths
+     * @return table of document names and lengths
+     */
+    DocumentTable getDocuments() {
+        return documents;
+    }
+
+    /**
+     * Obtains the total number of documents in the corpus
+     * @return total number of documents in the corpus
+     */
+    @Override
+    public int getNumDocuments() {
+        return numDocuments;
+    }
+
+    /**
+     * Obtains the sum of all document lengths in the corpus
+     * @return sum of all document lengths in the corpus
+     */
+    public int getTotalDocumentLengths() {
+        return totalDocumentLengths;
+    }
+
+    /**
+     * Obtains the fingerprint of the corpus this index was built from
+     * @return corpus fingerprint, as computed by CorpusManifest
+     */
+    public long getCorpusFingerprint() {
+        return corpusFingerprint;
+    }
+
+    /**
+     * Sets the fingerprint of the corpus this index was built from
+     * @param corpusFingerprint corpus fingerprint, as computed by CorpusManifest
+     */
+    public void setCorpusFingerprint(long corpusFingerprint) {
+        this.corpusFingerprint = corpusFingerprint;
     }
 
     /**
@@ -230,9 +1868,32 @@ public class QueryEngine {
      */
     public static double BM25(int fqi, int nqi, int numDocuments, int documentLength, double avgDocLength) {
         // Okapi BM25 term weighting
+        return termWeight(IDF(numDocuments, nqi), fqi, lengthNorm(documentLength, avgDocLength));
+    }
+
+    /**
+     * Computes the document length part of the BM25 denominator, k1 * (1 - b + b * |D| / avgdl).
+     * It only depends on the document, so it is computed once per document and reused for every term.
+     * @param documentLength |D|, the total number of words in the document
+     * @param avgDocLength avgdl, the average document length of the corpus
+     * @return length normalization of the document
+     */
+    static double lengthNorm(int documentLength, double avgDocLength) {
         double k1 = BM25_K;
         double b = BM25_B;
-        return IDF(numDocuments, nqi) * ((fqi * (k1 + 1)) / (fqi + k1 * (1 - b + b * (documentLength / avgDocLength))));
+        return k1 * (1 - b + b * (documentLength / avgDocLength));
+    }
+
+    /**
+     * Computes a BM25 term weight from precomputed IDF and length normalization
+     * @param idf IDF of the term
+     * @param fqi f(qi, D), the frequency of token qi in document D
+     * @param lengthNorm length normalization of document D, as computed by lengthNorm
+     * @return BM25 weight
+     */
+    static double termWeight(double idf, int fqi, double lengthNorm) {
+        double k1 = BM25_K;
+        return idf * ((fqi * (k1 + 1)) / (fqi + lengthNorm));
     }
 
     /**
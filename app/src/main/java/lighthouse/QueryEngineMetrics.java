@@ -0,0 +1,216 @@
+package lighthouse;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import lighthouse.util.Histogram;
+
+/**
+ * The QueryEngineMetrics class records the size of the index of one QueryEngine, and the latency and
+ * the number of postings decoded of every query it answers, in histograms whose percentiles are within
+ * 1% of the recorded values. Recording is lock-free, so queries on many threads do not contend for it.
+ */
+public class QueryEngineMetrics implements QueryEngineMetricsMBean {
+    private final Histogram latencies = new Histogram();
+    private final Histogram postingsScanned = new Histogram();
+    private final AtomicLong cachedQueries = new AtomicLong();
+    private final AtomicLong partialQueries = new AtomicLong();
+    private volatile long documentCount;
+    private volatile long termCount;
+    private volatile long postingCount;
+    private volatile long indexBytes;
+
+    /**
+     * Records an answered query
+     * @param latencyNanos time taken to answer the query, in nanoseconds
+     * @param postings number of postings decoded to answer the query
+     * @param cached true if the query was answered from the query cache, false otherwise
+     */
+    public void recordQuery(long latencyNanos, long postings, boolean cached) {
+        latencies.record(latencyNanos);
+        postingsScanned.record(postings);
+        if (cached) {
+            cachedQueries.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records a query whose results miss the documents of a shard that failed or did not answer in time
+     */
+    public void recordPartialQuery() {
+        partialQueries.incrementAndGet();
+    }
+
+    /**
+     * Records the size of the index after it was built, loaded or updated
+     * @param documents number of documents
+     * @param terms number of distinct terms
+     * @param postings number of postings
+     * @param bytes estimate of the memory used by the index
+     */
+    public void recordIndexSize(long documents, long terms, long postings, long bytes) {
+        documentCount = documents;
+        termCount = terms;
+        postingCount = postings;
+        indexBytes = bytes;
+    }
+
+    /**
+     * Obtains the histogram of query latencies
+     * @return latencies of the queries, in nanoseconds
+     */
+    public Histogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Obtains the histogram of the postings decoded per query
+     * @return number of postings decoded by each query
+     */
+    public Histogram getPostingsScannedHistogram() {
+        return postingsScanned;
+    }
+
+    /**
+     * Obtains the number of documents in the index
+     * @return number of documents
+     */
+    @Override
+    public long getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Obtains the number of distinct terms in the index
+     * @return number of terms
+     */
+    @Override
+    public long getTermCount() {
+        return termCount;
+    }
+
+    /**
+     * Obtains the number of postings in the index
+     * @return number of postings
+     */
+    @Override
+    public long getPostingCount() {
+        return postingCount;
+    }
+
+    /**
+     * Obtains an estimate of the memory used by the index
+     * @return approximate size in bytes
+     */
+    @Override
+    public long getIndexBytes() {
+        return indexBytes;
+    }
+
+    /**
+     * Obtains the number of queries answered
+     * @return number of queries, including those served from the cache
+     */
+    @Override
+    public long getQueryCount() {
+        return latencies.getCount();
+    }
+
+    /**
+     * Obtains the number of queries answered from the query cache
+     * @return number of cached queries
+     */
+    @Override
+    public long getCachedQueryCount() {
+        return cachedQueries.get();
+    }
+
+    /**
+     * Obtains the number of queries answered without the documents of at least one shard
+     * @return number of partial queries
+     */
+    @Override
+    public long getPartialQueryCount() {
+        return partialQueries.get();
+    }
+
+    /**
+     * Obtains the mean latency of the queries
+     * @return mean latency in milliseconds
+     */
+    @Override
+    public double getMeanLatencyMillis() {
+        return latencies.getMean() / 1e6;
+    }
+
+    /**
+     * Obtains the median latency of the queries
+     * @return 50th percentile latency in milliseconds
+     */
+    @Override
+    public double getLatencyP50Millis() {
+        return latencies.getValueAtPercentile(50) / 1e6;
+    }
+
+    /**
+     * Obtains the 95th percentile latency of the queries
+     * @return 95th percentile latency in milliseconds
+     */
+    @Override
+    public double getLatencyP95Millis() {
+        return latencies.getValueAtPercentile(95) / 1e6;
+    }
+
+    /**
+     * Obtains the 99th percentile latency of the queries
+     * @return 99th percentile latency in milliseconds
+     */
+    @Override
+    public double getLatencyP99Millis() {
+        return latencies.getValueAtPercentile(99) / 1e6;
+    }
+
+    /**
+     * Obtains the 99.9th percentile latency of the queries
+     * @return 99.9th percentile latency in milliseconds
+     */
+    @Override
+    public double getLatencyP999Millis() {
+        return latencies.getValueAtPercentile(99.9) / 1e6;
+    }
+
+    /**
+     * Obtains the largest latency of any query
+     * @return largest latency in milliseconds
+     */
+    @Override
+    public double getMaxLatencyMillis() {
+        return latencies.getMax() / 1e6;
+    }
+
+    /**
+     * Obtains the number of postings decoded by all queries
+     * @return number of postings decoded
+     */
+    @Override
+    public long getPostingsScanned() {
+        return postingsScanned.getTotal();
+    }
+
+    /**
+     * Obtains the mean number of postings decoded per query
+     * @return mean postings decoded per query, cached queries included
+     */
+    @Override
+    public double getMeanPostingsScanned() {
+        return postingsScanned.getMean();
+    }
+
+    /**
+     * Obtains the 99th percentile of the number of postings decoded per query
+     * @return 99th percentile of the postings decoded per query
+     */
+    @Override
+    public long getPostingsScannedP99() {
+        return postingsScanned.getValueAtPercentile(99);
+    }
+}
@@ -0,0 +1,103 @@
+package lighthouse;
+
+/**
+ * Management interface of QueryEngineMetrics, exposing the size of an index and the latency and cost
+ * of its queries over JMX
+ */
+public interface QueryEngineMetricsMBean {
+    /**
+     * Obtains the number of documents in the index
+     * @return number of documents
+     */
+    long getDocumentCount();
+
+    /**
+     * Obtains the number of distinct terms in the index
+     * @return number of terms
+     */
+    long getTermCount();
+
+    /**
+     * Obtains the number of postings in the index
+     * @return number of postings
+     */
+    long getPostingCount();
+
+    /**
+     * Obtains an estimate of the memory used by the index
+     * @return approximate size in bytes
+     */
+    long getIndexBytes();
+
+    /**
+     * Obtains the number of queries answered
+     * @return number of queries, including those served from the cache
+     */
+    long getQueryCount();
+
+    /**
+     * Obtains the number of queries answered from the query cache
+     * @return number of cached queries
+     */
+    long getCachedQueryCount();
+
+    /**
+     * Obtains the number of queries answered without the documents of at least one shard
+     * @return number of partial queries
+     */
+    long getPartialQueryCount();
+
+    /**
+     * Obtains the mean latency of the queries
+     * @return mean latency in milliseconds
+     */
+    double getMeanLatencyMillis();
+
+    /**
+     * Obtains the median latency of the queries
+     * @return 50th percentile latency in milliseconds
+     */
+    double getLatencyP50Millis();
+
+    /**
+     * Obtains the 95th percentile latency of the queries
+     * @return 95th percentile latency in milliseconds
+     */
+    double getLatencyP95Millis();
+
+    /**
+     * Obtains the 99th percentile latency of the queries
+     * @return 99th percentile latency in milliseconds
+     */
+    double getLatencyP99Millis();
+
+    /**
+     * Obtains the 99.9th percentile latency of the queries
+     * @return 99.9th percentile latency in milliseconds
+     */
+    double getLatencyP999Millis();
+
+    /**
+     * Obtains the largest latency of any query
+     * @return largest latency in milliseconds
+     */
+    double getMaxLatencyMillis();
+
+    /**
+     * Obtains the number of postings decoded by all queries
+     * @return number of postings decoded
+     */
+    long getPostingsScanned();
+
+    /**
+     * Obtains the mean number of postings decoded per query
+     * @return mean postings decoded per query, cached queries included
+     */
+    double getMeanPostingsScanned();
+
+    /**
+     * Obtains the 99th percentile of the number of postings decoded per query
+     * @return 99th percentile of the postings decoded per query
+     */
+    long getPostingsScannedP99();
+}
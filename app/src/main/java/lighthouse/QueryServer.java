@@ -0,0 +1,292 @@
+package lighthouse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The QueryServer class serves queries of a single loaded SearchIndex over HTTP, so that many
+ * clients can share one index. Each request is handled on its own virtual thread, while a semaphore
+ * bounds the number of queries evaluated at once; requests that cannot get a permit in time are
+ * turned away with 503 rather than queued without limit.
+ *
+ * GET /search?q=terms&amp;k=10 returns the k best documents as JSON, and GET /health reports the
+ * size and generation of the index.
+ */
+public class QueryServer {
+    /** system property holding the port to listen on */
+    public static final String PORT_PROPERTY = "lighthouse.server.port";
+    /** port listened on by default */
+    public static final int DEFAULT_PORT = 8080;
+    /** system property holding the maximum number of queries evaluated at once */
+    public static final String CONCURRENCY_PROPERTY = "lighthouse.server.concurrency";
+    /** system property holding the number of documents returned when a request gives no k */
+    public static final String K_PROPERTY = "lighthouse.server.k";
+    /** largest k a request may ask for */
+    public static final int MAX_K = 1000;
+    /** how long a request waits for a query permit before it is rejected */
+    public static final long QUEUE_TIMEOUT_MILLIS = 1000;
+    /** number of pending connections the socket accepts */
+    private static final int BACKLOG = 1024;
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+
+    private final SearchIndex engine;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int defaultK;
+
+    /**
+     * Creates a server for the passed engine, configured by PORT_PROPERTY, CONCURRENCY_PROPERTY
+     * and K_PROPERTY. The server does not accept requests until it is started.
+     * @param engine index to be queried
+     * @throws IOException if the port cannot be bound
+     */
+    public QueryServer(SearchIndex engine) throws IOException {
+        this(engine, Integer.getInteger(PORT_PROPERTY, DEFAULT_PORT),
+                Integer.getInteger(CONCURRENCY_PROPERTY, Runtime.getRuntime().availableProcessors()),
+                Integer.getInteger(K_PROPERTY, Lighthouse.MAX_RESULTS));
+    }
+
+    /**
+     * Creates a server for the passed engine. The server does not accept requests until it is started.
+     * @param engine index to be queried
+     * @param port port to listen on, or 0 for any free port
+     * @param concurrency maximum number of queries evaluated at once
+     * @param defaultK number of documents returned when a request gives no k
+     * @throws IOException if the port cannot be bound
+     */
+    public QueryServer(SearchIndex engine, int port, int concurrency, int defaultK) throws IOException {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency must be positive");
+        }
+        if (defaultK <= 0 || defaultK > MAX_K) {
+            throw new IllegalArgumentException("k must be between 1 and " + MAX_K);
+        }
+        this.engine = engine;
+        this.permits = new Semaphore(concurrency);
+        this.defaultK = defaultK;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/search", this::handleSearch);
+        server.createContext("/health", this::handleHealth);
+    }
+
+    /**
+     * Starts accepting requests
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, giving those in progress up to a second to complete
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    /**
+     * Obtains the port the server listens on
+     * @return port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Answers GET /search with the k best documents for the query q
+     * @param exchange request and response
+     * @throws IOException if the response cannot be sent
+     */
+    private void handleSearch(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try {
+                search(exchange);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                sendError(exchange, 500, "internal error");
+            }
+        }
+    }
+
+    /**
+     * Validates the parameters of a search request, evaluates the query and sends the results
+     * @param exchange request and response
+     * @throws IOException if the response cannot be sent
+     * @throws InterruptedException if interrupted while waiting for a query permit
+     */
+    private void search(HttpExchange exchange) throws IOException, InterruptedException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            exchange.getResponseHeaders().set("Allow", "GET");
+            sendError(exchange, 405, "method not allowed");
+            return;
+        }
+        Map<String, String> parameters = parseParameters(exchange.getRequestURI().getRawQuery());
+        String query = parameters.get("q");
+        if (query == null || query.isBlank()) {
+            sendError(exchange, 400, "missing query parameter q");
+            return;
+        }
+        int k = defaultK;
+        if (parameters.containsKey("k")) {
+            try {
+                k = Integer.parseInt(parameters.get("k"));
+            } catch (NumberFormatException e) {
+                k = -1;
+            }
+            if (k <= 0 || k > MAX_K) {
+                sendError(exchange, 400, "k must be between 1 and " + MAX_K);
+                return;
+            }
+        }
+
+        if (!permits.tryAcquire(QUEUE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            sendError(exchange, 503, "server busy");
+            return;
+        }
+        List<Entry<String, Double>> results;
+        try {
+            results = engine.query(query, k);
+        } finally {
+            permits.release();
+        }
+
+        StringBuilder json = new StringBuilder(64 + 48 * results.size());
+        json.append("{\"query\":");
+        appendString(json, query);
+        json.append(",\"k\":").append(k).append(',');
+        appendResults(json, results);
+        json.append('}');
+        send(exchange, 200, json);
+    }
+
+    /**
+     * Answers GET /health with the number of documents and the generation of the index
+     * @param exchange request and response
+     * @throws IOException if the response cannot be sent
+     */
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            send(exchange, 200, "{\"status\":\"ok\",\"documents\":" + engine.getNumDocuments()
+                    + ",\"generation\":" + engine.getGeneration() + "}");
+        }
+    }
+
+    /**
+     * Decodes the parameters of a query string; of repeated parameters, the first is kept
+     * @param rawQuery query string of the request URI, still percent-encoded, or null
+     * @return parameter names mapped to their values
+     */
+    static Map<String, String> parseParameters(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            try {
+                parameters.putIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                        URLDecoder.decode(value, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                // skip malformed percent-encoding
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Appends ranked documents to a JSON object as a "results" member holding an array of
+     * {"document": name, "score": weight} objects, most relevant first
+     * @param json JSON document being built
+     * @param results documents and weights, as returned by QueryEngine.query
+     */
+    static void appendResults(StringBuilder json, List<Entry<String, Double>> results) {
+        json.append("\"results\":[");
+        for (int i = 0; i < results.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"document\":");
+            appendString(json, results.get(i).getKey());
+            json.append(",\"score\":").append(results.get(i).getValue()).append('}');
+        }
+        json.append(']');
+    }
+
+    /**
+     * Appends a String to a JSON document as a quoted, escaped JSON string
+     * @param json JSON document being built
+     * @param value String to be appended
+     */
+    static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Sends a JSON error response of the form {"error": message}
+     * @param exchange request and response
+     * @param status HTTP status code
+     * @param message description of the error
+     * @throws IOException if the response cannot be sent
+     */
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendString(json, message);
+        send(exchange, status, json.append('}'));
+    }
+
+    /**
+     * Sends a JSON response
+     * @param exchange request and response
+     * @param status HTTP status code
+     * @param json body of the response
+     * @throws IOException if the response cannot be sent
+     */
+    private static void send(HttpExchange exchange, int status, CharSequence json) throws IOException {
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON_CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package lighthouse;
+
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * The SearchIndex interface is the query side of an index: a single QueryEngine, or an index that
+ * merges the results of several shards. The console, the QueryServer and the BatchRunner serve any of
+ * them. Every method is safe to call from any number of threads at once.
+ */
+public interface SearchIndex {
+
+    /**
+     * Ranks every document matching a query, see QueryEngine.query(String)
+     * @param query String passed by user to use as query on index
+     * @return unmodifiable List of documents and weights, most relevant first
+     */
+    List<Entry<String, Double>> query(String query);
+
+    /**
+     * Ranks the k documents with the highest weights for a query, see QueryEngine.query(String, int)
+     * @param query String passed by user to use as query on index
+     * @param k maximum number of documents to return
+     * @return unmodifiable List of at most k documents and weights, most relevant first
+     */
+    List<Entry<String, Double>> query(String query, int k);
+
+    /**
+     * Normalizes the terms of a query as they are looked up, see QueryEngine.normalizeQuery
+     * @param query query string that will be normalized
+     * @return list of Strings following normalization of query
+     */
+    List<String> normalizeQuery(String query);
+
+    /**
+     * Obtains the total number of documents in the corpus
+     * @return total number of documents in the corpus
+     */
+    int getNumDocuments();
+
+    /**
+     * Obtains the generation of the index, which increases every time cached results stop applying
+     * @return generation of the index
+     */
+    long getGeneration();
+
+    /**
+     * Obtains the metrics of this index: its size and the latency and cost of its queries
+     * @return metrics of this index
+     */
+    QueryEngineMetrics getMetrics();
+}
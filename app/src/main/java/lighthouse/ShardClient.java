@@ -0,0 +1,339 @@
+package lighthouse;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The ShardClient class sends requests to one ShardServer, see ShardServer for the protocol. Connections
+ * are kept open between requests and reused, one request at a time each, so concurrent queries open
+ * as many connections as they need. A connection whose request fails or times out is closed, so a late
+ * response can never be read as the response of another request.
+ *
+ * <p>The client keeps the corpus statistics and largest weight it sent last. A shard that answers a query
+ * with NOT_READY has been restarted since, so it is sent them again before the query is retried.</p>
+ */
+public class ShardClient {
+    /** system property holding the time a shard is given to answer a query, in milliseconds */
+    public static final String TIMEOUT_PROPERTY = "lighthouse.shard.timeout";
+    /** time a shard is given to answer a query by default, in milliseconds */
+    public static final int DEFAULT_TIMEOUT_MILLIS = 1000;
+
+    private final InetSocketAddress address;
+    private final int timeoutMillis;
+    private final Queue<Connection> idleConnections = new ConcurrentLinkedQueue<>();
+    // a lock rather than a monitor, as queries run on virtual threads that must not be pinned while they wait
+    private final Lock handshakeLock = new ReentrantLock();
+    private volatile CorpusStatistics statistics;
+    private volatile double largestWeight;
+    private volatile int handshakes;
+
+    /**
+     * Creates a client of the shard served at address. No connection is opened until the first request.
+     * @param address address of the ShardServer
+     * @param timeoutMillis time the shard is given to answer a query, in milliseconds
+     */
+    public ShardClient(InetSocketAddress address, int timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("timeoutMillis must be positive");
+        }
+        this.address = address;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Creates a client of the shard served at an address written as host:port
+     * @param address host and port of the ShardServer, separated by a colon
+     * @param timeoutMillis time the shard is given to answer a query, in milliseconds
+     * @return client of the shard
+     */
+    public static ShardClient of(String address, int timeoutMillis) {
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("shard address must be host:port, not " + address);
+        }
+        int port = Integer.parseInt(address.substring(colon + 1));
+        return new ShardClient(InetSocketAddress.createUnresolved(address.substring(0, colon), port), timeoutMillis);
+    }
+
+    /**
+     * Reads the statistics of the shard and adds them to statistics
+     * @param statistics statistics receiving those of the shard
+     * @throws IOException if the shard cannot be reached or fails
+     */
+    public void readStatistics(CorpusStatistics statistics) throws IOException {
+        // gathering the statistics of a large shard may take longer than a query, so it is not timed
+        request(connection -> {
+            connection.out.writeByte(ShardServer.STATISTICS);
+            connection.send();
+            statistics.readFrom(connection.in);
+            return null;
+        }, 0);
+    }
+
+    /**
+     * Sends the statistics of the whole corpus to the shard and waits until it has weighted its postings
+     * @param statistics statistics of the whole corpus
+     * @return largest weight of any term of the shard
+     * @throws IOException if the shard cannot be reached or fails
+     */
+    public double sendStatistics(CorpusStatistics statistics) throws IOException {
+        this.statistics = statistics;
+        return request(connection -> {
+            connection.out.writeByte(ShardServer.SET_STATISTICS);
+            statistics.writeTo(connection.out);
+            connection.send();
+            return connection.in.readDouble();
+        }, 0);
+    }
+
+    /**
+     * Sends the largest weight of any term of the whole corpus to the shard, which quantizes its weights
+     * against it, and waits until the shard is ready for queries
+     * @param largestWeight largest of the weights returned by sendStatistics for every shard
+     * @throws IOException if the shard cannot be reached or fails
+     */
+    public void sendLargestWeight(double largestWeight) throws IOException {
+        this.largestWeight = largestWeight;
+        request(connection -> {
+            connection.out.writeByte(ShardServer.SET_LARGEST_WEIGHT);
+            connection.out.writeDouble(largestWeight);
+            connection.send();
+            return null;
+        }, 0);
+        handshakes++;
+    }
+
+    /**
+     * Sends a query to the shard. If the shard has been restarted since it was sent the corpus statistics,
+     * they are sent again along with the largest weight, and the query is retried.
+     * @param query query string, as passed by the user
+     * @param k maximum number of documents to return, or 0 to return all of them
+     * @return documents of the shard and weights, most relevant first
+     * @throws IOException if the shard cannot be reached, fails or does not answer in time
+     */
+    public List<Entry<String, Double>> query(String query, int k) throws IOException {
+        int handshake = handshakes;
+        try {
+            return sendQuery(query, k);
+        } catch (ShardNotReadyException e) {
+            repeatHandshake(handshake, e);
+            return sendQuery(query, k);
+        }
+    }
+
+    /**
+     * Sends the statistics and the largest weight to a restarted shard again, unless another query
+     * already did so since handshake
+     * @param handshake number of handshakes completed when the failed query was sent
+     * @param notReady answer of the shard to the failed query
+     * @throws IOException if the shard never received the statistics, or cannot be reached or fails
+     */
+    private void repeatHandshake(int handshake, ShardNotReadyException notReady) throws IOException {
+        handshakeLock.lock();
+        try {
+            if (statistics == null) {
+                throw notReady;
+            }
+            if (handshakes == handshake) {
+                sendStatistics(statistics);
+                sendLargestWeight(largestWeight);
+            }
+        } finally {
+            handshakeLock.unlock();
+        }
+    }
+
+    /**
+     * Sends a query to the shard once, see query
+     * @param query query string, as passed by the user
+     * @param k maximum number of documents to return, or 0 to return all of them
+     * @return documents of the shard and weights, most relevant first
+     * @throws IOException if the shard cannot be reached, fails, is not ready or does not answer in time
+     */
+    private List<Entry<String, Double>> sendQuery(String query, int k) throws IOException {
+        return request(connection -> {
+            connection.out.writeByte(ShardServer.QUERY);
+            connection.out.writeInt(k);
+            connection.out.writeUTF(query);
+            connection.send();
+            int count = connection.in.readInt();
+            List<Entry<String, Double>> results = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                results.add(Map.entry(connection.in.readUTF(), connection.in.readDouble()));
+            }
+            return results;
+        }, timeoutMillis);
+    }
+
+    /**
+     * Closes the connections kept open between requests
+     */
+    public void close() {
+        for (Connection connection = idleConnections.poll(); connection != null; connection = idleConnections.poll()) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Describes the shard by its address
+     * @return host and port of the shard
+     */
+    @Override
+    public String toString() {
+        return address.getHostString() + ":" + address.getPort();
+    }
+
+    /**
+     * Runs one request on an idle connection, or on a new one if there is none. A request that fails
+     * on an idle connection before any timeout is retried once on a new connection, as the shard may
+     * have been restarted since the connection was last used.
+     * @param <T> type of the response
+     * @param request request writing the command and reading the response
+     * @param timeoutMillis time the shard is given to answer, or 0 to wait as long as it takes
+     * @return response of the shard
+     * @throws IOException if the shard cannot be reached, fails or does not answer in time
+     */
+    private <T> T request(Request<T> request, int timeoutMillis) throws IOException {
+        Connection connection = idleConnections.poll();
+        if (connection != null) {
+            try {
+                return request(connection, request, timeoutMillis);
+            } catch (SocketTimeoutException | ShardNotReadyException e) {
+                throw e;
+            } catch (IOException e) {
+                // a request abandoned by the coordinator is not retried
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+            }
+        }
+        return request(new Connection(address, this.timeoutMillis), request, timeoutMillis);
+    }
+
+    /**
+     * Runs one request on the passed connection, which is kept for later requests if it succeeds
+     * and closed otherwise
+     * @param <T> type of the response
+     * @param connection connection to the shard
+     * @param request request writing the command and reading the response
+     * @param timeoutMillis time the shard is given to answer, or 0 to wait as long as it takes
+     * @return response of the shard
+     * @throws IOException if the shard fails or does not answer in time
+     */
+    private <T> T request(Connection connection, Request<T> request, int timeoutMillis) throws IOException {
+        try {
+            connection.socket.setSoTimeout(timeoutMillis);
+            T response = request.run(connection);
+            idleConnections.offer(connection);
+            return response;
+        } catch (ShardNotReadyException e) {
+            // the response was read completely, so the connection can carry the next request
+            idleConnections.offer(connection);
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Request writes a command to a connection and reads the response
+     * @param <T> type of the response
+     */
+    private interface Request<T> {
+        /**
+         * Writes the command and reads the response
+         * @param connection connection to the shard
+         * @return response of the shard
+         * @throws IOException if the command cannot be written or the response cannot be read
+         */
+        T run(Connection connection) throws IOException;
+    }
+
+    /**
+     * ShardNotReadyException reports that a shard has not received the corpus statistics, as it was
+     * restarted since they were sent
+     */
+    private static class ShardNotReadyException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructs a ShardNotReadyException
+         */
+        ShardNotReadyException() {
+            super("shard has not received the corpus statistics");
+        }
+    }
+
+    /**
+     * Connection holds an open socket to the shard along with its streams
+     */
+    private static class Connection {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        /**
+         * Opens a connection to the shard, giving up if it is not established within connectTimeoutMillis,
+         * so that an unreachable host does not hold a query thread until the operating system gives up
+         * @param address address of the ShardServer
+         * @param connectTimeoutMillis time the connection is given to be established, in milliseconds
+         * @throws IOException if the shard cannot be reached in time
+         */
+        Connection(InetSocketAddress address, int connectTimeoutMillis) throws IOException {
+            socket = new Socket();
+            try {
+                // addresses parsed by ShardClient.of are left unresolved until a connection is opened
+                socket.connect(new InetSocketAddress(address.getHostString(), address.getPort()),
+                        connectTimeoutMillis);
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        /**
+         * Sends the buffered command and reads the status of the response
+         * @throws ShardNotReadyException if the shard has not received the corpus statistics
+         * @throws IOException if the shard reports an error, or the command or status cannot be transferred
+         */
+        void send() throws IOException {
+            out.flush();
+            byte status = in.readByte();
+            if (status == ShardServer.NOT_READY) {
+                throw new ShardNotReadyException();
+            }
+            if (status != ShardServer.OK) {
+                throw new IOException(in.readUTF());
+            }
+        }
+
+        /**
+         * Closes the socket, ignoring failures
+         */
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing more to do with a broken connection
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package lighthouse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import lighthouse.util.PostingCounter;
+
+/**
+ * The ShardCoordinator class answers queries over shards served by other processes, see ShardServer.
+ * The statistics of every shard are gathered and merged, and the merged statistics are sent back to every
+ * shard, which weights its postings with them. Queries are then sent to every shard at once and the results
+ * merged, so they match those of a single index over the whole corpus. A shard that fails to answer within
+ * the timeout is left out of the results of that query. The shards hold the postings, so a coordinator
+ * holds none, and it can neither be saved nor updated.
+ */
+public class ShardCoordinator extends ShardedIndex {
+    private final List<ShardClient> shards;
+    private final long timeoutMillis;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Constructor for a coordinator of shards served by other processes. The statistics and the largest
+     * weight of the whole corpus are sent to every shard; a shard that is restarted later is sent them
+     * again by its client.
+     * @param shards clients of the shards, in the order of their ranges of documents
+     * @param timeoutMillis time the shards are given to answer a query, in milliseconds
+     * @throws IOException if a shard cannot be reached while the statistics are gathered
+     */
+    public ShardCoordinator(List<ShardClient> shards, long timeoutMillis) throws IOException {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("timeoutMillis must be positive");
+        }
+        System.out.println("Gathering corpus statistics from " + shards.size() + " shards...");
+        CorpusStatistics corpusStatistics = new CorpusStatistics();
+        for (ShardClient shard : shards) {
+            shard.readStatistics(corpusStatistics);
+        }
+        double largestWeight = 0;
+        for (ShardClient shard : shards) {
+            largestWeight = Math.max(largestWeight, shard.sendStatistics(corpusStatistics));
+        }
+        // the shards quantize their weights for impact-ordered evaluation on the scale of the whole corpus
+        for (ShardClient shard : shards) {
+            shard.sendLargestWeight(largestWeight);
+        }
+        this.shards = List.copyOf(shards);
+        this.timeoutMillis = timeoutMillis;
+        statistics = corpusStatistics;
+        // the shards hold the postings, so only their number is known here
+        metrics.recordIndexSize(statistics.getNumDocuments(), statistics.getTermCount(),
+                statistics.getPostingCount(), 0);
+    }
+
+    /**
+     * Sends the query to every shard and merges the results. Shards that fail or do not answer within
+     * the timeout are counted as missed, and their documents are left out. Postings are decoded by the
+     * shards, so none are counted here.
+     * @param query query string, as passed by the user
+     * @param parsedQuery parsed query, which the shards parse again from query
+     * @param k maximum number of documents to return, or 0 to return all of them
+     * @param scanned counter receiving the number of shards missed
+     * @return List of documents and weights, most relevant first
+     */
+    @Override
+    List<Entry<String, Double>> rankShards(String query, ParsedQuery parsedQuery, int k, PostingCounter scanned) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        List<Future<List<Entry<String, Double>>>> rankings = new ArrayList<>(shards.size());
+        for (ShardClient shard : shards) {
+            rankings.add(executor.submit(() -> shard.query(query, k)));
+        }
+        List<Entry<String, Double>> merged = new ArrayList<>();
+        // a missed shard is only counted, as the query threads of a server must not write to standard output;
+        // the metrics report the partial queries
+        for (Future<List<Entry<String, Double>>> ranking : rankings) {
+            try {
+                merged.addAll(ranking.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                // interrupting the request closes its connection, so a late answer is never read
+                ranking.cancel(true);
+                scanned.addMissedShard();
+            } catch (ExecutionException e) {
+                scanned.addMissedShard();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Query was interrupted", e);
+            }
+        }
+        return merge(merged, k);
+    }
+}
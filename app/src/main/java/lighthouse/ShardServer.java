@@ -0,0 +1,212 @@
+package lighthouse;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The ShardServer class serves one shard of a corpus to a coordinator over TCP, so that an index too
+ * large for one process can be split over several, see ShardCoordinator. Each connection is
+ * handled on its own virtual thread and carries any number of requests, one after the other.
+ *
+ * <p>Every request starts with a command byte, and every response with OK, ERROR or NOT_READY; an ERROR
+ * is followed by a message. STATISTICS returns the statistics of the shard in the form written by
+ * CorpusStatistics.writeTo. SET_STATISTICS sends the statistics of the whole corpus the same way,
+ * and is answered once the shard has weighted its postings with them, with the largest weight of any
+ * of its terms. SET_LARGEST_WEIGHT sends the largest of those of all shards, which the shard quantizes
+ * its weights against for impact-ordered evaluation. QUERY sends k, 0 for every matching document, and
+ * the query string, and returns the number of results followed by the name and weight of each. A shard
+ * answers queries with NOT_READY until it has received the statistics and the largest weight, which
+ * tells a coordinator that the shard was restarted and needs them again.</p>
+ */
+public class ShardServer {
+    /** system property holding the port to listen on */
+    public static final String PORT_PROPERTY = "lighthouse.shard.port";
+    /** port listened on by the first shard by default; the others listen on the following ports */
+    public static final int DEFAULT_PORT = 9100;
+    /** command requesting the statistics of the shard */
+    static final byte STATISTICS = 1;
+    /** command sending the statistics of the whole corpus */
+    static final byte SET_STATISTICS = 2;
+    /** command sending a query */
+    static final byte QUERY = 3;
+    /** command sending the largest weight of any term of the whole corpus */
+    static final byte SET_LARGEST_WEIGHT = 4;
+    /** status of a successful response */
+    static final byte OK = 0;
+    /** status of a failed response, followed by a message */
+    static final byte ERROR = 1;
+    /** status of a query sent before the statistics and the largest weight */
+    static final byte NOT_READY = 2;
+
+    private final QueryEngine shard;
+    private final ServerSocket socket;
+    private final ExecutorService executor;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private volatile boolean ready;
+
+    /**
+     * Creates a server for the passed shard. The server does not accept connections until it is started.
+     * @param shard shard to be served, as loaded by QueryEngine.loadShard
+     * @param port port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public ShardServer(QueryEngine shard, int port) throws IOException {
+        this.shard = shard;
+        this.socket = new ServerSocket(port);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Starts accepting connections on a thread of its own, which keeps the process alive until the
+     * server is stopped
+     */
+    public void start() {
+        new Thread(this::acceptConnections, "lighthouse-shard-server").start();
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones
+     */
+    public void stop() {
+        try {
+            socket.close();
+            for (Socket connection : connections) {
+                connection.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Obtains the port the server listens on
+     * @return port the server listens on
+     */
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the server is stopped, handing each one to a virtual thread
+     */
+    private void acceptConnections() {
+        while (!socket.isClosed()) {
+            try {
+                Socket connection = socket.accept();
+                connections.add(connection);
+                executor.submit(() -> serve(connection));
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers the requests of one connection until it is closed
+     * @param connection connection to a coordinator
+     */
+    private void serve(Socket connection) {
+        try (connection) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+            while (true) {
+                byte command;
+                try {
+                    command = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (!answer(command, in, out)) {
+                    return;
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the coordinator went away or gave up on the request; it opens another connection if needed
+        } finally {
+            connections.remove(connection);
+        }
+    }
+
+    /**
+     * Reads the rest of one request and writes its response
+     * @param command command byte of the request
+     * @param in input holding the request
+     * @param out output receiving the response
+     * @return true if the connection can carry more requests, false if it must be closed
+     * @throws IOException if the request cannot be read or the response cannot be written
+     */
+    private boolean answer(byte command, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (command) {
+            case STATISTICS:
+                out.writeByte(OK);
+                shard.getShardStatistics().writeTo(out);
+                return true;
+            case SET_STATISTICS:
+                CorpusStatistics statistics = new CorpusStatistics();
+                statistics.readFrom(in);
+                shard.useStatistics(statistics);
+                out.writeByte(OK);
+                out.writeDouble(shard.getLargestWeight());
+                return true;
+            case SET_LARGEST_WEIGHT:
+                shard.useLargestWeight(in.readDouble());
+                ready = true;
+                out.writeByte(OK);
+                return true;
+            case QUERY:
+                int k = in.readInt();
+                String query = in.readUTF();
+                if (!ready) {
+                    out.writeByte(NOT_READY);
+                    return true;
+                }
+                List<Entry<String, Double>> results;
+                try {
+                    results = k == 0 ? shard.query(query) : shard.query(query, k);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    sendError(out, "query failed: " + e);
+                    return true;
+                }
+                out.writeByte(OK);
+                out.writeInt(results.size());
+                for (Entry<String, Double> result : results) {
+                    out.writeUTF(result.getKey());
+                    out.writeDouble(result.getValue());
+                }
+                return true;
+            default:
+                // the rest of an unknown request cannot be skipped
+                sendError(out, "unknown command " + command);
+                out.flush();
+                return false;
+        }
+    }
+
+    /**
+     * Writes a failed response
+     * @param out output receiving the response
+     * @param message description of the failure
+     * @throws IOException if the response cannot be written
+     */
+    private static void sendError(DataOutputStream out, String message) throws IOException {
+        out.writeByte(ERROR);
+        out.writeUTF(message);
+    }
+}
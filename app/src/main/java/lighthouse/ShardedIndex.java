@@ -0,0 +1,127 @@
+package lighthouse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import lighthouse.util.PostingCounter;
+import lighthouse.util.QueryCache;
+
+/**
+ * The ShardedIndex class answers queries over documents split into shards, each holding the postings of
+ * a consecutive range of the documents and weighting them with the statistics of the whole corpus.
+ * Subclasses rank the documents of every shard, in this process or others, and the results are merged
+ * into those a single index over the whole corpus would return. Results are cached as by a QueryEngine,
+ * except for those missing the documents of a shard.
+ */
+abstract class ShardedIndex implements SearchIndex {
+    private final QueryCache cache = new QueryCache(
+            Integer.getInteger(QueryEngine.CACHE_SIZE_PROPERTY, QueryEngine.DEFAULT_CACHE_SIZE));
+    final QueryEngineMetrics metrics = new QueryEngineMetrics();
+    // queries hold the read lock, so any number of them run at once; changes to the shards hold the write lock
+    final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // statistics of the whole corpus, which every shard weights its postings with
+    CorpusStatistics statistics;
+    volatile long generation;
+
+    /**
+     * Ranks the documents of every shard and merges the results, see merge
+     * @param query query string, as passed by the user
+     * @param parsedQuery parsed query
+     * @param k maximum number of documents to return, or 0 to return all of them
+     * @param scanned counter receiving the number of postings decoded and of shards missed
+     * @return List of documents and weights, most relevant first
+     */
+    abstract List<Entry<String, Double>> rankShards(String query, ParsedQuery parsedQuery, int k,
+            PostingCounter scanned);
+
+    @Override
+    public List<Entry<String, Double>> query(String query) {
+        return answer(query, 0);
+    }
+
+    @Override
+    public List<Entry<String, Double>> query(String query, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        return answer(query, k);
+    }
+
+    /**
+     * Answers a query from the query cache, or ranks the documents of the shards and caches them, and
+     * records the latency and cost of the query in the metrics of this index
+     * @param query String passed by user to use as query on index
+     * @param k maximum number of documents to return, or 0 to return all of them
+     * @return unmodifiable List of documents and weights, most relevant first
+     */
+    private List<Entry<String, Double>> answer(String query, int k) {
+        long start = System.nanoTime();
+        ParsedQuery parsedQuery = ParsedQuery.parse(query, Tokenizer.ANALYZER);
+        List<String> key = parsedQuery.getKey();
+        lock.readLock().lock();
+        try {
+            List<Entry<String, Double>> cached = cache.get(key, k, generation);
+            if (cached != null) {
+                metrics.recordQuery(System.nanoTime() - start, 0, true);
+                return cached;
+            }
+            PostingCounter scanned = new PostingCounter();
+            List<Entry<String, Double>> ranking = rankShards(query, parsedQuery, k, scanned);
+            metrics.recordQuery(System.nanoTime() - start, scanned.getCount(), false);
+            if (scanned.getMissedShards() > 0) {
+                // results missing the documents of a shard are returned but not cached
+                metrics.recordPartialQuery();
+                return Collections.unmodifiableList(ranking);
+            }
+            return cache.put(key, k, generation, ranking);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Merges the results of the shards into one ranking
+     * @param merged results of every shard, in shard order, each sorted by weight
+     * @param k maximum number of documents to return, or 0 to return all of them
+     * @return List of documents and weights, most relevant first
+     */
+    static List<Entry<String, Double>> merge(List<Entry<String, Double>> merged, int k) {
+        // shards hold consecutive ranges of documents, so a stable sort leaves documents of equal
+        // weight in document order, as a single index ranks them
+        merged.sort(Entry.comparingByValue(Comparator.reverseOrder()));
+        return k == 0 || merged.size() <= k ? merged : new ArrayList<>(merged.subList(0, k));
+    }
+
+    @Override
+    public List<String> normalizeQuery(String query) {
+        return ParsedQuery.parse(query, Tokenizer.ANALYZER).getKey();
+    }
+
+    @Override
+    public int getNumDocuments() {
+        return statistics.getNumDocuments();
+    }
+
+    /**
+     * Obtains the sum of all document lengths in the corpus
+     * @return sum of all document lengths in the corpus
+     */
+    public int getTotalDocumentLengths() {
+        return statistics.getTotalDocumentLengths();
+    }
+
+    @Override
+    public long getGeneration() {
+        return generation;
+    }
+
+    @Override
+    public QueryEngineMetrics getMetrics() {
+        return metrics;
+    }
+}
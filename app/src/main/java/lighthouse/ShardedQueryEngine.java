@@ -0,0 +1,251 @@
+package lighthouse;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import lighthouse.util.PostingCounter;
+import lighthouse.util.ProgressTracker;
+
+/**
+ * The ShardedQueryEngine class splits the documents of a corpus over several QueryEngine shards held in
+ * this process. Each shard holds the postings of a consecutive range of the documents, sized so that the
+ * shards hold about as many bytes of token files each. Shards are built in parallel and weight their
+ * postings with the statistics of the whole corpus, and queries rank the documents of every shard in
+ * parallel before the results are merged, so a sharded engine returns exactly what a QueryEngine over
+ * the whole corpus would. A sharded engine is neither saved nor updated; it is rebuilt instead.
+ */
+public class ShardedQueryEngine extends ShardedIndex {
+    /** system property holding the number of shards the documents are split over; 1 keeps a single index */
+    public static final String SHARDS_PROPERTY = "lighthouse.shards";
+    // seconds an idle shard thread is kept before it exits
+    private static final int SHARD_THREAD_KEEP_ALIVE = 60;
+
+    private final List<QueryEngine> shards;
+    private final ExecutorService executor;
+
+    /**
+     * Constructor for ShardedQueryEngine over the token files inside of tokenDirPath
+     * @param tokenDirPath filepath for previously generated token files
+     * @param shardCount number of shards
+     */
+    public ShardedQueryEngine(String tokenDirPath, int shardCount) {
+        this(tokenDirPath, shardCount, false, null);
+    }
+
+    /**
+     * Constructor for ShardedQueryEngine over the documents of a directory. The documents are split over
+     * the shards and built in parallel, then the statistics of the whole corpus are gathered, which the
+     * shards use to weight their postings. Corpus files are split by their own sizes, and tokenized by a
+     * single pipeline feeding each shard in turn, since the tokenizer already keeps every core busy.
+     * @param dirPath filepath for previously generated token files, or for the corpus if corpus is true
+     * @param shardCount number of shards
+     * @param corpus true if the documents are tokenized straight into the shards
+     * @param exportDir directory the token files of tokenized documents are written into, or null
+     */
+    private ShardedQueryEngine(String dirPath, int shardCount, boolean corpus, File exportDir) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount must be positive");
+        }
+        System.out.println("(2/3) Building index in " + shardCount + " shards...");
+        long start = System.nanoTime();
+
+        File[] files = QueryEngine.listFiles(dirPath, corpus);
+        List<List<File>> partitions = QueryEngine.partition(files, shardCount);
+        executor = newShardExecutor(shardCount);
+
+        ProgressTracker progress = new ProgressTracker(files.length);
+        progress.start();
+        if (corpus) {
+            shards = new ArrayList<>(shardCount);
+            Map<File, QueryEngine> owners = new HashMap<>();
+            for (int i = 0; i < shardCount; i++) {
+                QueryEngine shard = new QueryEngine();
+                shards.add(shard);
+                partitions.get(i).forEach(file -> owners.put(file, shard));
+            }
+            Tokenizer.tokenizeFiles(Arrays.asList(files), exportDir, (file, tokens) -> {
+                owners.get(file).addShardDocument(Tokenizer.documentName(file), tokens);
+                progress.step();
+            });
+        } else {
+            List<Callable<QueryEngine>> loads = new ArrayList<>(shardCount);
+            for (List<File> partition : partitions) {
+                loads.add(() -> QueryEngine.loadShard(partition, progress));
+            }
+            shards = invokeAll(loads);
+        }
+        System.out.println();
+        long bytes = 0;
+        for (File file : files) {
+            bytes += file.length();
+        }
+        IndexingMetrics.getInstance().record(QueryEngine.loadPhase(corpus), System.nanoTime() - start,
+                files.length, bytes);
+
+        statistics = new CorpusStatistics();
+        int termCount = 0;
+        for (QueryEngine shard : shards) {
+            shard.addStatistics(statistics);
+            termCount += shard.getTermCount();
+        }
+
+        System.out.println("(3/3) Calculating weights...");
+        start = System.nanoTime();
+        ProgressTracker weightProgress = new ProgressTracker(termCount);
+        weightProgress.start();
+        List<Callable<Void>> weights = new ArrayList<>(shardCount);
+        for (QueryEngine shard : shards) {
+            weights.add(() -> {
+                shard.weight(statistics, weightProgress);
+                return null;
+            });
+        }
+        invokeAll(weights);
+        System.out.println();
+        IndexingMetrics.getInstance().record(IndexingMetrics.Phase.WEIGHT, System.nanoTime() - start,
+                statistics.getNumDocuments(), 0);
+
+        // the shards quantize their weights for impact-ordered evaluation on the scale of the whole corpus
+        double largestWeight = 0;
+        for (QueryEngine shard : shards) {
+            largestWeight = Math.max(largestWeight, shard.getLargestWeight());
+        }
+        for (QueryEngine shard : shards) {
+            shard.useLargestWeight(largestWeight);
+        }
+        recordIndexSize();
+    }
+
+    /**
+     * Builds a ShardedQueryEngine by tokenizing the documents inside of inputDirPath straight into the
+     * shards, see QueryEngine.fromCorpus. The documents are named and split over shards as their token
+     * files would be, so the engine returns exactly what ShardedQueryEngine(String, int) would over the
+     * token files of the same corpus.
+     * @param inputDirPath filepath for the corpus
+     * @param exportDirPath filepath the token files are written into as well, or null to write none
+     * @param shardCount number of shards
+     * @return ShardedQueryEngine over the documents of the corpus
+     */
+    public static ShardedQueryEngine fromCorpus(String inputDirPath, String exportDirPath, int shardCount) {
+        return new ShardedQueryEngine(inputDirPath, shardCount, true,
+                exportDirPath == null ? null : new File(exportDirPath));
+    }
+
+    /**
+     * Turns impact-ordered evaluation of top k queries on or off in every shard, see QueryEngine.useImpacts
+     * @param bits number of bits of a quantized weight, 8 or 16, or 0 to turn impact-ordered evaluation off
+     */
+    public void useImpacts(int bits) {
+        if (bits != 0 && bits != 8 && bits != 16) {
+            throw new IllegalArgumentException("bits must be 0, 8 or 16");
+        }
+        lock.writeLock().lock();
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>(shards.size());
+            for (QueryEngine shard : shards) {
+                tasks.add(() -> {
+                    shard.useImpacts(bits);
+                    return null;
+                });
+            }
+            invokeAll(tasks);
+            recordIndexSize();
+            // results cached with the previous weights no longer apply
+            generation++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Creates the executor the shards are built and queried on. It runs up to one task per shard at
+     * once, on daemon threads that exit after a minute without queries, so an engine that is no longer
+     * used does not need to be closed.
+     * @param shardCount number of shards
+     * @return executor for the shards
+     */
+    private static ExecutorService newShardExecutor(int shardCount) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(shardCount, shardCount, SHARD_THREAD_KEEP_ALIVE,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+                    Thread thread = new Thread(task, "lighthouse-shard");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Runs tasks on the shard executor and waits for all of them
+     * @param <T> type of the task results
+     * @param tasks tasks to be run, usually one per shard
+     * @return results of the tasks, in task order
+     */
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> result : executor.invokeAll(tasks)) {
+                results.add(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Shard task was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Shard task failed", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Adds up the postings and the memory use of the shards, for the metrics of this engine
+     */
+    private void recordIndexSize() {
+        long postings = 0;
+        long bytes = 0;
+        for (QueryEngine shard : shards) {
+            postings += shard.getMetrics().getPostingCount();
+            bytes += shard.getMetrics().getIndexBytes();
+        }
+        metrics.recordIndexSize(statistics.getNumDocuments(), statistics.getTermCount(), postings, bytes);
+    }
+
+    /**
+     * Ranks the documents of every shard in parallel and merges the results. Every shard returns its
+     * own k best documents, so the k best of all shards are among them.
+     * @param query query string, as passed by the user
+     * @param parsedQuery parsed query
+     * @param k maximum number of documents to return, or 0 to return all of them
+     * @param scanned counter receiving the number of postings decoded
+     * @return List of documents and weights, most relevant first
+     */
+    @Override
+    List<Entry<String, Double>> rankShards(String query, ParsedQuery parsedQuery, int k, PostingCounter scanned) {
+        List<PostingCounter> counters = new ArrayList<>(shards.size());
+        List<Callable<List<Entry<String, Double>>>> tasks = new ArrayList<>(shards.size());
+        for (QueryEngine shard : shards) {
+            PostingCounter counter = new PostingCounter();
+            counters.add(counter);
+            tasks.add(() -> shard.rank(parsedQuery, k, counter));
+        }
+        List<Entry<String, Double>> merged = new ArrayList<>();
+        for (List<Entry<String, Double>> ranking : invokeAll(tasks)) {
+            merged.addAll(ranking);
+        }
+        for (PostingCounter counter : counters) {
+            scanned.add(counter.getCount());
+        }
+        return merge(merged, k);
+    }
+}
@@ -8,19 +8,35 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
 import org.jsoup.Jsoup;
 
-import lighthouse.util.ProgressBar;
+import lighthouse.util.EnumProperty;
+import lighthouse.util.ProgressTracker;
+import lighthouse.util.TermCounts;
 /**
  * The Tokenizer class reads in all files contained in the corpus' designated file location
  * and tokenizes the contents, along with calculating counts for each of the tokens
@@ -32,8 +48,22 @@ public class Tokenizer {
     public static final String OUTPUT_DIR = "tokens";
     /** default filepath location of tokenization stoplist */
     public static final String STOPLIST_PATH = "stoplist.txt";
+    /** default filepath location of the corpus manifest used for incremental tokenization */
+    public static final String MANIFEST_PATH = "manifest.csv";
+    /** system property used to select the executor mode for tokenization */
+    public static final String EXECUTOR_PROPERTY = "lighthouse.tokenizer.executor";
+    /** system property used to select how the text of documents is extracted */
+    public static final String EXTRACTOR_PROPERTY = "lighthouse.tokenizer.extractor";
+    /** system property used to turn off recording term positions, which phrase queries need */
+    public static final String POSITIONS_PROPERTY = "lighthouse.tokenizer.positions";
+    /** system property used to write token files while documents are tokenized straight into the index */
+    public static final String EXPORT_PROPERTY = "lighthouse.tokenizer.export";
+    /** number of files per core tokenized ahead of the index they are handed to, see tokenizeFiles */
+    static final int READ_AHEAD = 4;
     /** set of all strings inside of stoplist */
     protected static final Set<String> STOPLIST = loadStoplist(STOPLIST_PATH);
+    /** analyzer shared by document tokenization and query parsing */
+    protected static final Analyzer ANALYZER = new Analyzer(STOPLIST);
 
     /**
      * Private default constructor for creation of a Tokenizer object
@@ -56,21 +86,160 @@ public class Tokenizer {
         return stoplistReader.lines().collect(Collectors.toSet());
     }
 
+    /**
+     * Executor strategies available for tokenizing the corpus
+     */
+    public enum ExecutorMode {
+        /** tokenize one file at a time on the calling thread */
+        SERIAL,
+        /** tokenize on a work-stealing fork-join pool with one worker per core */
+        FORK_JOIN,
+        /** tokenize on a fixed thread pool with one thread per core */
+        FIXED_POOL,
+        /** tokenize each file on its own virtual thread */
+        VIRTUAL_THREADS;
+
+        /**
+         * Creates a new executor for this mode. The caller is responsible for closing it.
+         * @return executor for this mode, or null for SERIAL
+         */
+        public ExecutorService newExecutor() {
+            int cores = Runtime.getRuntime().availableProcessors();
+            switch (this) {
+                case FORK_JOIN:
+                    return new ForkJoinPool(cores);
+                case FIXED_POOL:
+                    return Executors.newFixedThreadPool(cores);
+                case VIRTUAL_THREADS:
+                    return Executors.newVirtualThreadPerTaskExecutor();
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * Strategies available for extracting the visible text of a document
+     */
+    public enum ExtractorMode {
+        /** stream the body text into the analyzer while parsing, dropping each top level element once read */
+        STREAMING,
+        /** parse the file into a jsoup DOM tree and analyze the text of its body */
+        DOM
+    }
+
     /**
      * Performs tokenization all files inside of the directory defined by inputDirPath.
      * Will output resulting token files to files inside of directory defined by outputDirPath.
+     * Files are tokenized on executor when one is passed, or one at a time on the calling thread otherwise.
      * @param inputDirPath filepath to the directory containing the input files
      * @param outputDirPath filepath to the directory containing the output files
+     * @param executor executor used to tokenize files in parallel, or null to tokenize serially
      */
-    private static void indexDirectory(String inputDirPath, String outputDirPath) {
+    private static void indexDirectory(String inputDirPath, String outputDirPath, ExecutorService executor) {
         /*
          * Perform tokenization across all files in input directory and
          * place resulting token files in the specified output directory
          */
-        File inputDir;
-        File outputDir;
-        inputDir = new File(inputDirPath);
-        outputDir = new File(outputDirPath);
+        File outputDir = new File(outputDirPath);
+        File[] files = listInputFiles(inputDirPath, outputDir);
+        System.out.printf("Found %d documents to index in input directory.%n", files.length);
+
+        indexFiles(Arrays.asList(files), outputDir, executor);
+    }
+
+    /**
+     * Finds the files inside of inputDirPath that are new or changed since the run recorded in the manifest
+     * at manifestPath, and deletes the token files of input files that no longer exist. The manifest is
+     * updated to describe the current corpus. The terms of a modified or removed document are read from its
+     * token file if it has one. When token files are exported, a document without one counts as changed so
+     * that it is written; otherwise the token files of changed documents are deleted, so that a token file
+     * which still exists always matches its document.
+     * @param inputDirPath filepath to the directory containing the input files
+     * @param outputDirPath filepath to the directory containing the output files
+     * @param manifestPath filepath of the corpus manifest
+     * @param export true if the token files of the changed files are going to be written
+     * @return description of the documents that were added, modified or removed
+     */
+    private static CorpusChanges findChanges(String inputDirPath, String outputDirPath, String manifestPath,
+            boolean export) {
+        File outputDir = new File(outputDirPath);
+        File[] files = listInputFiles(inputDirPath, outputDir);
+        // changed documents are indexed in name order, as they would be by a full build
+        Arrays.sort(files, Comparator.comparing(Tokenizer::documentName));
+
+        CorpusManifest previous = CorpusManifest.load(manifestPath);
+        CorpusManifest current = new CorpusManifest();
+        List<File> changedFiles = new ArrayList<>();
+        List<String> updatedDocuments = new ArrayList<>();
+        Map<String, Set<String>> previousTerms = new HashMap<>();
+
+        for (File file : files) {
+            CorpusManifest.Entry recorded = previous.get(file.getName());
+            File tokenFile = new File(outputDir, documentName(file));
+
+            // unchanged size and modification time: trust the existing token file, or the index
+            if (recorded != null && recorded.matches(file) && (tokenFile.exists() || !export)) {
+                current.put(recorded);
+                continue;
+            }
+
+            CorpusManifest.Entry entry;
+            try {
+                entry = CorpusManifest.Entry.of(file);
+            } catch (IOException e) {
+                e.printStackTrace();
+                continue;
+            }
+            current.put(entry);
+
+            // touched but identical contents: nothing to re-tokenize
+            if (recorded != null && recorded.getHash().equals(entry.getHash()) && (tokenFile.exists() || !export)) {
+                continue;
+            }
+
+            if (tokenFile.exists()) {
+                previousTerms.put(tokenFile.getName(), readTerms(tokenFile));
+                if (!export) {
+                    tokenFile.delete();
+                }
+            }
+            changedFiles.add(file);
+            updatedDocuments.add(tokenFile.getName());
+        }
+
+        // drop the token files of documents that were removed from the corpus
+        int removedCount = 0;
+        for (String name : previous.names()) {
+            if (current.get(name) == null) {
+                File tokenFile = new File(outputDir, documentName(new File(name)));
+                if (tokenFile.exists()) {
+                    previousTerms.put(tokenFile.getName(), readTerms(tokenFile));
+                    tokenFile.delete();
+                } else {
+                    // the index searches every posting list for the document
+                    previousTerms.put(tokenFile.getName(), null);
+                }
+                removedCount++;
+            }
+        }
+
+        System.out.printf("Found %d documents in input directory, %d new or modified, %d removed.%n",
+                files.length, changedFiles.size(), removedCount);
+        current.save(manifestPath);
+
+        return new CorpusChanges(updatedDocuments, changedFiles, previousTerms, previous.fingerprint(),
+                current.fingerprint());
+    }
+
+    /**
+     * Validates the input directory, creates the output directory if needed and lists the input files.
+     * @param inputDirPath filepath to the directory containing the input files
+     * @param outputDir directory containing the output files
+     * @return all files inside of the input directory
+     */
+    private static File[] listInputFiles(String inputDirPath, File outputDir) {
+        File inputDir = new File(inputDirPath);
 
         // if output directory does not exist, make it
         if (!outputDir.exists()) {
@@ -85,96 +254,203 @@ public class Tokenizer {
             throw new IllegalArgumentException("Input directory path is not a directory");
         }
 
-        File[] files = inputDir.listFiles();
-        int numFiles = files.length;
-        System.out.printf("Found %d documents to index in input directory.%n", numFiles);
+        return inputDir.listFiles();
+    }
 
+    /**
+     * Tokenizes each of the passed files and writes the token counts into the output directory.
+     * See tokenizeFiles for handing the token counts to an index instead.
+     * @param files files to be tokenized
+     * @param outputDir directory containing the output files
+     * @param executor executor used to tokenize files in parallel, or null to tokenize serially
+     */
+    private static void indexFiles(List<File> files, File outputDir, ExecutorService executor) {
         // tokenize each file in the input directory
         // write the token counter into the relevant output file
 
-        long progressPct = Math.max(Math.round(numFiles * ProgressBar.TICKMARK_PCT), 1);
         System.out.println("(1/3) Tokenizing documents");
+        ProgressTracker progress = new ProgressTracker(files.size());
+        progress.start();
+        long start = System.nanoTime();
 
-        int fileCounter = 0;
+        if (executor == null) {
+            for (File file : files) {
+                indexFile(file, outputDir);
+                progress.step();
+            }
+        } else {
+            List<Callable<Void>> tasks = new ArrayList<>(files.size());
+            for (File file : files) {
+                tasks.add(() -> {
+                    indexFile(file, outputDir);
+                    progress.step();
+                    return null;
+                });
+            }
+
+            try {
+                for (Future<Void> result : executor.invokeAll(tasks)) {
+                    result.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Tokenization was interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Tokenization failed", e.getCause());
+            }
+        }
+        System.out.println();
+        long bytes = 0;
         for (File file : files) {
+            bytes += file.length();
+        }
+        IndexingMetrics.getInstance().record(IndexingMetrics.Phase.TOKENIZE, System.nanoTime() - start,
+                files.size(), bytes);
+    }
 
-            if (fileCounter % progressPct == 0) {
-                ProgressBar.printProgressBar(fileCounter, numFiles);
+    /**
+     * Tokenizes files in parallel and hands their token counts to consumer one file at a time, in the
+     * order of files and on the calling thread, so that an index can be built from them while the next
+     * files are tokenized, without token files being written and parsed in between. At most READ_AHEAD
+     * files per core are tokenized ahead of consumer, which bounds the token counts held at once.
+     * The executor mode is read from the EXECUTOR_PROPERTY system property and defaults to FORK_JOIN.
+     * @param files files to be tokenized
+     * @param exportDir directory the token files are written into as well, or null to write none
+     * @param consumer receives every file along with its token counts
+     */
+    static void tokenizeFiles(List<File> files, File exportDir, BiConsumer<File, TermCounts> consumer) {
+        if (exportDir != null && !exportDir.exists()) {
+            exportDir.mkdirs();
+        }
+        ExecutorService executor = executorMode().newExecutor();
+        if (executor == null) {
+            for (File file : files) {
+                consumer.accept(file, indexFile(file, exportDir));
             }
+            return;
+        }
 
-            String outfileName = generateOutfileName(file, outputDirPath);
-            File outfile = new File(outfileName);
+        try (executor) {
+            int readAhead = READ_AHEAD * Runtime.getRuntime().availableProcessors();
+            Deque<Future<TermCounts>> pending = new ArrayDeque<>(readAhead);
+            Iterator<File> ahead = files.iterator();
+            for (File file : files) {
+                while (pending.size() < readAhead && ahead.hasNext()) {
+                    File next = ahead.next();
+                    pending.add(executor.submit(() -> indexFile(next, exportDir)));
+                }
+                consumer.accept(file, pending.remove().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Tokenization was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Tokenization failed", e.getCause());
+        }
+    }
 
-            Map<String, Integer> tokens = tokenizeFile(file);
-            writeTokens(outfile, tokens);
-            fileCounter++;
+    /**
+     * Tokenizes a single input file and writes its token counts into the output directory, if one is passed.
+     * @param file The file to be tokenized
+     * @param outputDir The directory containing all output files, or null to write no token file
+     * @return token counts of the file
+     */
+    private static TermCounts indexFile(File file, File outputDir) {
+        TermCounts tokens = tokenizeFile(file);
+        if (outputDir != null) {
+            writeTokens(new File(outputDir, documentName(file)), tokens);
         }
-        System.out.println();
+        return tokens;
     }
 
     /**
-     * Generatesd the name for an output file given the output directory path and the corresponding input file.
+     * Generates the name of the document of an input file, which is also the name of its token file.
      * @param inputFile The file that was passed as input
-     * @param outputDirPath The filepath to the directory containing all output files
      * @return String containing the name of the output token file.
      */
-    private static String generateOutfileName(File inputFile, String outputDirPath) {
-        // OUTPUT_DIR + basename + ".csv"
+    static String documentName(File inputFile) {
+        // basename + ".csv"
 
         String filename = inputFile.getName();
 
         // stripping off the .html extension (assuming files conform to standard)
         String basename = filename.substring(0, filename.length() - 5);
 
-        return outputDirPath + "\\" + basename + ".csv";
+        return basename + ".csv";
     }
 
     /**
      * Tokenizes a single file and calculates counts based off of the frequency in a particular document.
+     * The extractor mode is read from the EXTRACTOR_PROPERTY system property and defaults to DOM.
      * @param f File that is going to be tokenized
-     * @return Map of Strings and Integers which stores each token and its calculated frequency/count
+     * @return TermCounts which stores each token and its calculated frequency/count
      */
-    public static Map<String, Integer> tokenizeFile(File f) {
+    public static TermCounts tokenizeFile(File f) {
+        return tokenizeFile(f, extractorMode());
+    }
+
+    /**
+     * Tokenizes a single file and calculates counts based off of the frequency in a particular document.
+     * Positions are recorded unless turned off by the POSITIONS_PROPERTY system property.
+     * @param f File that is going to be tokenized
+     * @param mode strategy used to extract the visible text of the file
+     * @return TermCounts which stores each token and its calculated frequency/count
+     */
+    public static TermCounts tokenizeFile(File f, ExtractorMode mode) {
+        return tokenizeFile(f, mode, recordPositions());
+    }
+
+    /**
+     * Tokenizes a single file and calculates counts based off of the frequency in a particular document.
+     * Both extractor modes produce the same counts and positions.
+     * @param f File that is going to be tokenized
+     * @param mode strategy used to extract the visible text of the file
+     * @param positions true if the position of every term is to be recorded
+     * @return TermCounts which stores each token and its calculated frequency/count
+     */
+    public static TermCounts tokenizeFile(File f, ExtractorMode mode, boolean positions) {
         // extract and count the tokens from the file `f`, removing stopwords
         // the map of tokens and counts is returned for accumulation and to write the
         // output file
+        Analyzer.Counter counter = ANALYZER.newCounter(positions);
         try {
+            if (mode == ExtractorMode.STREAMING) {
+                // stream the visible text into the analyzer without keeping the whole DOM tree
+                return HtmlTextExtractor.extract(f, counter);
+            }
+
             // grab all visible text from the HTML file
             String documentText = Jsoup.parse(f).body().text();
 
-            String[] tokens = documentText.split("\\s+");
-            List<String> tokensList = Arrays.asList(tokens);
-
-            // remove special characters and downcase the tokens
-            // throw out stopwords and any empty tokens after processing
-            // ref:
-            // https://stackoverflow.com/questions/14260134/elegant-way-of-counting-occurrences-in-a-java-collection
-            return tokensList.stream()
-                    .map(String::toLowerCase)
-                    .map(t -> t.replaceAll("[!()_,.?':’]", ""))
-                    .filter(t -> t.length() != 0)
-                    .filter(t -> !STOPLIST.contains(t))
-                    .collect(Collectors.groupingBy(t -> t, Collectors.reducing(0, e -> 1, Integer::sum)));
+            // split, downcase and remove special characters in a single pass,
+            // throwing out stopwords and any empty tokens
+            counter.append(documentText);
+            return counter.finish();
 
         } catch (IOException e) {
             e.printStackTrace();
-            return new HashMap<>();
+            return new TermCounts();
         }
     }
 
     /**
-     * Writes Map<String, Integer> of tokens and their counts into tokenFile in csv format
+     * Writes TermCounts of tokens and their counts into tokenFile in csv format. When positions were
+     * recorded, they are written into a third column, see encodePositions.
      * @param tokenFile file where the tokens and counts will be stored
-     * @param tokens Map<String, Integer> which stores pairs of tokens and their respective counts
+     * @param tokens TermCounts which stores pairs of tokens and their respective counts
      */
-    private static void writeTokens(File tokenFile, Map<String, Integer> tokens) {
-        // write `tokens` into `tokenFile` in csv format: token, count
+    private static void writeTokens(File tokenFile, TermCounts tokens) {
+        // write `tokens` into `tokenFile` in csv format: token, count[, positions]
 
         try (FileWriter fileWriter = new FileWriter(tokenFile);
                 BufferedWriter writer = new BufferedWriter(fileWriter)) {
             CSVPrinter printer = new CSVPrinter(writer, CSVFormat.DEFAULT);
-            for (Entry<String, Integer> entry : tokens.entrySet()) {
-                printer.printRecord(entry.getKey(), entry.getValue());
+            for (int i = 0; i < tokens.size(); i++) {
+                if (tokens.hasPositions()) {
+                    printer.printRecord(tokens.getTerm(i), tokens.getCount(i), encodePositions(tokens.getPositions(i)));
+                } else {
+                    printer.printRecord(tokens.getTerm(i), tokens.getCount(i));
+                }
             }
             printer.close();
         } catch (IOException e) {
@@ -183,21 +459,201 @@ public class Tokenizer {
 
     }
 
+    /**
+     * Encodes ascending term positions for a token file as the space separated gaps between them,
+     * the first gap being the first position itself
+     * @param positions ascending positions of a term
+     * @return encoded positions
+     */
+    static String encodePositions(int[] positions) {
+        StringBuilder encoded = new StringBuilder(positions.length * 3);
+        int previous = 0;
+        for (int i = 0; i < positions.length; i++) {
+            if (i > 0) {
+                encoded.append(' ');
+            }
+            encoded.append(positions[i] - previous);
+            previous = positions[i];
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * Decodes term positions written by encodePositions
+     * @param encoded encoded positions
+     * @param count number of positions
+     * @return ascending positions of a term
+     */
+    static int[] decodePositions(String encoded, int count) {
+        int[] positions = new int[count];
+        int position = 0;
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int end = encoded.indexOf(' ', start);
+            if (end < 0) {
+                end = encoded.length();
+            }
+            position += Integer.parseInt(encoded, start, end, 10);
+            positions[i] = position;
+            start = end + 1;
+        }
+        return positions;
+    }
+
+    /**
+     * Reads the set of tokens stored in a previously written token file
+     * @param tokenFile csv token file
+     * @return set of tokens stored in tokenFile
+     */
+    private static Set<String> readTerms(File tokenFile) {
+        Set<String> terms = new HashSet<>();
+        try (CSVParser tokenParser = CSVParser.parse(tokenFile, StandardCharsets.UTF_8, CSVFormat.DEFAULT)) {
+            for (CSVRecord tokenRecord : tokenParser) {
+                terms.add(tokenRecord.get(0));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return terms;
+    }
+
     /**
      * Begins the tokenization process, using constant values INPUT_DIR and OUTPUT_DIR
      * as the input and output directories.
      */
     public static void tokenize() {
-        indexDirectory(INPUT_DIR, OUTPUT_DIR);
+        tokenize(INPUT_DIR, OUTPUT_DIR);
     }
 
     /**
      * Begins the tokenization process, using arguments inputDirPath and outputDirPath
-     * as the input and output directories.
+     * as the input and output directories. The executor mode is read from the
+     * EXECUTOR_PROPERTY system property and defaults to FORK_JOIN.
      * @param inputDirPath filepath for input directory
      * @param outputDirPath filepath for output directory
      */
     public static void tokenize(String inputDirPath, String outputDirPath) {
-        indexDirectory(inputDirPath, outputDirPath);
+        tokenize(inputDirPath, outputDirPath, executorMode());
+    }
+
+    /**
+     * Begins the tokenization process on a new executor of the given mode, using arguments
+     * inputDirPath and outputDirPath as the input and output directories.
+     * @param inputDirPath filepath for input directory
+     * @param outputDirPath filepath for output directory
+     * @param mode executor strategy used to tokenize the files
+     */
+    public static void tokenize(String inputDirPath, String outputDirPath, ExecutorMode mode) {
+        ExecutorService executor = mode.newExecutor();
+        if (executor == null) {
+            indexDirectory(inputDirPath, outputDirPath, null);
+            return;
+        }
+        try (executor) {
+            indexDirectory(inputDirPath, outputDirPath, executor);
+        }
+    }
+
+    /**
+     * Begins the tokenization process on the passed executor, using arguments inputDirPath and
+     * outputDirPath as the input and output directories. The executor is not shut down.
+     * @param inputDirPath filepath for input directory
+     * @param outputDirPath filepath for output directory
+     * @param executor executor used to tokenize the files
+     */
+    public static void tokenize(String inputDirPath, String outputDirPath, ExecutorService executor) {
+        indexDirectory(inputDirPath, outputDirPath, executor);
+    }
+
+    /**
+     * Begins an incremental tokenization run, using constant values INPUT_DIR, OUTPUT_DIR and MANIFEST_PATH
+     * as the input directory, output directory and corpus manifest.
+     * @return description of the documents that were added, modified or removed
+     */
+    public static CorpusChanges update() {
+        return update(INPUT_DIR, OUTPUT_DIR, MANIFEST_PATH);
+    }
+
+    /**
+     * Begins an incremental tokenization run. Only input files that are new or changed since the run recorded
+     * in the manifest are tokenized, and token files of removed input files are deleted.
+     * The executor mode is read from the EXECUTOR_PROPERTY system property and defaults to FORK_JOIN.
+     * @param inputDirPath filepath for input directory
+     * @param outputDirPath filepath for output directory
+     * @param manifestPath filepath for the corpus manifest
+     * @return description of the documents that were added, modified or removed
+     */
+    public static CorpusChanges update(String inputDirPath, String outputDirPath, String manifestPath) {
+        CorpusChanges changes = findChanges(inputDirPath, outputDirPath, manifestPath, true);
+        if (changes.getUpdatedFiles().isEmpty()) {
+            return changes;
+        }
+        ExecutorService executor = executorMode().newExecutor();
+        if (executor == null) {
+            indexFiles(changes.getUpdatedFiles(), new File(outputDirPath), null);
+            return changes;
+        }
+        try (executor) {
+            indexFiles(changes.getUpdatedFiles(), new File(outputDirPath), executor);
+        }
+        return changes;
+    }
+
+    /**
+     * Finds the documents changed since the last run, using constant values INPUT_DIR, OUTPUT_DIR and
+     * MANIFEST_PATH as the input directory, output directory and corpus manifest.
+     * @return description of the documents that were added, modified or removed
+     */
+    public static CorpusChanges findChanges() {
+        return findChanges(INPUT_DIR, OUTPUT_DIR, MANIFEST_PATH);
+    }
+
+    /**
+     * Finds the input files that are new or changed since the run recorded in the manifest, without
+     * tokenizing them, so that QueryEngine.updateFromCorpus can tokenize them straight into
+     * the index. Token files of removed input files are deleted, and so are those of changed input files
+     * unless exportTokens is true, in which case unchanged input files without a token file count as changed.
+     * @param inputDirPath filepath for input directory
+     * @param outputDirPath filepath for output directory
+     * @param manifestPath filepath for the corpus manifest
+     * @return description of the documents that were added, modified or removed
+     */
+    public static CorpusChanges findChanges(String inputDirPath, String outputDirPath, String manifestPath) {
+        return findChanges(inputDirPath, outputDirPath, manifestPath, exportTokens());
+    }
+
+    /**
+     * Reads from the EXPORT_PROPERTY system property whether token files are written while documents are
+     * tokenized straight into the index
+     * @return true if the property is set to true
+     */
+    public static boolean exportTokens() {
+        return Boolean.getBoolean(EXPORT_PROPERTY);
+    }
+
+    /**
+     * Reads the executor mode from the EXECUTOR_PROPERTY system property
+     * @return configured executor mode, FORK_JOIN by default
+     * @throws IllegalArgumentException if the property names no executor mode
+     */
+    private static ExecutorMode executorMode() {
+        return EnumProperty.get(EXECUTOR_PROPERTY, ExecutorMode.FORK_JOIN);
+    }
+
+    /**
+     * Reads from the POSITIONS_PROPERTY system property whether term positions are recorded
+     * @return true unless the property is set to false
+     */
+    private static boolean recordPositions() {
+        return Boolean.parseBoolean(System.getProperty(POSITIONS_PROPERTY, "true"));
+    }
+
+    /**
+     * Reads the extractor mode from the EXTRACTOR_PROPERTY system property
+     * @return configured extractor mode, DOM by default
+     * @throws IllegalArgumentException if the property names no extractor mode
+     */
+    private static ExtractorMode extractorMode() {
+        return EnumProperty.get(EXTRACTOR_PROPERTY, ExtractorMode.DOM);
     }
 }
@@ -0,0 +1,395 @@
+package lighthouse.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * CompressedPostingList is the immutable, compact form of a PostingList used at query time.
+ *
+ * <p>Postings are grouped into blocks of BLOCK_SIZE. Inside a block, the gaps between consecutive
+ * document IDs are stored first, followed by the term counts, each as a variable-byte integer
+ * (seven bits per byte, high bit set on all but the last byte). The first gap of a block is taken
+ * relative to the last document ID of the previous block. For every block the last document ID and
+ * the byte offset of the block are kept uncompressed, so whole blocks can be skipped without
+ * decoding them.</p>
+ *
+ * <p>When every posting carries the positions of its term, they are kept in a separate stream, so
+ * queries that do not need them never read them. The positions of each posting are stored in posting
+ * order as variable-byte gaps, the first one relative to position 0, and every block records where its
+ * positions start. The positions of a single posting are found by skipping the positions of the
+ * postings before it in the block, whose number is the sum of their term counts.</p>
+ *
+ * <p>The encoded postings and block headers are read through buffers, which either wrap arrays on the
+ * heap or are views of memory outside of it, see OffHeapTermDictionary. Only absolute reads are used,
+ * so any number of threads may read the same buffers at once.</p>
+ */
+public class CompressedPostingList {
+    /** Number of postings per block */
+    public static final int BLOCK_SIZE = 128;
+
+    private final int size;
+    private final IntBuffer blockLastDocuments;
+    private final IntBuffer blockOffsets;
+    private final ByteBuffer data;
+    private final IntBuffer blockPositionOffsets;
+    private final ByteBuffer positionData;
+
+    /**
+     * Constructs a CompressedPostingList by encoding the passed postings
+     * @param postings postings to be encoded, sorted by document ID
+     */
+    public CompressedPostingList(PostingList postings) {
+        size = postings.size();
+        int blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int[] lastDocuments = new int[blockCount];
+        int[] offsets = new int[blockCount];
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size * 2 + 1);
+        int previousDocument = -1;
+        for (int block = 0; block < blockCount; block++) {
+            int start = block * BLOCK_SIZE;
+            int end = Math.min(start + BLOCK_SIZE, size);
+            offsets[block] = out.size();
+
+            for (int i = start; i < end; i++) {
+                int documentID = postings.getDocumentID(i);
+                writeVarInt(out, documentID - previousDocument);
+                previousDocument = documentID;
+            }
+            for (int i = start; i < end; i++) {
+                writeVarInt(out, postings.getTermCount(i));
+            }
+            lastDocuments[block] = previousDocument;
+        }
+        blockLastDocuments = IntBuffer.wrap(lastDocuments);
+        blockOffsets = IntBuffer.wrap(offsets);
+        data = ByteBuffer.wrap(out.toByteArray());
+
+        if (!postings.hasPositions()) {
+            blockPositionOffsets = null;
+            positionData = null;
+            return;
+        }
+        int[] positionOffsets = new int[blockCount];
+        ByteArrayOutputStream positionOut = new ByteArrayOutputStream(size * 4);
+        for (int block = 0; block < blockCount; block++) {
+            positionOffsets[block] = positionOut.size();
+            int end = Math.min((block + 1) * BLOCK_SIZE, size);
+            for (int i = block * BLOCK_SIZE; i < end; i++) {
+                int previousPosition = 0;
+                for (int position : postings.getPositions(i)) {
+                    writeVarInt(positionOut, position - previousPosition);
+                    previousPosition = position;
+                }
+            }
+        }
+        blockPositionOffsets = IntBuffer.wrap(positionOffsets);
+        positionData = ByteBuffer.wrap(positionOut.toByteArray());
+    }
+
+    /**
+     * Constructs a CompressedPostingList from already encoded parts, used when loading a saved index
+     * @param size number of postings
+     * @param blockLastDocuments last document ID of each block
+     * @param blockOffsets byte offset of each block in data
+     * @param data encoded postings
+     */
+    public CompressedPostingList(int size, int[] blockLastDocuments, int[] blockOffsets, byte[] data) {
+        this(size, blockLastDocuments, blockOffsets, data, null, null);
+    }
+
+    /**
+     * Constructs a CompressedPostingList with positions from already encoded parts, used when loading a
+     * saved index
+     * @param size number of postings
+     * @param blockLastDocuments last document ID of each block
+     * @param blockOffsets byte offset of each block in data
+     * @param data encoded postings
+     * @param blockPositionOffsets byte offset of the positions of each block in positionData, or null
+     * @param positionData encoded positions, or null if the postings carry no positions
+     */
+    public CompressedPostingList(int size, int[] blockLastDocuments, int[] blockOffsets, byte[] data,
+            int[] blockPositionOffsets, byte[] positionData) {
+        this(size, IntBuffer.wrap(blockLastDocuments), IntBuffer.wrap(blockOffsets), ByteBuffer.wrap(data),
+                blockPositionOffsets == null ? null : IntBuffer.wrap(blockPositionOffsets),
+                positionData == null ? null : ByteBuffer.wrap(positionData));
+    }
+
+    /**
+     * Constructs a CompressedPostingList reading already encoded parts from buffers, which may lie outside
+     * of the heap. The buffers are read from index 0 up to their limit and never modified.
+     * @param size number of postings
+     * @param blockLastDocuments last document ID of each block
+     * @param blockOffsets byte offset of each block in data
+     * @param data encoded postings
+     * @param blockPositionOffsets byte offset of the positions of each block in positionData, or null
+     * @param positionData encoded positions, or null if the postings carry no positions
+     */
+    public CompressedPostingList(int size, IntBuffer blockLastDocuments, IntBuffer blockOffsets, ByteBuffer data,
+            IntBuffer blockPositionOffsets, ByteBuffer positionData) {
+        this.size = size;
+        this.blockLastDocuments = blockLastDocuments;
+        this.blockOffsets = blockOffsets;
+        this.data = data;
+        this.blockPositionOffsets = blockPositionOffsets;
+        this.positionData = positionData;
+    }
+
+    /**
+     * Writes a non-negative integer as a variable-byte integer
+     * @param out stream the integer is written to
+     * @param value integer to be written
+     */
+    static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Obtains the number of postings in the list
+     * @return number of postings in the list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Obtains the number of blocks in the list
+     * @return number of blocks in the list
+     */
+    public int getBlockCount() {
+        return blockLastDocuments.limit();
+    }
+
+    /**
+     * Obtains the last document ID of a block
+     * @param block index of the block
+     * @return last document ID of the block
+     */
+    public int getBlockLastDocument(int block) {
+        return blockLastDocuments.get(block);
+    }
+
+    /**
+     * Obtains the number of postings in a block
+     * @param block index of the block
+     * @return number of postings in the block; BLOCK_SIZE for every block but the last
+     */
+    public int getBlockSize(int block) {
+        return Math.min(BLOCK_SIZE, size - block * BLOCK_SIZE);
+    }
+
+    /**
+     * Finds the first block at or after from that may contain target, using only the block headers.
+     * The search gallops ahead from from in steps that double, then binary searches the last step, so
+     * its cost grows with the logarithm of the number of blocks skipped rather than of those left.
+     * @param from index of the block to start searching from
+     * @param target document ID to search for
+     * @return index of the first block at or after from whose last document ID is not less than target,
+     *      or getBlockCount() if there is none
+     */
+    public int findBlock(int from, int target) {
+        // blocks before low end before target; the block at bound, if any, does not
+        IntBuffer lastDocuments = blockLastDocuments;
+        int blockCount = lastDocuments.limit();
+        int low = from;
+        int bound = from;
+        int step = 1;
+        while (bound < blockCount && lastDocuments.get(bound) < target) {
+            low = bound + 1;
+            bound = from + step;
+            step <<= 1;
+        }
+        int high = Math.min(bound, blockCount);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lastDocuments.get(mid) < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Decodes one block of postings
+     * @param block index of the block
+     * @param documentIDs receives the document IDs of the block; must hold BLOCK_SIZE entries
+     * @param termCounts receives the term counts of the block; must hold BLOCK_SIZE entries
+     * @return number of postings in the block
+     */
+    public int decodeBlock(int block, int[] documentIDs, int[] termCounts) {
+        int count = getBlockSize(block);
+        decodeTermCounts(decodeDocuments(block, documentIDs), count, termCounts);
+        return count;
+    }
+
+    /**
+     * Decodes the document IDs of one block, leaving its term counts to be decoded only if needed
+     * @param block index of the block
+     * @param documentIDs receives the getBlockSize(block) document IDs of the block
+     * @return byte offset of the term counts of the block, to be passed to decodeTermCounts
+     */
+    public int decodeDocuments(int block, int[] documentIDs) {
+        int count = getBlockSize(block);
+        int documentID = block == 0 ? -1 : blockLastDocuments.get(block - 1);
+        int offset = blockOffsets.get(block);
+        ByteBuffer bytes = data;
+
+        for (int i = 0; i < count; i++) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes.get(offset++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            documentID += value;
+            documentIDs[i] = documentID;
+        }
+        return offset;
+    }
+
+    /**
+     * Decodes the term counts of one block
+     * @param offset byte offset of the term counts, as returned by decodeDocuments
+     * @param count number of postings in the block
+     * @param termCounts receives the term counts of the block; must hold count entries
+     */
+    public void decodeTermCounts(int offset, int count, int[] termCounts) {
+        ByteBuffer bytes = data;
+        for (int i = 0; i < count; i++) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes.get(offset++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            termCounts[i] = value;
+        }
+    }
+
+    /**
+     * Checks whether the postings carry the positions of the term
+     * @return true if positions are stored, false otherwise
+     */
+    public boolean hasPositions() {
+        return positionData != null;
+    }
+
+    /**
+     * Obtains where the positions of a block start
+     * @param block index of the block
+     * @return byte offset of the positions of the first posting of the block
+     */
+    public int getBlockPositionOffset(int block) {
+        return blockPositionOffsets.get(block);
+    }
+
+    /**
+     * Skips over encoded positions without decoding them
+     * @param offset byte offset of the first position to skip
+     * @param count number of positions to skip
+     * @return byte offset following the skipped positions
+     */
+    public int skipPositions(int offset, int count) {
+        ByteBuffer bytes = positionData;
+        // every position ends with the one byte that has its high bit clear
+        while (count > 0) {
+            if (bytes.get(offset++) >= 0) {
+                count--;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Decodes the positions of one posting
+     * @param offset byte offset of the first position of the posting
+     * @param count number of positions of the posting, its term count
+     * @param positions receives the ascending positions; must hold count entries
+     * @return byte offset following the decoded positions
+     */
+    public int decodePositions(int offset, int count, int[] positions) {
+        ByteBuffer bytes = positionData;
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes.get(offset++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            position += value;
+            positions[i] = position;
+        }
+        return offset;
+    }
+
+    /**
+     * Decodes the whole list back into a mutable PostingList
+     * @return PostingList holding the same postings
+     */
+    public PostingList toPostingList() {
+        PostingList postings = new PostingList(size);
+        int[] documentIDs = new int[BLOCK_SIZE];
+        int[] termCounts = new int[BLOCK_SIZE];
+        int positionOffset = 0;
+        for (int block = 0; block < getBlockCount(); block++) {
+            int count = decodeBlock(block, documentIDs, termCounts);
+            for (int i = 0; i < count; i++) {
+                int[] positions = null;
+                if (hasPositions()) {
+                    positions = new int[termCounts[i]];
+                    positionOffset = decodePositions(positionOffset, termCounts[i], positions);
+                }
+                postings.add(documentIDs[i], termCounts[i], positions);
+            }
+        }
+        return postings;
+    }
+
+    /**
+     * Obtains the byte offset of a block, used when saving the index
+     * @param block index of the block
+     * @return byte offset of the block in the encoded postings
+     */
+    public int getBlockOffset(int block) {
+        return blockOffsets.get(block);
+    }
+
+    /**
+     * Obtains the encoded postings, used when saving the index
+     * @return read-only view of the encoded postings, from index 0 to its limit
+     */
+    public ByteBuffer getData() {
+        return data.asReadOnlyBuffer();
+    }
+
+    /**
+     * Obtains the encoded positions, used when saving the index
+     * @return read-only view of the encoded positions, or null if positions are not stored
+     */
+    public ByteBuffer getPositionData() {
+        return positionData == null ? null : positionData.asReadOnlyBuffer();
+    }
+
+    /**
+     * Estimates the memory used by this list
+     * @return approximate size in bytes
+     */
+    public long sizeInBytes() {
+        long positionBytes = positionData == null ? 0 : positionData.limit() + 4L * blockPositionOffsets.limit();
+        return data.limit() + 8L * blockLastDocuments.limit() + positionBytes;
+    }
+}
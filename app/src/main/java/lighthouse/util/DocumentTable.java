@@ -0,0 +1,101 @@
+package lighthouse.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * DocumentTable assigns dense integer IDs to documents and stores the name and length of each one.
+ * Postings refer to documents only by ID, so names are kept once here instead of in every posting.
+ * IDs are handed out in increasing order; the ID of a removed document is never reused.
+ */
+public class DocumentTable {
+    private String[] names;
+    private int[] lengths;
+    private Map<String, Integer> ids;
+    private int size;
+
+    /**
+     * Constructs an empty DocumentTable
+     */
+    public DocumentTable() {
+        names = new String[PostingList.INITIAL_CAPACITY];
+        lengths = new int[PostingList.INITIAL_CAPACITY];
+        ids = new HashMap<>();
+        size = 0;
+    }
+
+    /**
+     * Adds a document to the table and assigns it the next free ID
+     * @param name name of the document
+     * @param length number of tokens in the document
+     * @return ID assigned to the document
+     */
+    public int add(String name, int length) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+        }
+        names[size] = name;
+        lengths[size] = length;
+        if (name != null) {
+            ids.put(name, size);
+        }
+        return size++;
+    }
+
+    /**
+     * Removes a document from the table. Its ID stays allocated but no longer resolves to a name.
+     * @param id ID of the document to be removed
+     */
+    public void remove(int id) {
+        ids.remove(names[id]);
+        names[id] = null;
+        lengths[id] = 0;
+    }
+
+    /**
+     * Obtains the ID of a document
+     * @param name name of the document
+     * @return ID of the document, or -1 if the table does not contain it
+     */
+    public int getID(String name) {
+        return ids.getOrDefault(name, -1);
+    }
+
+    /**
+     * Obtains the name of a document
+     * @param id ID of the document
+     * @return name of the document, or null if it was removed
+     */
+    public String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * Obtains the length of a document
+     * @param id ID of the document
+     * @return number of tokens in the document
+     */
+    public int getLength(int id) {
+        return lengths[id];
+    }
+
+    /**
+     * Sets the length of a document
+     * @param id ID of the document
+     * @param length number of tokens in the document
+     */
+    public void setLength(int id, int length) {
+        lengths[id] = length;
+    }
+
+    /**
+     * Obtains the number of IDs handed out so far, including IDs of removed documents.
+     * Every document ID is less than this value.
+     * @return number of allocated document IDs
+     */
+    public int size() {
+        return size;
+    }
+}
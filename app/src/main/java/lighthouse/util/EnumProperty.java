@@ -0,0 +1,39 @@
+package lighthouse.util;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * EnumProperty reads system properties that select one constant of an enum, such as an executor mode
+ * or an output format. Values are matched regardless of case and of the default locale.
+ */
+public class EnumProperty {
+
+    /**
+     * Private default constructor for creation of an EnumProperty object
+     */
+    private EnumProperty() {
+    }
+
+    /**
+     * Reads the enum constant named by a system property
+     * @param <E> type of the enum
+     * @param property name of the system property
+     * @param defaultValue constant used when the property is not set
+     * @return constant named by the property, or defaultValue if it is not set
+     * @throws IllegalArgumentException if the property names no constant, with the valid ones in the message
+     */
+    public static <E extends Enum<E>> E get(String property, E defaultValue) {
+        String value = System.getProperty(property);
+        if (value == null) {
+            return defaultValue;
+        }
+        Class<E> type = defaultValue.getDeclaringClass();
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(property + " must be one of "
+                    + Arrays.toString(type.getEnumConstants()) + ", not " + value);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package lighthouse.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram counts non-negative long values, such as latencies in nanoseconds, in buckets of bounded
+ * relative error, in the manner of an HDR histogram. Values below 2^SUB_BUCKET_BITS get a bucket each;
+ * above that, every power of two is split into 2^SUB_BUCKET_BITS buckets of equal width, so a value is
+ * reported within 1 / 2^SUB_BUCKET_BITS of itself (under 1%) whatever its magnitude, in a fixed
+ * amount of memory.
+ *
+ * <p>Recording is lock-free and can be done from any number of threads at once. Reads are not atomic
+ * with respect to concurrent recording, so a percentile may miss values recorded while it is computed.</p>
+ */
+public class Histogram {
+    /** Number of bits of precision kept for every value */
+    public static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // one linear range, then one range per power of two from 2^SUB_BUCKET_BITS up to 2^62
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one value
+     * @param value value to be recorded; negative values are recorded as 0
+     */
+    public void record(long value) {
+        value = Math.max(value, 0);
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Finds the bucket a value is counted in
+     * @param value non-negative value
+     * @return index of the bucket
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        // the highest SUB_BUCKET_BITS + 1 bits of the value select the bucket within its power of two
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Obtains the largest value counted in a bucket
+     * @param bucket index of the bucket
+     * @return largest value of the bucket
+     */
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKET_COUNT - 1;
+        long lowest = (long) (SUB_BUCKET_COUNT + bucket % SUB_BUCKET_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Obtains the number of values recorded
+     * @return number of values recorded
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Obtains the sum of all values recorded
+     * @return sum of the values
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * Obtains the largest value recorded
+     * @return largest value, or 0 if none was recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Obtains the mean of the values recorded
+     * @return mean value, or 0 if none was recorded
+     */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) total.get() / n;
+    }
+
+    /**
+     * Obtains the value at a percentile: the smallest value that the passed percentage of the values
+     * recorded do not exceed, rounded up to the largest value of its bucket but never above getMax()
+     * @param percentile percentile between 0 and 100
+     * @return value at the percentile, or 0 if none was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max((long) Math.ceil(percentile / 100 * n), 1);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(highestValueOf(bucket), max.get());
+            }
+        }
+        return max.get();
+    }
+}
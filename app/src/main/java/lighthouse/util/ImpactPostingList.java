@@ -0,0 +1,134 @@
+package lighthouse.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * ImpactPostingList holds the postings of one term in impact order, for score-at-a-time query evaluation.
+ *
+ * <p>The BM25 weight of every posting is quantized to a small positive integer, its impact, and the
+ * postings are grouped into segments of equal impact, highest impact first, each holding at most
+ * CompressedPostingList.BLOCK_SIZE postings in document order. The impact is stored once per segment,
+ * and the document IDs of a segment as variable-byte gaps, the first one relative to -1, so a posting
+ * takes about as many bytes as its gap and its weight takes none. Queries read the segments from the
+ * front and stop once the impacts left cannot change the best documents.</p>
+ */
+public class ImpactPostingList {
+    private final int size;
+    private final int[] segmentImpacts;
+    private final int[] segmentSizes;
+    private final int[] segmentOffsets;
+    private final byte[] data;
+
+    /**
+     * Constructs an ImpactPostingList from postings and their impacts
+     * @param documentIDs document IDs of the postings
+     * @param impacts positive impacts of the postings, in the same order
+     * @param size number of postings
+     */
+    public ImpactPostingList(int[] documentIDs, int[] impacts, int size) {
+        this.size = size;
+
+        // sort by descending impact, then by document ID, with both packed into one key
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = (long) (Integer.MAX_VALUE - impacts[i]) << 32 | documentIDs[i];
+        }
+        Arrays.sort(keys);
+
+        int[] impactList = new int[size];
+        int[] sizeList = new int[size];
+        int[] offsetList = new int[size];
+        int segmentCount = 0;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size + 1);
+        int previousDocument = -1;
+        for (int i = 0; i < size; i++) {
+            int impact = Integer.MAX_VALUE - (int) (keys[i] >>> 32);
+            int documentID = (int) keys[i];
+            if (segmentCount == 0 || impactList[segmentCount - 1] != impact
+                    || sizeList[segmentCount - 1] == CompressedPostingList.BLOCK_SIZE) {
+                impactList[segmentCount] = impact;
+                offsetList[segmentCount] = out.size();
+                segmentCount++;
+                previousDocument = -1;
+            }
+            CompressedPostingList.writeVarInt(out, documentID - previousDocument);
+            previousDocument = documentID;
+            sizeList[segmentCount - 1]++;
+        }
+        segmentImpacts = Arrays.copyOf(impactList, segmentCount);
+        segmentSizes = Arrays.copyOf(sizeList, segmentCount);
+        segmentOffsets = Arrays.copyOf(offsetList, segmentCount);
+        data = out.toByteArray();
+    }
+
+    /**
+     * Obtains the number of postings in the list
+     * @return number of postings in the list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Obtains the number of segments in the list
+     * @return number of segments in the list
+     */
+    public int getSegmentCount() {
+        return segmentImpacts.length;
+    }
+
+    /**
+     * Obtains the impact shared by the postings of a segment
+     * @param segment index of the segment
+     * @return impact of the segment; no later segment has a higher one
+     */
+    public int getSegmentImpact(int segment) {
+        return segmentImpacts[segment];
+    }
+
+    /**
+     * Obtains the number of postings in a segment
+     * @param segment index of the segment
+     * @return number of postings in the segment, at most CompressedPostingList.BLOCK_SIZE
+     */
+    public int getSegmentSize(int segment) {
+        return segmentSizes[segment];
+    }
+
+    /**
+     * Decodes the document IDs of one segment
+     * @param segment index of the segment
+     * @param documentIDs receives the ascending document IDs of the segment; must hold
+     *      CompressedPostingList.BLOCK_SIZE entries
+     * @return number of postings in the segment
+     */
+    public int decodeSegment(int segment, int[] documentIDs) {
+        int count = segmentSizes[segment];
+        int documentID = -1;
+        int offset = segmentOffsets[segment];
+        byte[] bytes = data;
+
+        for (int i = 0; i < count; i++) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[offset++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            documentID += value;
+            documentIDs[i] = documentID;
+        }
+        return count;
+    }
+
+    /**
+     * Estimates the memory used by this list
+     * @return approximate size in bytes
+     */
+    public long sizeInBytes() {
+        return data.length + 12L * segmentImpacts.length;
+    }
+}
@@ -0,0 +1,465 @@
+package lighthouse.util;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * OffHeapTermDictionary is a TermDictionary that keeps its terms and their postings outside of the Java
+ * heap, in direct ByteBuffers, so the garbage collector traces a few buffers rather than several objects
+ * per term, however large the index grows.
+ *
+ * <p>Every term has a fixed-size record in a table sorted by term, holding its largest weight, the sizes
+ * of its postings and where its entry starts. An entry holds the block headers, the encoded postings and
+ * the positions of the term's CompressedPostingList, followed by the characters of the term, and lies in
+ * one of a few large chunks. Looking a term up binary searches the table, comparing the characters in
+ * place, and only then creates a TDMHeader and a CompressedPostingList over views of its entry. These
+ * flyweights are dropped along with the query; two of them are equal if they stand for the same term of
+ * the same dictionary. The impact-ordered postings of the terms, if they are built, stay on the heap.</p>
+ */
+public class OffHeapTermDictionary extends TermDictionary {
+    /** Size in bytes of the chunks holding the entries of the terms; a larger entry gets a chunk of its own */
+    public static final int CHUNK_SIZE = 1 << 24;
+
+    // layout of a record: chunk and offset of the entry, term length, number of postings and of blocks,
+    // bytes of encoded postings and of positions (-1 without positions), and the largest weight
+    private static final int RECORD_CHUNK = 0;
+    private static final int RECORD_OFFSET = 4;
+    private static final int RECORD_TERM_LENGTH = 8;
+    private static final int RECORD_SIZE = 12;
+    private static final int RECORD_BLOCK_COUNT = 16;
+    private static final int RECORD_DATA_LENGTH = 20;
+    private static final int RECORD_POSITION_LENGTH = 24;
+    private static final int RECORD_MAX_WEIGHT = 28;
+    private static final int RECORD_BYTES = 36;
+
+    private final ByteBuffer records;
+    private final ByteBuffer[] chunks;
+    private final int size;
+    // impact-ordered postings of every term, allocated once the first of them is set
+    private ImpactPostingList[] impactPostings;
+
+    /**
+     * Constructs an OffHeapTermDictionary over records and chunks filled by a Builder
+     * @param records table of the term records, sorted by term
+     * @param chunks chunks holding the entries of the terms
+     */
+    private OffHeapTermDictionary(ByteBuffer records, ByteBuffer[] chunks) {
+        this.records = records;
+        this.chunks = chunks;
+        this.size = records.capacity() / RECORD_BYTES;
+    }
+
+    /**
+     * Copies the terms and compressed postings of the passed headers out of the heap
+     * @param headers headers of every term in the index, with their maximum weights set
+     * @return dictionary holding the same terms and postings
+     */
+    public static OffHeapTermDictionary copyOf(Collection<TDMHeader> headers) {
+        TDMHeader[] sorted = headers.toArray(new TDMHeader[0]);
+        Arrays.sort(sorted, Comparator.comparing(TDMHeader::getTerm));
+        Builder builder = new Builder(sorted.length);
+        for (TDMHeader header : sorted) {
+            builder.add(header);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Obtains the number of terms in the dictionary
+     * @return number of terms in the dictionary
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Obtains the header of a term
+     * @param term term to look up
+     * @return new header of the term over its stored postings, or null if the term is not in the dictionary
+     */
+    @Override
+    public TDMHeader get(String term) {
+        int index = lowerBound(term);
+        if (index < size && compare(index, term) == 0) {
+            return header(index);
+        }
+        return null;
+    }
+
+    /**
+     * Obtains the headers of every term that starts with prefix, in term order
+     * @param prefix prefix of the terms to look up
+     * @return new headers of the matching terms; empty if there are none
+     */
+    @Override
+    public List<TDMHeader> getPrefixed(String prefix) {
+        int from = lowerBound(prefix);
+
+        // terms starting with prefix form a contiguous range beginning at from
+        int low = from;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (startsWith(mid, prefix)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        List<TDMHeader> headers = new ArrayList<>(low - from);
+        for (int index = from; index < low; index++) {
+            headers.add(header(index));
+        }
+        return Collections.unmodifiableList(headers);
+    }
+
+    /**
+     * Obtains the headers of every term, in term order. Each header is created when it is read.
+     * @return headers of every term
+     */
+    @Override
+    public List<TDMHeader> getHeaders() {
+        return new AbstractList<TDMHeader>() {
+            @Override
+            public TDMHeader get(int index) {
+                return header(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Copies the dictionary into a mutable map from terms to headers, used when the index is updated.
+     * The headers read their postings from this dictionary until they are modified.
+     * @return map of terms to their headers
+     */
+    @Override
+    public Map<String, TDMHeader> toMap() {
+        Map<String, TDMHeader> termMatrix = new HashMap<>(size * 4 / 3 + 1);
+        for (int index = 0; index < size; index++) {
+            TDMHeader header = header(index);
+            termMatrix.put(header.getTerm(), header);
+        }
+        return termMatrix;
+    }
+
+    /**
+     * Estimates the memory used by the terms and their postings, all of it outside of the heap
+     * @return size in bytes of the record table and the chunks
+     */
+    @Override
+    public long sizeInBytes() {
+        long bytes = records.capacity();
+        for (ByteBuffer chunk : chunks) {
+            bytes += chunk.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Creates the header of a term over views of its entry
+     * @param index index of the term
+     * @return new header of the term
+     */
+    private TDMHeader header(int index) {
+        int record = index * RECORD_BYTES;
+        ByteBuffer chunk = chunks[records.getInt(record + RECORD_CHUNK)];
+        int offset = records.getInt(record + RECORD_OFFSET);
+        int blockCount = records.getInt(record + RECORD_BLOCK_COUNT);
+        int dataLength = records.getInt(record + RECORD_DATA_LENGTH);
+        int positionLength = records.getInt(record + RECORD_POSITION_LENGTH);
+
+        IntBuffer blockLastDocuments = chunk.slice(offset, 4 * blockCount).asIntBuffer();
+        offset += 4 * blockCount;
+        IntBuffer blockOffsets = chunk.slice(offset, 4 * blockCount).asIntBuffer();
+        offset += 4 * blockCount;
+        IntBuffer blockPositionOffsets = null;
+        if (positionLength >= 0) {
+            blockPositionOffsets = chunk.slice(offset, 4 * blockCount).asIntBuffer();
+            offset += 4 * blockCount;
+        }
+        ByteBuffer data = chunk.slice(offset, dataLength);
+        offset += dataLength;
+        ByteBuffer positionData = positionLength < 0 ? null : chunk.slice(offset, positionLength);
+
+        CompressedPostingList postings = new CompressedPostingList(records.getInt(record + RECORD_SIZE),
+                blockLastDocuments, blockOffsets, data, blockPositionOffsets, positionData);
+        return new Header(term(index), postings, index);
+    }
+
+    /**
+     * Finds where the characters of a term start
+     * @param index index of the term
+     * @return byte offset of the characters in the chunk of the term
+     */
+    private int termOffset(int index) {
+        int record = index * RECORD_BYTES;
+        int positionLength = records.getInt(record + RECORD_POSITION_LENGTH);
+        int blockArrays = positionLength < 0 ? 2 : 3;
+        return records.getInt(record + RECORD_OFFSET) + 4 * blockArrays * records.getInt(record + RECORD_BLOCK_COUNT)
+                + records.getInt(record + RECORD_DATA_LENGTH) + Math.max(0, positionLength);
+    }
+
+    /**
+     * Reads a term
+     * @param index index of the term
+     * @return the term
+     */
+    private String term(int index) {
+        ByteBuffer chunk = chunks[records.getInt(index * RECORD_BYTES + RECORD_CHUNK)];
+        int offset = termOffset(index);
+        char[] term = new char[records.getInt(index * RECORD_BYTES + RECORD_TERM_LENGTH)];
+        for (int i = 0; i < term.length; i++) {
+            term[i] = chunk.getChar(offset + 2 * i);
+        }
+        return new String(term);
+    }
+
+    /**
+     * Compares a term with key as String.compareTo does, without creating a String
+     * @param index index of the term
+     * @param key string to compare the term with
+     * @return negative if the term comes before key, 0 if they are equal and positive otherwise
+     */
+    private int compare(int index, String key) {
+        ByteBuffer chunk = chunks[records.getInt(index * RECORD_BYTES + RECORD_CHUNK)];
+        int offset = termOffset(index);
+        int termLength = records.getInt(index * RECORD_BYTES + RECORD_TERM_LENGTH);
+        int length = Math.min(termLength, key.length());
+        for (int i = 0; i < length; i++) {
+            int difference = chunk.getChar(offset + 2 * i) - key.charAt(i);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return termLength - key.length();
+    }
+
+    /**
+     * Checks whether a term starts with prefix
+     * @param index index of the term
+     * @param prefix prefix to look for
+     * @return true if the term starts with prefix, false otherwise
+     */
+    private boolean startsWith(int index, String prefix) {
+        if (records.getInt(index * RECORD_BYTES + RECORD_TERM_LENGTH) < prefix.length()) {
+            return false;
+        }
+        ByteBuffer chunk = chunks[records.getInt(index * RECORD_BYTES + RECORD_CHUNK)];
+        int offset = termOffset(index);
+        for (int i = 0; i < prefix.length(); i++) {
+            if (chunk.getChar(offset + 2 * i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the first term that is not less than key
+     * @param key term to search for
+     * @return index of the first term not less than key, or size() if there is none
+     */
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(mid, key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Header is the TDMHeader of one term of the dictionary, created when the term is read. Its impact-ordered
+     * postings are kept by the dictionary, so they outlive the header.
+     */
+    private class Header extends TDMHeader {
+        private final int index;
+
+        /**
+         * Constructs the header of a term
+         * @param term the term
+         * @param postings view of the stored postings of the term
+         * @param index index of the term
+         */
+        Header(String term, CompressedPostingList postings, int index) {
+            super(term, postings);
+            this.index = index;
+            setMaxWeight(records.getDouble(index * RECORD_BYTES + RECORD_MAX_WEIGHT));
+        }
+
+        /**
+         * Obtains the postings of the term in impact order
+         * @return impact-ordered postings, or null if they were not built
+         */
+        @Override
+        public ImpactPostingList getImpactPostings() {
+            return impactPostings == null ? null : impactPostings[index];
+        }
+
+        /**
+         * Sets the postings of the term in impact order, for every header of the term
+         * @param postings impact-ordered postings, or null to drop them
+         */
+        @Override
+        public void setImpactPostings(ImpactPostingList postings) {
+            if (impactPostings == null) {
+                if (postings == null) {
+                    return;
+                }
+                impactPostings = new ImpactPostingList[size];
+            }
+            impactPostings[index] = postings;
+        }
+
+        /**
+         * Checks whether another header stands for the same term of the same dictionary
+         * @param other object to compare with
+         * @return true if other is a header of the same term of the same dictionary, false otherwise
+         */
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Header header && header.index == index && header.dictionary() == dictionary();
+        }
+
+        /**
+         * Obtains a hash code consistent with equals
+         * @return index of the term
+         */
+        @Override
+        public int hashCode() {
+            return index;
+        }
+
+        /**
+         * Obtains the dictionary of the header
+         * @return dictionary holding the term
+         */
+        private OffHeapTermDictionary dictionary() {
+            return OffHeapTermDictionary.this;
+        }
+    }
+
+    /**
+     * Builder copies terms and their postings out of the heap, one term at a time, into a new
+     * OffHeapTermDictionary. Terms must be added in ascending order.
+     */
+    public static class Builder {
+        private final ByteBuffer records;
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private ByteBuffer chunk;
+        private String previousTerm;
+
+        /**
+         * Constructs a Builder of a dictionary of termCount terms
+         * @param termCount number of terms that will be added
+         */
+        public Builder(int termCount) {
+            records = ByteBuffer.allocateDirect(Math.multiplyExact(termCount, RECORD_BYTES));
+        }
+
+        /**
+         * Copies a term and its compressed postings. The header is not kept.
+         * @param header header of the term, with its maximum weight set
+         * @throws IllegalArgumentException if the term does not come after the previous one, or its entry
+         *      does not fit in a buffer
+         * @throws IllegalStateException if the number of terms passed to the constructor were already added
+         */
+        public void add(TDMHeader header) {
+            String term = header.getTerm();
+            if (previousTerm != null && previousTerm.compareTo(term) >= 0) {
+                throw new IllegalArgumentException("terms must be added in ascending order: " + term);
+            }
+            if (!records.hasRemaining()) {
+                throw new IllegalStateException("the dictionary is full");
+            }
+            CompressedPostingList postings = header.getCompressedPostings();
+            ByteBuffer data = postings.getData();
+            ByteBuffer positionData = postings.getPositionData();
+            int blockCount = postings.getBlockCount();
+            int blockArrays = positionData == null ? 2 : 3;
+            int dataLength = data.remaining();
+            int positionLength = positionData == null ? -1 : positionData.remaining();
+            long entryBytes = 4L * blockArrays * blockCount + dataLength + Math.max(0, positionLength)
+                    + 2L * term.length();
+            if (entryBytes > Integer.MAX_VALUE - Long.BYTES) {
+                throw new IllegalArgumentException("the postings of " + term + " do not fit in a buffer");
+            }
+
+            // entries start at multiples of 8 bytes, so the block headers are aligned
+            int offset = chunk == null ? 0 : (chunk.position() + Long.BYTES - 1) & -Long.BYTES;
+            if (chunk == null || offset + entryBytes > chunk.capacity()) {
+                chunk = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, (int) entryBytes));
+                chunks.add(chunk);
+                offset = 0;
+            }
+            chunk.position(offset);
+            for (int block = 0; block < blockCount; block++) {
+                chunk.putInt(postings.getBlockLastDocument(block));
+            }
+            for (int block = 0; block < blockCount; block++) {
+                chunk.putInt(postings.getBlockOffset(block));
+            }
+            if (positionData != null) {
+                for (int block = 0; block < blockCount; block++) {
+                    chunk.putInt(postings.getBlockPositionOffset(block));
+                }
+            }
+            chunk.put(data);
+            if (positionData != null) {
+                chunk.put(positionData);
+            }
+            for (int i = 0; i < term.length(); i++) {
+                chunk.putChar(term.charAt(i));
+            }
+
+            records.putInt(chunks.size() - 1);
+            records.putInt(offset);
+            records.putInt(term.length());
+            records.putInt(postings.size());
+            records.putInt(blockCount);
+            records.putInt(dataLength);
+            records.putInt(positionLength);
+            records.putDouble(header.getMaxWeight());
+            previousTerm = term;
+        }
+
+        /**
+         * Creates the dictionary of the terms added. The Builder must not be used afterwards.
+         * @return dictionary holding the terms added
+         * @throws IllegalStateException if fewer terms were added than passed to the constructor
+         */
+        public OffHeapTermDictionary build() {
+            if (records.hasRemaining()) {
+                throw new IllegalStateException("only " + records.position() / RECORD_BYTES + " of "
+                        + records.capacity() / RECORD_BYTES + " terms were added");
+            }
+            // the last chunk is cut down to the entries it holds
+            if (chunk != null && chunk.hasRemaining()) {
+                ByteBuffer trimmed = ByteBuffer.allocateDirect(chunk.position());
+                trimmed.put(chunk.flip());
+                chunks.set(chunks.size() - 1, trimmed);
+            }
+            return new OffHeapTermDictionary(records, chunks.toArray(new ByteBuffer[0]));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package lighthouse.util;
+
+/**
+ * PostingCounter counts the postings decoded while a single query is evaluated, as a measure of the
+ * work the query took, and the shards of a sharded index that could not take part in it.
+ * Instances are not thread-safe; every query uses its own.
+ */
+public class PostingCounter {
+    private long count;
+    private int missedShards;
+
+    /**
+     * Adds decoded postings to the count
+     * @param postings number of postings decoded
+     */
+    public void add(long postings) {
+        count += postings;
+    }
+
+    /**
+     * Obtains the number of postings decoded so far
+     * @return number of postings decoded
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Counts a shard whose documents are missing from the results, as it failed or did not answer in time
+     */
+    public void addMissedShard() {
+        missedShards++;
+    }
+
+    /**
+     * Obtains the number of shards whose documents are missing from the results
+     * @return number of shards missed
+     */
+    public int getMissedShards() {
+        return missedShards;
+    }
+}
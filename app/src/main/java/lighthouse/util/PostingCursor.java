@@ -0,0 +1,199 @@
+package lighthouse.util;
+
+/**
+ * PostingCursor walks the postings of one term in document order during document-at-a-time
+ * query evaluation. It can step to the next posting or skip ahead to a target document.
+ * Postings are decoded one block at a time, and blocks that end before a skip target are never decoded.
+ * The term counts of a block are only decoded once one of them is asked for, so intersections that
+ * skip over most of the documents of a block only decode its document IDs. Positions are only decoded
+ * for the postings they are asked for.
+ */
+public class PostingCursor {
+    private final CompressedPostingList postings;
+    private final double maxWeight;
+    private final PostingCounter counter;
+    private final int[] documentIDs;
+    private final int[] termCounts;
+    private int block;
+    private int blockSize;
+    private int position;
+    // byte offset of the term counts of the block, or -1 once they are decoded
+    private int termCountOffset;
+    // positions of the block are decoded lazily: positionOffset is where the positions of the
+    // posting at positionPosting start, and decodedPosting is the posting held in positions
+    private int[] positions;
+    private int positionPosting;
+    private int positionOffset;
+    private int decodedPosting;
+
+    /**
+     * Constructs a PostingCursor positioned on the first posting of header
+     * @param header term whose postings are traversed
+     */
+    public PostingCursor(TDMHeader header) {
+        this(header, null);
+    }
+
+    /**
+     * Constructs a PostingCursor positioned on the first posting of header, counting the postings it decodes
+     * @param header term whose postings are traversed
+     * @param counter counter receiving the number of postings of every block decoded, or null
+     */
+    public PostingCursor(TDMHeader header, PostingCounter counter) {
+        this.postings = header.getCompressedPostings();
+        this.counter = counter;
+        this.maxWeight = header.getMaxWeight();
+        this.documentIDs = new int[CompressedPostingList.BLOCK_SIZE];
+        this.termCounts = new int[CompressedPostingList.BLOCK_SIZE];
+        this.positions = new int[8];
+        loadBlock(0);
+    }
+
+    /**
+     * Decodes a block and positions the cursor on its first posting
+     * @param index index of the block, or getBlockCount() to exhaust the cursor
+     */
+    private void loadBlock(int index) {
+        block = index;
+        position = 0;
+        blockSize = 0;
+        if (index < postings.getBlockCount()) {
+            blockSize = postings.getBlockSize(index);
+            termCountOffset = postings.decodeDocuments(index, documentIDs);
+            if (counter != null) {
+                counter.add(blockSize);
+            }
+        }
+        if (blockSize > 0 && postings.hasPositions()) {
+            positionPosting = 0;
+            positionOffset = postings.getBlockPositionOffset(index);
+        }
+        decodedPosting = -1;
+    }
+
+    /**
+     * Obtains the number of postings of the term
+     * @return number of postings of the term
+     */
+    public int size() {
+        return postings.size();
+    }
+
+    /**
+     * Checks whether the cursor has moved past the last posting
+     * @return true if there are no postings left, false otherwise
+     */
+    public boolean isExhausted() {
+        return position >= blockSize;
+    }
+
+    /**
+     * Obtains the document ID of the current posting
+     * @return document ID of the current posting
+     */
+    public int getDocumentID() {
+        return documentIDs[position];
+    }
+
+    /**
+     * Obtains the term count of the current posting
+     * @return term count of the current posting
+     */
+    public int getTermCount() {
+        decodeTermCounts();
+        return termCounts[position];
+    }
+
+    /**
+     * Decodes the term counts of the current block unless they already are
+     */
+    private void decodeTermCounts() {
+        if (termCountOffset >= 0) {
+            postings.decodeTermCounts(termCountOffset, blockSize, termCounts);
+            termCountOffset = -1;
+        }
+    }
+
+    /**
+     * Checks whether the postings carry the positions of the term
+     * @return true if getPositions can be called, false otherwise
+     */
+    public boolean hasPositions() {
+        return postings.hasPositions();
+    }
+
+    /**
+     * Decodes the positions of the term in the document of the current posting. The returned array
+     * is reused by the cursor and only valid until it moves.
+     * @return array whose first getTermCount() entries are the ascending positions of the term
+     */
+    public int[] getPositions() {
+        if (decodedPosting == position) {
+            return positions;
+        }
+        decodeTermCounts();
+        // skip the positions of the postings passed over since the last decode
+        int skipped = 0;
+        for (int i = positionPosting; i < position; i++) {
+            skipped += termCounts[i];
+        }
+        int offset = postings.skipPositions(positionOffset, skipped);
+
+        int count = termCounts[position];
+        if (positions.length < count) {
+            positions = new int[Math.max(count, positions.length * 2)];
+        }
+        positionOffset = postings.decodePositions(offset, count, positions);
+        positionPosting = position + 1;
+        decodedPosting = position;
+        return positions;
+    }
+
+    /**
+     * Obtains the largest term weight of any posting of the term, an upper bound on its score contribution
+     * @return maximum term weight of the term
+     */
+    public double getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Moves the cursor to the next posting
+     */
+    public void next() {
+        if (++position == blockSize) {
+            loadBlock(block + 1);
+        }
+    }
+
+    /**
+     * Moves the cursor forward to the first posting whose document ID is not less than target
+     * @param target document ID to skip to
+     */
+    public void advance(int target) {
+        if (isExhausted() || documentIDs[position] >= target) {
+            return;
+        }
+
+        // skip whole blocks using their last document IDs
+        if (postings.getBlockLastDocument(block) < target) {
+            loadBlock(postings.findBlock(block + 1, target));
+            if (isExhausted()) {
+                return;
+            }
+        }
+
+        // binary search the decoded block; its last document ID is known to be at least target
+        int low = position;
+        int high = blockSize - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (documentIDs[mid] < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        position = low;
+    }
+}
@@ -0,0 +1,188 @@
+package lighthouse.util;
+
+import java.util.Arrays;
+
+/**
+ * PostingList stores the postings of a single term in parallel primitive arrays, sorted by document ID.
+ * Appending in document order is amortized O(1); the arrays double in size whenever they run out of room.
+ * It is the mutable form used while building or updating the index; queries run on CompressedPostingList.
+ * Each posting may also carry the positions of the term in its document.
+ */
+public class PostingList {
+    /** Initial capacity of a newly created posting list */
+    public static final int INITIAL_CAPACITY = 4;
+
+    private int[] documentIDs;
+    private int[] termCounts;
+    private int[][] positions;
+    private int size;
+
+    /**
+     * Constructs an empty PostingList with the default initial capacity.
+     */
+    public PostingList() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty PostingList with room for capacity postings.
+     * @param capacity number of postings the list can hold before growing
+     */
+    public PostingList(int capacity) {
+        documentIDs = new int[Math.max(capacity, 1)];
+        termCounts = new int[Math.max(capacity, 1)];
+        positions = new int[Math.max(capacity, 1)][];
+        size = 0;
+    }
+
+    /**
+     * Adds a posting to the list. Postings added in document order are appended in amortized O(1);
+     * a posting for an earlier document is inserted at its sorted position.
+     * @param documentID id of the document containing the term
+     * @param termCount frequency of the term in the document
+     */
+    public void add(int documentID, int termCount) {
+        add(documentID, termCount, null);
+    }
+
+    /**
+     * Adds a posting along with the positions of the term in the document, see add(int, int)
+     * @param documentID id of the document containing the term
+     * @param termCount frequency of the term in the document
+     * @param termPositions termCount ascending positions of the term in the document, or null if unknown
+     */
+    public void add(int documentID, int termCount, int[] termPositions) {
+        if (size == termCounts.length) {
+            grow();
+        }
+
+        int index = size;
+        if (size > 0 && documentIDs[size - 1] > documentID) {
+            // out of order, shift the later postings up by one
+            index = advance(0, documentID);
+            System.arraycopy(documentIDs, index, documentIDs, index + 1, size - index);
+            System.arraycopy(termCounts, index, termCounts, index + 1, size - index);
+            System.arraycopy(positions, index, positions, index + 1, size - index);
+        }
+        documentIDs[index] = documentID;
+        termCounts[index] = termCount;
+        positions[index] = termPositions;
+        size++;
+    }
+
+    /**
+     * Finds the first posting at or after index from whose document ID is not less than target.
+     * Uses exponential (galloping) search followed by binary search, so skipping ahead by
+     * d postings costs O(log d).
+     * @param from index to start searching from
+     * @param target document ID to search for
+     * @return index of the first posting at or after from with a document ID of at least target,
+     *      or size() if there is none
+     */
+    public int advance(int from, int target) {
+        if (from >= size || documentIDs[from] >= target) {
+            return from;
+        }
+
+        // gallop until the target is bracketed by (low, high]
+        int low = from;
+        int step = 1;
+        int high = from + step;
+        while (high < size && documentIDs[high] < target) {
+            low = high;
+            step <<= 1;
+            high = from + step;
+        }
+        high = Math.min(high, size);
+
+        // binary search for the first document ID not less than target
+        low++;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (documentIDs[mid] < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Removes the posting of a document, keeping the order of the remaining postings.
+     * @param documentID id of the document whose posting is removed
+     * @return true if the list contained a posting for the document, false otherwise
+     */
+    public boolean remove(int documentID) {
+        int index = advance(0, documentID);
+        if (index == size || documentIDs[index] != documentID) {
+            return false;
+        }
+
+        int tail = size - index - 1;
+        System.arraycopy(documentIDs, index + 1, documentIDs, index, tail);
+        System.arraycopy(termCounts, index + 1, termCounts, index, tail);
+        System.arraycopy(positions, index + 1, positions, index, tail);
+        size--;
+        positions[size] = null;
+        return true;
+    }
+
+    /**
+     * Doubles the capacity of the backing arrays.
+     */
+    private void grow() {
+        int capacity = termCounts.length * 2;
+        documentIDs = Arrays.copyOf(documentIDs, capacity);
+        termCounts = Arrays.copyOf(termCounts, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+    }
+
+    /**
+     * Obtains the number of postings in the list
+     * @return number of postings in the list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Obtains the document ID of the posting at index
+     * @param index position of the posting
+     * @return document ID of the posting at index
+     */
+    public int getDocumentID(int index) {
+        return documentIDs[index];
+    }
+
+    /**
+     * Obtains the term count of the posting at index
+     * @param index position of the posting
+     * @return term count of the posting at index
+     */
+    public int getTermCount(int index) {
+        return termCounts[index];
+    }
+
+    /**
+     * Obtains the positions of the term in the document of the posting at index
+     * @param index position of the posting
+     * @return ascending positions of the term, or null if unknown
+     */
+    public int[] getPositions(int index) {
+        return positions[index];
+    }
+
+    /**
+     * Checks whether every posting carries the positions of its term
+     * @return true if the positions of every posting are known, false otherwise
+     */
+    public boolean hasPositions() {
+        for (int i = 0; i < size; i++) {
+            if (positions[i] == null) {
+                return false;
+            }
+        }
+        return size > 0;
+    }
+}
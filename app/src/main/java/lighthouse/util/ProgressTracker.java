@@ -0,0 +1,61 @@
+package lighthouse.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ProgressTracker counts completed work items from any number of threads
+ * and prints the progress bar each time another tick mark is reached.
+ */
+public class ProgressTracker {
+    private final int total;
+    private final long tickSize;
+    private final AtomicInteger completed;
+    private int lastPrinted;
+
+    /**
+     * Constructs a ProgressTracker for the given number of work items
+     * @param total total number of work items to be processed
+     */
+    public ProgressTracker(int total) {
+        this.total = total;
+        this.tickSize = Math.max(Math.round(total * ProgressBar.TICKMARK_PCT), 1);
+        this.completed = new AtomicInteger();
+        this.lastPrinted = -1;
+    }
+
+    /**
+     * Prints the empty progress bar before any work item has completed.
+     */
+    public void start() {
+        print(0);
+    }
+
+    /**
+     * Records one completed work item. Safe to call concurrently.
+     */
+    public void step() {
+        int done = completed.incrementAndGet();
+        if (done % tickSize == 0 || done == total) {
+            print(done);
+        }
+    }
+
+    /**
+     * Obtains the number of completed work items
+     * @return number of completed work items
+     */
+    public int getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * Prints the progress bar, skipping updates that arrive out of order.
+     * @param done number of completed work items to display
+     */
+    private synchronized void print(int done) {
+        if (done > lastPrinted) {
+            lastPrinted = done;
+            ProgressBar.printProgressBar(done, total);
+        }
+    }
+}
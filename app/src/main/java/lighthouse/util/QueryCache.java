@@ -0,0 +1,163 @@
+package lighthouse.util;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * QueryCache remembers the results of recent queries, keyed by their normalized terms and result limit.
+ * The least recently used entry is evicted once the cache holds capacity entries. Every lookup carries
+ * the generation of the index it is made against; when the generation changes, all entries are dropped,
+ * so results computed on an older index are never returned. All methods are thread-safe.
+ */
+public class QueryCache {
+    private final int capacity;
+    private final LinkedHashMap<Key, List<Entry<String, Double>>> entries;
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructs an empty QueryCache holding at most capacity results
+     * @param capacity maximum number of cached results; 0 disables caching
+     */
+    public QueryCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative");
+        }
+        this.capacity = capacity;
+        // access order turns the map into an LRU list, least recently used first
+        this.entries = new LinkedHashMap<>(16, .75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<Entry<String, Double>>> eldest) {
+                if (size() > QueryCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Obtains the cached results of a query
+     * @param terms normalized query terms
+     * @param k result limit of the query, or 0 if all matching documents were requested
+     * @param indexGeneration generation of the index the query runs against
+     * @return cached results, or null if the query is not cached
+     */
+    public synchronized List<Entry<String, Double>> get(List<String> terms, int k, long indexGeneration) {
+        invalidateIfStale(indexGeneration);
+        List<Entry<String, Double>> results = entries.get(new Key(terms, k));
+        if (results == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return results;
+    }
+
+    /**
+     * Caches the results of a query
+     * @param terms normalized query terms
+     * @param k result limit of the query, or 0 if all matching documents were requested
+     * @param indexGeneration generation of the index the results were computed on
+     * @param results results of the query; stored as an unmodifiable copy
+     * @return the cached, unmodifiable results
+     */
+    public synchronized List<Entry<String, Double>> put(List<String> terms, int k, long indexGeneration,
+            List<Entry<String, Double>> results) {
+        List<Entry<String, Double>> cached = List.copyOf(results);
+        invalidateIfStale(indexGeneration);
+        if (indexGeneration == generation && capacity > 0) {
+            entries.put(new Key(List.copyOf(terms), k), cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Drops every entry if they were computed on another index generation
+     * @param indexGeneration generation of the index currently being queried
+     */
+    private void invalidateIfStale(long indexGeneration) {
+        if (indexGeneration > generation) {
+            entries.clear();
+            generation = indexGeneration;
+        }
+    }
+
+    /**
+     * Obtains the number of cached results
+     * @return number of cached results
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Obtains the number of lookups that found a cached result
+     * @return number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Obtains the number of lookups that found no cached result
+     * @return number of cache misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Obtains the number of results evicted to make room for newer ones
+     * @return number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Key identifies a cached query by its normalized terms and result limit.
+     */
+    private static class Key {
+        private final List<String> terms;
+        private final int k;
+
+        /**
+         * Constructs a Key for the passed query
+         * @param terms normalized query terms
+         * @param k result limit of the query
+         */
+        Key(List<String> terms, int k) {
+            this.terms = terms;
+            this.k = k;
+        }
+
+        /**
+         * Checks whether another key describes the same query
+         * @param o object to compare with
+         * @return true if o is a Key with equal terms and limit, false otherwise
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return k == other.k && terms.equals(other.terms);
+        }
+
+        /**
+         * Computes a hash code consistent with equals
+         * @return hash code of the key
+         */
+        @Override
+        public int hashCode() {
+            return 31 * terms.hashCode() + k;
+        }
+    }
+}
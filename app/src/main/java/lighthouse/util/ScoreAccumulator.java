@@ -0,0 +1,199 @@
+package lighthouse.util;
+
+import java.util.Arrays;
+
+/**
+ * ScoreAccumulator sums term weights per document into a dense array indexed by document ID.
+ * It is meant to be reused across queries: the documents touched by a query are remembered so that
+ * reset only clears those entries when few were touched, and clears the whole array otherwise.
+ * It also owns the buffers a query decodes posting blocks into. For impact-ordered evaluation it can also
+ * remember which query terms each document was found in, see add(int[], double, int, int).
+ * Instances are not thread-safe; each query borrows one from the pool of its QueryEngine.
+ */
+public class ScoreAccumulator {
+    /** Fraction of touched documents above which reset clears the whole array instead of single entries */
+    public static final double DENSE_RESET_RATIO = 1.0 / 16;
+
+    private double[] scores;
+    // query terms each document was found in, allocated on first use
+    private long[] terms;
+    private int[] touched;
+    private int touchedCount;
+    private final int[] documentBuffer;
+    private final int[] countBuffer;
+    private final double[] weightBuffer;
+
+    /**
+     * Constructs an empty ScoreAccumulator for document IDs below capacity
+     * @param capacity number of document IDs the accumulator can hold
+     */
+    public ScoreAccumulator(int capacity) {
+        scores = new double[capacity];
+        touched = new int[capacity];
+        touchedCount = 0;
+        documentBuffer = new int[CompressedPostingList.BLOCK_SIZE];
+        countBuffer = new int[CompressedPostingList.BLOCK_SIZE];
+        weightBuffer = new double[CompressedPostingList.BLOCK_SIZE];
+    }
+
+    /**
+     * Grows the accumulator so that it can hold document IDs below capacity
+     * @param capacity number of document IDs the accumulator must be able to hold
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > scores.length) {
+            scores = Arrays.copyOf(scores, capacity);
+            touched = Arrays.copyOf(touched, capacity);
+            if (terms != null) {
+                terms = Arrays.copyOf(terms, capacity);
+            }
+        }
+    }
+
+    /**
+     * Adds the weights of a block of postings to the scores of their documents.
+     * BM25 weights are always positive, so a score of zero means the document was not touched yet.
+     * @param documentIDs document IDs of the postings
+     * @param termWeights term weights of the postings
+     * @param count number of postings in the block
+     */
+    public void add(int[] documentIDs, double[] termWeights, int count) {
+        // local copies keep the loop free of field loads so the JIT can hoist bounds checks
+        double[] sums = scores;
+        int[] seen = touched;
+        int seenCount = touchedCount;
+
+        for (int i = 0; i < count; i++) {
+            int documentID = documentIDs[i];
+            double sum = sums[documentID];
+            if (sum == 0) {
+                seen[seenCount++] = documentID;
+            }
+            sums[documentID] = sum + termWeights[i];
+        }
+        touchedCount = seenCount;
+    }
+
+    /**
+     * Adds the same weight to the scores of a block of documents and remembers that they contain a query term
+     * @param documentIDs document IDs of the postings
+     * @param weight positive weight added to the score of every document
+     * @param count number of postings in the block
+     * @param term index of the query term the postings belong to; only the first 64 terms are remembered
+     */
+    public void add(int[] documentIDs, double weight, int count, int term) {
+        if (terms == null) {
+            terms = new long[scores.length];
+        }
+        double[] sums = scores;
+        long[] found = terms;
+        int[] seen = touched;
+        int seenCount = touchedCount;
+        long bit = term < Long.SIZE ? 1L << term : 0;
+
+        for (int i = 0; i < count; i++) {
+            int documentID = documentIDs[i];
+            double sum = sums[documentID];
+            if (sum == 0) {
+                seen[seenCount++] = documentID;
+            }
+            sums[documentID] = sum + weight;
+            found[documentID] |= bit;
+        }
+        touchedCount = seenCount;
+    }
+
+    /**
+     * Obtains the query terms a document was found in since the last reset, as added by
+     * add(int[], double, int, int)
+     * @param documentID ID of the document
+     * @return bit set of the indexes of the terms, holding the first 64 terms only
+     */
+    public long getTerms(int documentID) {
+        return terms == null ? 0 : terms[documentID];
+    }
+
+    /**
+     * Adds a weight to the score of a single document
+     * @param documentID ID of the document
+     * @param weight positive weight to be added
+     */
+    public void add(int documentID, double weight) {
+        if (scores[documentID] == 0) {
+            touched[touchedCount++] = documentID;
+        }
+        scores[documentID] += weight;
+    }
+
+    /**
+     * Obtains the buffer that posting blocks decode their document IDs into
+     * @return document ID buffer holding CompressedPostingList.BLOCK_SIZE entries
+     */
+    public int[] getDocumentBuffer() {
+        return documentBuffer;
+    }
+
+    /**
+     * Obtains the buffer that posting blocks decode their term counts into
+     * @return term count buffer holding CompressedPostingList.BLOCK_SIZE entries
+     */
+    public int[] getCountBuffer() {
+        return countBuffer;
+    }
+
+    /**
+     * Obtains the buffer the term weights of a decoded block are computed into
+     * @return term weight buffer holding CompressedPostingList.BLOCK_SIZE entries
+     */
+    public double[] getWeightBuffer() {
+        return weightBuffer;
+    }
+
+    /**
+     * Obtains the number of distinct documents that received a score since the last reset
+     * @return number of touched documents
+     */
+    public int getTouchedCount() {
+        return touchedCount;
+    }
+
+    /**
+     * Obtains the ID of a touched document
+     * @param index position in the list of touched documents, less than getTouchedCount()
+     * @return ID of the touched document
+     */
+    public int getTouchedDocument(int index) {
+        return touched[index];
+    }
+
+    /**
+     * Obtains the accumulated score of a document
+     * @param documentID ID of the document
+     * @return accumulated score of the document, 0 if it was not touched
+     */
+    public double getScore(int documentID) {
+        return scores[documentID];
+    }
+
+    /**
+     * Clears all accumulated scores so the accumulator can be reused for the next query
+     */
+    public void reset() {
+        if (touchedCount > scores.length * DENSE_RESET_RATIO) {
+            Arrays.fill(scores, 0);
+            if (terms != null) {
+                Arrays.fill(terms, 0);
+            }
+        } else {
+            for (int i = 0; i < touchedCount; i++) {
+                scores[touched[i]] = 0;
+            }
+            if (terms != null) {
+                for (int i = 0; i < touchedCount; i++) {
+                    terms[touched[i]] = 0;
+                }
+            }
+        }
+        touchedCount = 0;
+    }
+}
@@ -5,12 +5,25 @@ import java.util.NoSuchElementException;
 
 /**
  * TDMHeader represents the header node of the Term-Document Matrix. 
- * Includes an iterator interface for traversal of the linked list
+ * Postings are held in an array-backed PostingList while the index is built or updated,
+ * and in a CompressedPostingList once it is queried; each form is converted into the other on demand.
+ * An iterator interface exposes the postings as TDMNode views for traversal.
  */
 public class TDMHeader implements Iterable<TDMNode> {
     private String term;
-    private int len;
-    private TDMNode listHead;
+    private PostingList postings;
+    private CompressedPostingList compressedPostings;
+    private ImpactPostingList impactPostings;
+    private double maxWeight;
+
+    /**
+     * Constructs a new TDMHeader with passed term and no postings.
+     * @param term term associated with TDMHeader
+     */
+    public TDMHeader(String term) {
+        this.term = term;
+        this.postings = new PostingList();
+    }
 
     /**
      * Constructs a new TDMHeader with passed term and initial node.
@@ -18,9 +31,18 @@ public class TDMHeader implements Iterable<TDMNode> {
      * @param node intial node used for TDMHeader
      */
     public TDMHeader(String term, TDMNode node) {
+        this(term);
+        postings.add(node.getDocumentID(), node.getTermCount());
+    }
+
+    /**
+     * Constructs a new TDMHeader with passed term and already compressed postings.
+     * @param term term associated with TDMHeader
+     * @param compressedPostings postings associated with TDMHeader
+     */
+    public TDMHeader(String term, CompressedPostingList compressedPostings) {
         this.term = term;
-        this.listHead = node;
-        this.len = 1;
+        this.compressedPostings = compressedPostings;
     }
 
     /**
@@ -32,56 +54,114 @@ public class TDMHeader implements Iterable<TDMNode> {
     }
 
     /**
-     * Obtains the length of the linked list associated with the TDMHeader
-     * @return length of the linked list associated with TDMHeader
+     * Obtains the number of postings associated with the TDMHeader
+     * @return number of postings associated with TDMHeader
      */
     public int getLen() {
-        return len;
+        return postings != null ? postings.size() : compressedPostings.size();
+    }
+
+    /**
+     * Obtains the largest term weight among the postings associated with the TDMHeader.
+     * Serves as an upper bound on the score this term can add to any document.
+     * @return maximum term weight of the term
+     */
+    public double getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Sets the largest term weight among the postings associated with the TDMHeader
+     * @param maxWeight maximum term weight of the term
+     */
+    public void setMaxWeight(double maxWeight) {
+        this.maxWeight = maxWeight;
     }
 
     /**
-     * Obtains the head of the linked list associated with the TDMHeader
-     * @return head of the linked list associated with TDMHeader
+     * Obtains the array-backed postings associated with the TDMHeader, decompressing them if needed.
+     * The returned list may be modified; call compress once done.
+     * @return postings associated with TDMHeader
      */
-    public TDMNode getListHead() {
-        return listHead;
+    public PostingList getPostings() {
+        if (postings == null) {
+            postings = compressedPostings.toPostingList();
+            compressedPostings = null;
+            // impacts depend on the postings, so they are rebuilt once the postings are final
+            impactPostings = null;
+        }
+        return postings;
+    }
+
+    /**
+     * Obtains the postings associated with the TDMHeader in impact order
+     * @return impact-ordered postings, or null if they were not built
+     */
+    public ImpactPostingList getImpactPostings() {
+        return impactPostings;
     }
 
     /**
-     * Appends a TDMNode to the end of the linked list associated with the TDMHeader.
+     * Sets the postings associated with the TDMHeader in impact order
+     * @param impactPostings impact-ordered postings, or null to drop them
+     */
+    public void setImpactPostings(ImpactPostingList impactPostings) {
+        this.impactPostings = impactPostings;
+    }
+
+    /**
+     * Obtains the compressed postings associated with the TDMHeader, compressing them if needed
+     * @return compressed postings associated with TDMHeader
+     */
+    public CompressedPostingList getCompressedPostings() {
+        compress();
+        return compressedPostings;
+    }
+
+    /**
+     * Replaces the array-backed postings with their compressed form, if they are not compressed yet
+     */
+    public void compress() {
+        if (postings != null) {
+            compressedPostings = new CompressedPostingList(postings);
+            postings = null;
+        }
+    }
+
+    /**
+     * Appends the contents of a TDMNode to the end of the postings associated with the TDMHeader.
+     * Runs in amortized constant time.
      * @param node The TDMNode to be appended.
      */
     public void append(TDMNode node) {
-        TDMNode tail = this.listHead;
-        for (final TDMNode n : this) {
-            tail = n;
-        }
-        len++;
-        tail.setNext(node);
+        getPostings().add(node.getDocumentID(), node.getTermCount());
     }
 
     /**
-     * Returns an iterator over the leements in the linked list associated with the TDMHeader
-     * @return TDM Iterator starting at head of TDM linked list
+     * Returns an iterator over the postings associated with the TDMHeader.
+     * Each returned TDMNode is a copy; changes made to it are not written back to the postings.
+     * Term weights depend on corpus statistics and are not filled in.
+     * @return TDM Iterator starting at the first posting
      */
     @Override
     public Iterator<TDMNode> iterator() {
-        return new TDMIterator(listHead);
+        return new TDMIterator();
     }
 
     /**
-     * TDMIterator is an iterator over the linked list associated with TDMHeader. 
+     * TDMIterator is an iterator over the postings associated with TDMHeader. 
      */
     private class TDMIterator implements Iterator<TDMNode> {
-        // iterator interface to allow for-each linkedlist traversal
-        private TDMNode iter;
+        // iterator interface to allow for-each traversal of the posting arrays
+        private final PostingList snapshot;
+        private int iter;
 
         /**
-         * Constructs a TDMIterator with the passed head node
-         * @param listHead head node to be used in the TDMIterator
+         * Constructs a TDMIterator starting at the first posting
          */
-        public TDMIterator(TDMNode listHead) {
-            this.iter = listHead;
+        public TDMIterator() {
+            this.snapshot = postings != null ? postings : compressedPostings.toPostingList();
+            this.iter = 0;
         }
 
         /**
@@ -90,7 +170,7 @@ public class TDMHeader implements Iterable<TDMNode> {
          */
         @Override
         public boolean hasNext() {
-            return iter != null;
+            return iter < snapshot.size();
         }
 
         /**
@@ -104,8 +184,8 @@ public class TDMHeader implements Iterable<TDMNode> {
                 throw new NoSuchElementException();
             }
 
-            TDMNode nextNode = iter;
-            iter = iter.getNext();
+            TDMNode nextNode = new TDMNode(snapshot.getDocumentID(iter), snapshot.getTermCount(iter));
+            iter++;
 
             return nextNode;
         }
@@ -2,10 +2,10 @@ package lighthouse.util;
 
 /**
  * TDMNode is a node representing a node in the Term-Document Matrix. 
- * Extends ListNode and contains information regarding term count, weight, documentID where term is found.
+ * Extends ListNode and contains information regarding term count, weight, and the ID of the document where term is found.
  */
 public class TDMNode extends ListNode {
-    private String documentID;
+    private int documentID;
     private int termCount;
     private double termWeight;
 
@@ -15,7 +15,7 @@ public class TDMNode extends ListNode {
      * @param documentID The id of the document associated with the node.
      * @param termCount  The count for the frequency of occurence of this term in the document.
      */
-    public TDMNode(String documentID, int termCount) {
+    public TDMNode(int documentID, int termCount) {
         this.documentID = documentID;
         this.termCount = termCount;
         this.termWeight = 0;
@@ -25,7 +25,7 @@ public class TDMNode extends ListNode {
      * Obtains document ID associated with TDMNode
      * @return document ID associated with TDMNode
      */
-    public String getDocumentID() {
+    public int getDocumentID() {
         return documentID;
     }
 
@@ -33,7 +33,7 @@ public class TDMNode extends ListNode {
      * Sets document ID associated with TDMNode
      * @param documentID documentID used to replace the previous documentID
      */
-    public void setDocumentID(String documentID) {
+    public void setDocumentID(int documentID) {
         this.documentID = documentID;
     }
 
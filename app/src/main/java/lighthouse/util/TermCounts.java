@@ -0,0 +1,241 @@
+package lighthouse.util;
+
+import java.util.Arrays;
+
+/**
+ * TermCounts counts occurrences of terms in an open-addressing hash table with primitive int counts.
+ * Terms are looked up straight from a char buffer, so a String is only created the first time a term
+ * is seen. Terms keep the order in which they were first added and can be read back by index.
+ * Optionally, the position of every occurrence is recorded as well: the n-th term added is at position n.
+ */
+public class TermCounts {
+    /** Initial number of distinct terms the table can hold before growing */
+    public static final int INITIAL_CAPACITY = 64;
+
+    private String[] terms;
+    private int[] hashes;
+    private int[] counts;
+    private int size;
+    // positions of the occurrences of each term, or null if positions are not recorded
+    private int[][] positions;
+    private int nextPosition;
+    // open-addressing table of term indexes plus one; 0 marks an empty slot
+    private int[] slots;
+
+    /**
+     * Constructs an empty TermCounts
+     */
+    public TermCounts() {
+        this(false);
+    }
+
+    /**
+     * Constructs an empty TermCounts
+     * @param recordPositions true if the position of every occurrence is to be recorded
+     */
+    public TermCounts(boolean recordPositions) {
+        terms = new String[INITIAL_CAPACITY];
+        hashes = new int[INITIAL_CAPACITY];
+        counts = new int[INITIAL_CAPACITY];
+        slots = new int[INITIAL_CAPACITY * 2];
+        size = 0;
+        if (recordPositions) {
+            positions = new int[INITIAL_CAPACITY][];
+        }
+    }
+
+    /**
+     * Adds one occurrence of the term held in the first length chars of buffer
+     * @param buffer chars of the term
+     * @param length number of chars of the term
+     */
+    public void increment(char[] buffer, int length) {
+        int hash = hash(buffer, length);
+        int slot = find(buffer, length, hash);
+        if (slots[slot] != 0) {
+            int index = slots[slot] - 1;
+            if (positions != null) {
+                addPosition(index);
+            }
+            counts[index]++;
+            return;
+        }
+
+        if (size == terms.length) {
+            grow();
+            slot = find(buffer, length, hash);
+        }
+        terms[size] = new String(buffer, 0, length);
+        hashes[size] = hash;
+        counts[size] = 0;
+        if (positions != null) {
+            positions[size] = new int[1];
+            addPosition(size);
+        }
+        counts[size] = 1;
+        size++;
+        slots[slot] = size;
+    }
+
+    /**
+     * Records the next position as an occurrence of a term, before its count is incremented
+     * @param index position of the term by the order in which it was first added
+     */
+    private void addPosition(int index) {
+        int[] termPositions = positions[index];
+        if (counts[index] == termPositions.length) {
+            termPositions = Arrays.copyOf(termPositions, termPositions.length * 2);
+            positions[index] = termPositions;
+        }
+        termPositions[counts[index]] = nextPosition++;
+    }
+
+    /**
+     * Adds one occurrence of term
+     * @param term term to be counted
+     */
+    public void increment(String term) {
+        increment(term.toCharArray(), term.length());
+    }
+
+    /**
+     * Checks whether the term held in the first length chars of buffer has been counted
+     * @param buffer chars of the term
+     * @param length number of chars of the term
+     * @return true if the term has been counted, false otherwise
+     */
+    public boolean contains(char[] buffer, int length) {
+        return slots[find(buffer, length, hash(buffer, length))] != 0;
+    }
+
+    /**
+     * Obtains the position of the term held in the first length chars of buffer
+     * @param buffer chars of the term
+     * @param length number of chars of the term
+     * @return position of the term by the order in which it was first added, or -1 if it has not been counted
+     */
+    public int indexOf(char[] buffer, int length) {
+        return slots[find(buffer, length, hash(buffer, length))] - 1;
+    }
+
+    /**
+     * Obtains the number of distinct terms
+     * @return number of distinct terms
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Obtains a term by the order in which it was first added
+     * @param index position of the term, less than size()
+     * @return term at index
+     */
+    public String getTerm(int index) {
+        return terms[index];
+    }
+
+    /**
+     * Obtains the count of a term by the order in which it was first added
+     * @param index position of the term, less than size()
+     * @return number of occurrences of the term at index
+     */
+    public int getCount(int index) {
+        return counts[index];
+    }
+
+    /**
+     * Checks whether the positions of the occurrences are recorded
+     * @return true if positions are recorded, false otherwise
+     */
+    public boolean hasPositions() {
+        return positions != null;
+    }
+
+    /**
+     * Obtains the positions of the occurrences of a term by the order in which it was first added
+     * @param index position of the term, less than size()
+     * @return ascending positions of the getCount(index) occurrences of the term, or null if positions
+     *      are not recorded
+     */
+    public int[] getPositions(int index) {
+        return positions == null ? null : Arrays.copyOf(positions[index], counts[index]);
+    }
+
+    /**
+     * Computes the hash of a term, equal to String.hashCode of the same chars
+     * @param buffer chars of the term
+     * @param length number of chars of the term
+     * @return hash of the term
+     */
+    private static int hash(char[] buffer, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        return hash;
+    }
+
+    /**
+     * Finds the slot holding a term, or the empty slot where it would be inserted
+     * @param buffer chars of the term
+     * @param length number of chars of the term
+     * @param hash hash of the term
+     * @return slot of the term, or of the empty slot ending its probe sequence
+     */
+    private int find(char[] buffer, int length, int hash) {
+        int mask = slots.length - 1;
+        // spread the high bits, as the low bits of String hashes of short terms are poorly mixed
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (slots[slot] != 0) {
+            int index = slots[slot] - 1;
+            if (hashes[index] == hash && matches(terms[index], buffer, length)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Compares a stored term with the chars of a buffer
+     * @param term stored term
+     * @param buffer chars to compare with
+     * @param length number of chars to compare
+     * @return true if term consists of exactly those chars, false otherwise
+     */
+    private static boolean matches(String term, char[] buffer, int length) {
+        if (term.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (term.charAt(i) != buffer[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Doubles the capacity of the term arrays and rebuilds the slot table, keeping it at most half full
+     */
+    private void grow() {
+        int capacity = terms.length * 2;
+        terms = Arrays.copyOf(terms, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        if (positions != null) {
+            positions = Arrays.copyOf(positions, capacity);
+        }
+
+        slots = new int[capacity * 2];
+        int mask = slots.length - 1;
+        for (int index = 0; index < size; index++) {
+            int slot = (hashes[index] ^ (hashes[index] >>> 16)) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = index + 1;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package lighthouse.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TermDictionary is the read-only, sorted term dictionary used at query time.
+ * Headers are kept in a single array sorted by term, so exact lookups are a binary search and all
+ * terms sharing a prefix occupy one contiguous range that is found with two binary searches.
+ * Every TDMHeader already holds its term, so the array is the only storage the dictionary needs.
+ * OffHeapTermDictionary keeps the terms and postings outside of the heap instead.
+ */
+public class TermDictionary {
+    // rough memory taken by the objects of a term besides its postings: header, String and references
+    private static final int TERM_OVERHEAD_BYTES = 96;
+
+    private final TDMHeader[] headers;
+
+    /**
+     * Constructs a TermDictionary over the passed headers
+     * @param headers headers of every term in the index
+     */
+    public TermDictionary(Collection<TDMHeader> headers) {
+        this.headers = headers.toArray(new TDMHeader[0]);
+        Arrays.sort(this.headers, Comparator.comparing(TDMHeader::getTerm));
+    }
+
+    /**
+     * Constructs a TermDictionary holding no headers, for subclasses that store their terms elsewhere
+     */
+    protected TermDictionary() {
+        this.headers = new TDMHeader[0];
+    }
+
+    /**
+     * Obtains the number of terms in the dictionary
+     * @return number of terms in the dictionary
+     */
+    public int size() {
+        return headers.length;
+    }
+
+    /**
+     * Obtains the header of a term
+     * @param term term to look up
+     * @return header of the term, or null if the term is not in the dictionary
+     */
+    public TDMHeader get(String term) {
+        int index = lowerBound(term);
+        if (index < headers.length && headers[index].getTerm().equals(term)) {
+            return headers[index];
+        }
+        return null;
+    }
+
+    /**
+     * Obtains the headers of every term that starts with prefix, in term order
+     * @param prefix prefix of the terms to look up
+     * @return headers of the matching terms; empty if there are none
+     */
+    public List<TDMHeader> getPrefixed(String prefix) {
+        int from = lowerBound(prefix);
+
+        // terms starting with prefix form a contiguous range beginning at from
+        int low = from;
+        int high = headers.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (headers[mid].getTerm().startsWith(prefix)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return Collections.unmodifiableList(Arrays.asList(headers).subList(from, low));
+    }
+
+    /**
+     * Obtains the headers of every term, in term order
+     * @return headers of every term
+     */
+    public List<TDMHeader> getHeaders() {
+        return Collections.unmodifiableList(Arrays.asList(headers));
+    }
+
+    /**
+     * Copies the dictionary into a mutable map from terms to headers, used when the index is updated
+     * @return map of terms to their headers
+     */
+    public Map<String, TDMHeader> toMap() {
+        Map<String, TDMHeader> termMatrix = new HashMap<>(headers.length * 4 / 3 + 1);
+        for (TDMHeader header : headers) {
+            termMatrix.put(header.getTerm(), header);
+        }
+        return termMatrix;
+    }
+
+    /**
+     * Estimates the memory used by the terms and their postings
+     * @return approximate size in bytes
+     */
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (TDMHeader header : headers) {
+            bytes += header.getCompressedPostings().sizeInBytes() + TERM_OVERHEAD_BYTES + 2L * header.getTerm().length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Finds the first term that is not less than key
+     * @param key term to search for
+     * @return index of the first term not less than key, or size() if there is none
+     */
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = headers.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (headers[mid].getTerm().compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
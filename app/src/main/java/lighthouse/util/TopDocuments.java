@@ -0,0 +1,178 @@
+package lighthouse.util;
+
+import java.util.Arrays;
+
+/**
+ * TopDocuments keeps the k best scoring documents seen so far in a bounded binary min-heap
+ * stored in primitive arrays. Documents are ranked by descending score, with ties broken by
+ * ascending document ID, so the ranking is deterministic. The arrays start small and grow as
+ * documents are kept, so a large k costs no more than the documents actually offered.
+ */
+public class TopDocuments {
+    /** initial number of documents the arrays hold */
+    public static final int INITIAL_CAPACITY = 64;
+
+    private final int capacity;
+    private int[] documentIDs;
+    private double[] scores;
+    private int size;
+
+    /**
+     * Constructs an empty TopDocuments holding at most k documents
+     * @param k maximum number of documents kept
+     */
+    public TopDocuments(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative");
+        }
+        this.capacity = k;
+        this.documentIDs = new int[Math.min(k, INITIAL_CAPACITY)];
+        this.scores = new double[documentIDs.length];
+        this.size = 0;
+    }
+
+    /**
+     * Checks whether document a ranks below document b
+     * @param scoreA score of document a
+     * @param idA ID of document a
+     * @param scoreB score of document b
+     * @param idB ID of document b
+     * @return true if a ranks below b, false otherwise
+     */
+    private static boolean ranksBelow(double scoreA, int idA, double scoreB, int idB) {
+        return scoreA < scoreB || (scoreA == scoreB && idA > idB);
+    }
+
+    /**
+     * Offers a document. It is kept if fewer than k documents are held or if it ranks
+     * above the weakest document held, which is then dropped.
+     * @param documentID ID of the document
+     * @param score score of the document
+     * @return true if the document was kept, false otherwise
+     */
+    public boolean offer(int documentID, double score) {
+        if (size < capacity) {
+            if (size == documentIDs.length) {
+                grow();
+            }
+            // sift the new document up from the bottom of the heap
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!ranksBelow(score, documentID, scores[parent], documentIDs[parent])) {
+                    break;
+                }
+                documentIDs[i] = documentIDs[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            documentIDs[i] = documentID;
+            scores[i] = score;
+            return true;
+        }
+        if (capacity == 0 || !ranksBelow(scores[0], documentIDs[0], score, documentID)) {
+            return false;
+        }
+        siftDown(documentID, score);
+        return true;
+    }
+
+    /**
+     * Doubles the length of the arrays, up to k
+     */
+    private void grow() {
+        int length = (int) Math.min(capacity, 2L * documentIDs.length);
+        documentIDs = Arrays.copyOf(documentIDs, length);
+        scores = Arrays.copyOf(scores, length);
+    }
+
+    /**
+     * Replaces the weakest document with the passed one and restores the heap order
+     * @param documentID ID of the new document
+     * @param score score of the new document
+     */
+    private void siftDown(int documentID, double score) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size
+                    && ranksBelow(scores[child + 1], documentIDs[child + 1], scores[child], documentIDs[child])) {
+                child++;
+            }
+            if (!ranksBelow(scores[child], documentIDs[child], score, documentID)) {
+                break;
+            }
+            documentIDs[i] = documentIDs[child];
+            scores[i] = scores[child];
+            i = child;
+        }
+        documentIDs[i] = documentID;
+        scores[i] = score;
+    }
+
+    /**
+     * Checks whether k documents are held
+     * @return true if no more documents can be added without dropping one, false otherwise
+     */
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * Obtains the score of the weakest document held. Once full, a new document
+     * needs a score of at least this value to be kept.
+     * @return score of the weakest document held, or 0 if none are held
+     */
+    public double threshold() {
+        return size == 0 ? 0 : scores[0];
+    }
+
+    /**
+     * Obtains the number of documents held
+     * @return number of documents held
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empties the heap and returns the documents it held, best first.
+     * Afterwards getDocumentID and getScore give access to the ranked documents.
+     * @return number of ranked documents
+     */
+    public int sort() {
+        int count = size;
+        // repeatedly move the weakest document behind the shrinking heap
+        while (size > 1) {
+            int lastID = documentIDs[size - 1];
+            double lastScore = scores[size - 1];
+            documentIDs[size - 1] = documentIDs[0];
+            scores[size - 1] = scores[0];
+            size--;
+            siftDown(lastID, lastScore);
+        }
+        size = 0;
+        return count;
+    }
+
+    /**
+     * Obtains the ID of a ranked document after sort
+     * @param rank position in the ranking, 0 being the best document
+     * @return ID of the document at rank
+     */
+    public int getDocumentID(int rank) {
+        return documentIDs[rank];
+    }
+
+    /**
+     * Obtains the score of a ranked document after sort
+     * @param rank position in the ranking, 0 being the best document
+     * @return score of the document at rank
+     */
+    public double getScore(int rank) {
+        return scores[rank];
+    }
+}
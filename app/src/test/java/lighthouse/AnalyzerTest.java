@@ -0,0 +1,33 @@
+package lighthouse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import lighthouse.util.TermCounts;
+
+class AnalyzerTest {
+
+    @Test
+    void termsTest() {
+        // stopwords are dropped, symbols are stripped and everything is downcased
+        assertEquals(List.of("lighthouse", "keepers", "dont", "sleep"),
+                Tokenizer.ANALYZER.terms("  The (Lighthouse) keeper’s don't: SLEEP!\t?"));
+        // capital sigma downcases depending on its position in the word
+        assertEquals(List.of("οδος"), Tokenizer.ANALYZER.terms("ΟΔΟΣ."));
+        assertEquals(List.of("light*"), Tokenizer.ANALYZER.terms("Light*"));
+    }
+
+    @Test
+    void countsTest() {
+        TermCounts counts = Tokenizer.ANALYZER.analyze("spaghetti, Spaghetti and SPAGHETTI meatballs");
+        assertEquals(2, counts.size());
+        assertEquals("spaghetti", counts.getTerm(0));
+        assertEquals(3, counts.getCount(0));
+        assertEquals("meatballs", counts.getTerm(1));
+        assertEquals(1, counts.getCount(1));
+    }
+
+}
@@ -0,0 +1,82 @@
+package lighthouse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class BatchRunnerTest {
+
+    static QueryEngine engine;
+
+    @BeforeAll
+    static void createQueryEngine() {
+        engine = new QueryEngine("..\\tokens");
+    }
+
+    static String run(BatchRunner runner, String queries) throws IOException, InterruptedException {
+        StringWriter results = new StringWriter();
+        runner.run(new BufferedReader(new StringReader(queries)), results);
+        return results.toString();
+    }
+
+    @Test
+    void tsvTest() throws IOException, InterruptedException {
+        BatchRunner runner = new BatchRunner(engine, 4, 3, BatchRunner.Format.TSV);
+        String[] lines = run(runner, "spaghetti sauce\n\nq7\thistory\n").split("\n");
+        assertEquals("query\trank\tdocument\tscore", lines[0]);
+        // blank lines are skipped but still counted
+        var results = engine.query("spaghetti sauce", 3);
+        assertEquals("1\t1\t" + results.get(0).getKey() + "\t" + results.get(0).getValue(), lines[1]);
+        assertEquals("1\t3\t" + results.get(2).getKey() + "\t" + results.get(2).getValue(), lines[3]);
+        assertTrue(lines[4].startsWith("q7\t1\t" + engine.query("history", 3).get(0).getKey() + "\t"));
+        assertEquals(7, lines.length);
+    }
+
+    @Test
+    void jsonTest() throws IOException, InterruptedException {
+        BatchRunner runner = new BatchRunner(engine, 2, 1, BatchRunner.Format.JSON);
+        String[] lines = run(runner, "q1\tspaghetti\nzzzqqq\n").split("\n");
+        var result = engine.query("spaghetti", 1).get(0);
+        assertEquals("{\"id\":\"q1\",\"query\":\"spaghetti\",\"results\":[{\"document\":\"" + result.getKey()
+                + "\",\"score\":" + result.getValue() + "}]}", lines[0]);
+        assertEquals("{\"id\":\"2\",\"query\":\"zzzqqq\",\"results\":[]}", lines[1]);
+    }
+
+    @Test
+    void concurrentTest() throws IOException, InterruptedException {
+        // results come out in query order however many threads run them
+        String[] queries = { "program", "history music", "computer water game", "+science student", "\"world war\"" };
+        StringBuilder batch = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            batch.append(queries[i % queries.length]).append('\n');
+        }
+        String serial = run(new BatchRunner(engine, 1, 10, BatchRunner.Format.TSV), batch.toString());
+        String parallel = run(new BatchRunner(engine, 8, 10, BatchRunner.Format.TSV), batch.toString());
+        assertEquals(serial, parallel);
+    }
+
+    @Test
+    void reportTest() {
+        long[] latencies = new long[100];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = (100 - i) * 1_000_000L;
+        }
+        BatchRunner.Report report = new BatchRunner.Report(latencies, 2_000_000_000L, 4);
+        assertEquals(100, report.getQueryCount());
+        assertEquals(50.0, report.getQueriesPerSecond(), 1e-9);
+        assertEquals(50.0, report.getLatencyMillis(50), 1e-9);
+        assertEquals(95.0, report.getLatencyMillis(95), 1e-9);
+        assertEquals(99.0, report.getLatencyMillis(99), 1e-9);
+        assertEquals(100.0, report.getLatencyMillis(100), 1e-9);
+        assertEquals(50.5, report.getMeanLatencyMillis(), 1e-9);
+        assertEquals(0.0, new BatchRunner.Report(new long[0], 0, 1).getLatencyMillis(99));
+    }
+
+}
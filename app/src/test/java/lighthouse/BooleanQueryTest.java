@@ -0,0 +1,82 @@
+package lighthouse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BooleanQueryTest {
+
+    static QueryEngine engine;
+
+    @BeforeAll
+    static void createQueryEngine(@TempDir Path corpus, @TempDir Path tokens) throws IOException {
+        Files.writeString(corpus.resolve("a.html"), "<p>The lighthouse keeper lit the lamp</p>");
+        Files.writeString(corpus.resolve("b.html"), "<p>The lighthouse museum keeps an old lamp</p>");
+        Files.writeString(corpus.resolve("c.html"), "<p>The keeper of the museum</p>");
+        Files.writeString(corpus.resolve("d.html"), "<p>A lamp by the sea</p>");
+        Tokenizer.tokenize(corpus.toString(), tokens.toString(), Tokenizer.ExecutorMode.SERIAL);
+        engine = new QueryEngine(tokens.toString());
+    }
+
+    static List<String> documents(String query) {
+        return engine.query(query).stream().map(r -> r.getKey()).sorted().toList();
+    }
+
+    @Test
+    void parseTest() {
+        assertEquals(List.of("history", "+lighthouse", "-museum", "\"lighthouse keeper\""),
+                engine.normalizeQuery("history +Lighthouse -museum \"lighthouse keeper\""));
+        // operators bind the terms next to them; lower case operators are stopwords
+        assertEquals(List.of("+lighthouse", "+keeper"), engine.normalizeQuery("lighthouse AND keeper"));
+        assertEquals(List.of("sea", "+lighthouse", "+keeper"), engine.normalizeQuery("lighthouse AND keeper OR sea"));
+        assertEquals(List.of("lighthouse", "-museum", "-\"lighthouse museum\""),
+                engine.normalizeQuery("lighthouse NOT museum NOT \"lighthouse museum\""));
+        assertEquals(List.of("lighthouse", "museum"), engine.normalizeQuery("lighthouse and not museum"));
+        // a required prefix query stays optional, and a sign on its own is a term
+        assertEquals(List.of("light*", "-", "++"), engine.normalizeQuery("+light* - ++"));
+    }
+
+    @Test
+    void requiredTest() {
+        assertEquals(List.of("a.csv", "b.csv", "c.csv"), documents("lighthouse keeper"));
+        assertEquals(List.of("a.csv"), documents("+lighthouse +keeper"));
+        assertEquals(documents("+lighthouse +keeper"), documents("lighthouse AND keeper"));
+        assertEquals(List.of("a.csv", "b.csv"), documents("+lighthouse keeper"));
+        // optional terms add to the score of documents that contain them
+        var results = engine.query("+lighthouse keeper");
+        assertEquals("a.csv", results.get(0).getKey());
+        // the documents containing all terms score as they do without operators
+        assertEquals(engine.query("lighthouse keeper").get(0), engine.query("+lighthouse +keeper").get(0));
+        assertEquals(List.of(), documents("+lighthouse +zeppelin"));
+    }
+
+    @Test
+    void excludedTest() {
+        assertEquals(List.of("a.csv"), documents("lighthouse -museum"));
+        assertEquals(List.of("a.csv", "d.csv"), documents("lamp NOT museum"));
+        assertEquals(List.of("b.csv", "d.csv"), documents("lamp -\"lighthouse keeper\""));
+        assertEquals(List.of("c.csv"), documents("+keeper -lamp"));
+        assertEquals(List.of("a.csv", "b.csv", "d.csv"), documents("lamp -zeppelin"));
+        // a query without optional or required terms matches nothing
+        assertEquals(List.of(), documents("-lamp"));
+    }
+
+    @Test
+    void topKTest() {
+        String[] queries = { "lamp -museum", "+lamp lighthouse keeper", "lamp AND NOT keeper", "+lamp \"lighthouse keeper\"" };
+        for (String query : queries) {
+            var results = engine.query(query);
+            for (int k = 1; k <= 4; k++) {
+                assertEquals(results.subList(0, Math.min(k, results.size())), engine.query(query, k));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,192 @@
+package lighthouse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class DistributedTest {
+
+    static QueryEngine engine;
+    static List<ShardServer> servers = new ArrayList<>();
+
+    @BeforeAll
+    static void createQueryEngine() {
+        engine = QueryFixtures.engine();
+    }
+
+    @AfterAll
+    static void stopServers() {
+        servers.forEach(ShardServer::stop);
+    }
+
+    /**
+     * Starts a server for every shard of the token files on a free port of this machine
+     */
+    static List<ShardClient> startShards(int shardCount, int timeoutMillis) throws IOException {
+        List<ShardClient> clients = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            ShardServer server = new ShardServer(QueryEngine.loadShard("..\\tokens", i, shardCount), 0);
+            server.start();
+            servers.add(server);
+            clients.add(new ShardClient(new InetSocketAddress("localhost", server.getPort()), timeoutMillis));
+        }
+        return clients;
+    }
+
+    @Test
+    void resultsTest() throws IOException {
+        ShardCoordinator coordinator = new ShardCoordinator(startShards(3, 5000), 5000);
+        assertEquals(engine.getNumDocuments(), coordinator.getNumDocuments());
+        assertEquals(engine.getMetrics().getTermCount(), coordinator.getMetrics().getTermCount());
+        assertEquals(engine.getMetrics().getPostingCount(), coordinator.getMetrics().getPostingCount());
+        // the shards weight their documents with the statistics of the whole corpus
+        QueryFixtures.assertSameResults(engine, coordinator, 1, 10, 100);
+        assertEquals(0, coordinator.getMetrics().getPartialQueryCount());
+    }
+
+    @Test
+    void impactTest() throws IOException {
+        // shards quantize their weights against the largest one of the whole corpus
+        QueryEngine impacts = new QueryEngine("..\\tokens");
+        impacts.useImpacts(8);
+        List<ShardClient> clients = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            QueryEngine shard = QueryEngine.loadShard("..\\tokens", i, 3);
+            shard.useImpacts(8);
+            ShardServer server = new ShardServer(shard, 0);
+            server.start();
+            servers.add(server);
+            clients.add(new ShardClient(new InetSocketAddress("localhost", server.getPort()), 5000));
+        }
+        ShardCoordinator coordinator = new ShardCoordinator(clients, 5000);
+        QueryFixtures.assertSameTopResults(impacts, coordinator, 10);
+    }
+
+    @Test
+    void failedShardTest() throws IOException {
+        List<ShardClient> clients = startShards(2, 5000);
+        ShardCoordinator coordinator = new ShardCoordinator(clients, 5000);
+        List<Entry<String, Double>> complete = engine.query("history", 100);
+        servers.get(servers.size() - 1).stop();
+
+        // the documents of the first shard are still returned, in the same order
+        List<Entry<String, Double>> partial = coordinator.query("history", 100);
+        assertFalse(partial.isEmpty());
+        assertTrue(partial.size() < complete.size());
+        assertEquals(complete.stream().filter(partial::contains).toList(), partial);
+        // partial results are not cached
+        coordinator.query("history", 100);
+        assertEquals(2, coordinator.getMetrics().getPartialQueryCount());
+        assertEquals(0, coordinator.getMetrics().getCachedQueryCount());
+    }
+
+    @Test
+    void restartedShardTest() throws IOException {
+        List<ShardClient> clients = startShards(2, 5000);
+        ShardCoordinator coordinator = new ShardCoordinator(clients, 5000);
+        assertEquals(engine.query("history", 100), coordinator.query("history", 100));
+        ShardServer stopped = servers.get(servers.size() - 1);
+        stopped.stop();
+
+        // the restarted shard is sent the statistics again before it answers
+        ShardServer restarted = new ShardServer(QueryEngine.loadShard("..\\tokens", 1, 2), stopped.getPort());
+        restarted.start();
+        servers.add(restarted);
+        assertEquals(engine.query("program", 100), coordinator.query("program", 100));
+        assertEquals(engine.query("music", 10), coordinator.query("music", 10));
+        assertEquals(0, coordinator.getMetrics().getPartialQueryCount());
+    }
+
+    /**
+     * Starts a shard holding no documents that answers the statistics requests but never a query,
+     * standing in for an overloaded shard
+     */
+    static ServerSocket startSilentShard() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        Thread.startVirtualThread(() -> {
+            while (!socket.isClosed()) {
+                try {
+                    Socket connection = socket.accept();
+                    Thread.startVirtualThread(() -> {
+                        try (connection) {
+                            DataInputStream in = new DataInputStream(connection.getInputStream());
+                            DataOutputStream out = new DataOutputStream(connection.getOutputStream());
+                            for (byte command = in.readByte(); command != ShardServer.QUERY; command = in.readByte()) {
+                                if (command == ShardServer.SET_STATISTICS) {
+                                    new CorpusStatistics().readFrom(in);
+                                } else if (command == ShardServer.SET_LARGEST_WEIGHT) {
+                                    in.readDouble();
+                                }
+                                out.writeByte(ShardServer.OK);
+                                if (command == ShardServer.STATISTICS) {
+                                    new CorpusStatistics().writeTo(out);
+                                } else if (command == ShardServer.SET_STATISTICS) {
+                                    out.writeDouble(0);
+                                }
+                            }
+                            Thread.sleep(60_000);
+                        } catch (IOException | InterruptedException e) {
+                            // the coordinator gave up
+                        }
+                    });
+                } catch (IOException e) {
+                    // the socket was closed
+                }
+            }
+        });
+        return socket;
+    }
+
+    @Test
+    void slowShardTest() throws IOException {
+        try (ServerSocket silent = startSilentShard()) {
+            List<ShardClient> clients = startShards(2, 300);
+            clients.add(new ShardClient(new InetSocketAddress("localhost", silent.getLocalPort()), 300));
+            ShardCoordinator coordinator = new ShardCoordinator(clients, 300);
+
+            long start = System.nanoTime();
+            List<Entry<String, Double>> partial = coordinator.query("history music", 10);
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            // the silent shard holds no documents, so nothing is missing
+            assertEquals(engine.query("history music", 10), partial);
+            assertTrue(elapsedMillis < 2000, elapsedMillis + " ms");
+            assertEquals(1, coordinator.getMetrics().getPartialQueryCount());
+
+            ShardClient client = new ShardClient(new InetSocketAddress("localhost", silent.getLocalPort()), 200);
+            assertThrows(SocketTimeoutException.class, () -> client.query("history", 10));
+        }
+    }
+
+    @Test
+    void connectTimeoutTest() {
+        // a non-routable address never answers the connection attempt
+        ShardClient client = new ShardClient(new InetSocketAddress("10.255.255.1", 9100), 200);
+        long start = System.nanoTime();
+        assertThrows(IOException.class, () -> client.query("history", 10));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(elapsedMillis < 2000, elapsedMillis + " ms");
+    }
+
+    @Test
+    void addressTest() {
+        assertEquals("localhost:9100", ShardClient.of("localhost:9100", 1000).toString());
+        assertThrows(IllegalArgumentException.class, () -> ShardClient.of("localhost", 1000));
+    }
+
+}
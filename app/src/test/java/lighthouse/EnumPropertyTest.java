@@ -0,0 +1,53 @@
+package lighthouse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Locale;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import lighthouse.util.EnumProperty;
+
+class EnumPropertyTest {
+
+    static final String PROPERTY = "lighthouse.test.mode";
+
+    @AfterEach
+    void clearProperty() {
+        System.clearProperty(PROPERTY);
+    }
+
+    @Test
+    void valueTest() {
+        assertEquals(Tokenizer.ExecutorMode.FORK_JOIN, EnumProperty.get(PROPERTY, Tokenizer.ExecutorMode.FORK_JOIN));
+        System.setProperty(PROPERTY, "virtual_threads");
+        assertEquals(Tokenizer.ExecutorMode.VIRTUAL_THREADS,
+                EnumProperty.get(PROPERTY, Tokenizer.ExecutorMode.FORK_JOIN));
+    }
+
+    @Test
+    void localeTest() {
+        // a Turkish default locale upper-cases "i" to a dotted capital I
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            System.setProperty(PROPERTY, "fixed_pool");
+            assertEquals(Tokenizer.ExecutorMode.FIXED_POOL, EnumProperty.get(PROPERTY, Tokenizer.ExecutorMode.SERIAL));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    void unknownValueTest() {
+        // a mistyped value names the valid ones
+        System.setProperty(PROPERTY, "csv");
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> EnumProperty.get(PROPERTY, BatchRunner.Format.TSV));
+        assertTrue(e.getMessage().startsWith(PROPERTY), e.getMessage());
+        assertTrue(e.getMessage().contains("[TSV, JSON]"), e.getMessage());
+    }
+}
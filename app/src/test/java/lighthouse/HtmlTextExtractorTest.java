@@ -0,0 +1,81 @@
+package lighthouse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.Test;
+
+import lighthouse.util.TermCounts;
+
+class HtmlTextExtractorTest {
+
+    static Map<String, Integer> toMap(TermCounts counts) {
+        Map<String, Integer> map = new HashMap<>();
+        for (int i = 0; i < counts.size(); i++) {
+            map.put(counts.getTerm(i), counts.getCount(i));
+        }
+        return map;
+    }
+
+    static Map<String, Integer> extract(String html) throws IOException {
+        Analyzer.Counter counter = Tokenizer.ANALYZER.newCounter();
+        HtmlTextExtractor.extract(new StringReader(html), counter);
+        return toMap(counter.finish());
+    }
+
+    @Test
+    void extractTest() throws IOException {
+        // head, scripts and comments are skipped, entities decoded and block elements separated
+        assertEquals(Map.of("spaghetti", 1, "meatballs", 1, "&", 1, "sauce", 1),
+                extract("<html><head><title>Menu</title><script>var x = 'pasta';</script></head>"
+                        + "<body><p>Spaghetti</p><div>meat<!-- no -->balls&nbsp;&amp;&nbsp;sauce</div></body></html>"));
+        // inline elements do not split words
+        assertEquals(Map.of("lighthouse", 1), extract("<b>light</b><i>house</i>"));
+    }
+
+    static Map<String, List<Integer>> toPositionMap(TermCounts counts) {
+        Map<String, List<Integer>> map = new HashMap<>();
+        for (int i = 0; i < counts.size(); i++) {
+            map.put(counts.getTerm(i), Arrays.stream(counts.getPositions(i)).boxed().toList());
+        }
+        return map;
+    }
+
+    @Test
+    void treeBuilderTest() throws IOException {
+        // nodes the tree builder moves around, such as text fostered out of tables or misnested formatting,
+        // end up where they do in the DOM tree
+        List<String> documents = List.of("<table>light<tr><td>house</td></tr>keeper</table>after",
+                "<b>one<p>two</b>three</p>four", "<p>a<div>b</div>c</p>d<i>e</i>",
+                "<pre>  x\n y </pre><span>z</span>", "<ul><li>one<li>two</ul>three<br>four",
+                "<svg><title>t</title><desc>d</desc></svg>x", "<select><option>o<input>i</select>s",
+                "<body><p>a</p></body>after</html>more", "<a href=x>1<div>2</a>3</div>4");
+        for (String html : documents) {
+            Analyzer.Counter streamed = Tokenizer.ANALYZER.newCounter(true);
+            HtmlTextExtractor.extract(new StringReader(html), streamed);
+            Analyzer.Counter parsed = Tokenizer.ANALYZER.newCounter(true);
+            parsed.append(Jsoup.parse(html).body().text());
+            assertEquals(toPositionMap(parsed.finish()), toPositionMap(streamed.finish()), html);
+        }
+    }
+
+    @Test
+    void corpusTest() {
+        // both extractor modes must produce the same counts and positions for every document
+        for (File file : new File("..\\corpus").listFiles()) {
+            assertEquals(toMap(Tokenizer.tokenizeFile(file, Tokenizer.ExtractorMode.DOM)),
+                    toMap(Tokenizer.tokenizeFile(file, Tokenizer.ExtractorMode.STREAMING)), file.getName());
+            assertEquals(toPositionMap(Tokenizer.tokenizeFile(file, Tokenizer.ExtractorMode.DOM, true)),
+                    toPositionMap(Tokenizer.tokenizeFile(file, Tokenizer.ExtractorMode.STREAMING, true)), file.getName());
+        }
+    }
+
+}
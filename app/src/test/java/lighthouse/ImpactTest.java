@@ -0,0 +1,227 @@
+package lighthouse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import lighthouse.util.CompressedPostingList;
+import lighthouse.util.ImpactPostingList;
+
+class ImpactTest {
+
+    static final int documentCount = 2000;
+    static final int vocabularySize = 300;
+
+    @TempDir
+    static Path tokens;
+    static QueryEngine exact;
+    static List<String> queries = new ArrayList<>();
+
+    /**
+     * Spells out a word of the synthetic corpus, which the analyzer leaves as it is
+     */
+    static String word(int index) {
+        StringBuilder word = new StringBuilder("w");
+        do {
+            word.append((char) ('a' + index % 26));
+            index /= 26;
+        } while (index > 0);
+        return word.toString();
+    }
+
+    /**
+     * Draws a word index from a Zipf distribution, the lowest indexes being the most frequent
+     */
+    static int zipf(Random random, double[] cumulative) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[cumulative.length - 1]);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    /**
+     * Writes the token files of a synthetic corpus without positions, so that queries of several terms
+     * get no proximity boost. Every document draws most of its words from the whole vocabulary and the
+     * rest from one of a few topics, so that some documents are about a term and others only mention it.
+     */
+    @BeforeAll
+    static void createCorpus() throws IOException {
+        Random random = new Random(17);
+        double[] cumulative = new double[vocabularySize];
+        for (int i = 0; i < vocabularySize; i++) {
+            cumulative[i] = (i == 0 ? 0 : cumulative[i - 1]) + 1.0 / (i + 1);
+        }
+        int[][] topics = new int[20][];
+        for (int t = 0; t < topics.length; t++) {
+            List<Integer> words = new ArrayList<>();
+            for (int i = 0; i < vocabularySize; i++) {
+                words.add(i);
+            }
+            Collections.shuffle(words, random);
+            topics[t] = words.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        for (int d = 0; d < documentCount; d++) {
+            int[] topic = topics[random.nextInt(topics.length)];
+            Map<String, Integer> counts = new HashMap<>();
+            int length = 20 + random.nextInt(280);
+            for (int i = 0; i < length; i++) {
+                int index = zipf(random, cumulative);
+                counts.merge(word(random.nextDouble() < 0.3 ? topic[index] : index), 1, Integer::sum);
+            }
+            StringBuilder csv = new StringBuilder();
+            counts.forEach((term, count) -> csv.append(term).append(',').append(count).append('\n'));
+            Files.writeString(tokens.resolve(String.format("%04d.csv", d)), csv);
+        }
+        exact = new QueryEngine(tokens.toString());
+
+        for (int q = 0; q < 200; q++) {
+            int termCount = 1 + random.nextInt(3);
+            StringBuilder query = new StringBuilder();
+            for (int i = 0; i < termCount; i++) {
+                query.append(word(random.nextInt(100))).append(' ');
+            }
+            queries.add(query.toString().trim());
+        }
+        queries.addAll(List.of("wa*", "wb* wc", "wd wz -we", "wqd wf"));
+    }
+
+    /**
+     * Measures how close the top k documents of an engine using impacts are to the exact ones
+     * @return fraction of the exact top k documents returned, averaged over the queries
+     */
+    static double recall(QueryEngine engine, int k) {
+        double recall = 0;
+        for (String query : queries) {
+            Set<String> expected = new HashSet<>();
+            exact.query(query, k).forEach(result -> expected.add(result.getKey()));
+            List<Entry<String, Double>> results = engine.query(query, k);
+            recall += expected.isEmpty() ? 1
+                    : (double) results.stream().filter(result -> expected.contains(result.getKey())).count()
+                            / expected.size();
+        }
+        return recall / queries.size();
+    }
+
+    static QueryEngine impactEngine(int bits) {
+        QueryEngine engine = new QueryEngine(tokens.toString());
+        engine.useImpacts(bits);
+        return engine;
+    }
+
+    /**
+     * Obtains the document names of results, in order
+     */
+    static List<String> names(List<Entry<String, Double>> results) {
+        return results.stream().map(Entry::getKey).toList();
+    }
+
+    @Test
+    void closenessTest() {
+        QueryEngine impacts8 = impactEngine(8);
+        QueryEngine impacts16 = impactEngine(16);
+        double recall8 = recall(impacts8, 10);
+        double recall16 = recall(impacts16, 10);
+        assertTrue(recall8 >= 0.9, "8 bit recall " + recall8);
+        assertTrue(recall16 >= 0.99, "16 bit recall " + recall16);
+
+        // returned documents get their whole quantized weight, close to the exact one
+        double largestError = 0;
+        for (String query : queries) {
+            Map<String, Double> weights = new HashMap<>();
+            exact.query(query).forEach(result -> weights.put(result.getKey(), result.getValue()));
+            for (Entry<String, Double> result : impacts16.query(query, 10)) {
+                largestError = Math.max(largestError, Math.abs(weights.get(result.getKey()) - result.getValue()));
+            }
+        }
+        assertTrue(largestError < 1e-3, "16 bit weight error " + largestError);
+    }
+
+    @Test
+    void earlyTerminationTest() {
+        QueryEngine impacts = impactEngine(16);
+        QueryEngine reference = new QueryEngine(tokens.toString());
+        // single terms common enough for their postings to fill many segments; rounding may swap
+        // documents of nearly equal weights, but not change which ones are returned
+        for (int i = 3; i <= 40; i++) {
+            assertEquals(new HashSet<>(names(reference.query(word(i), 10))),
+                    new HashSet<>(names(impacts.query(word(i), 10))), word(i));
+        }
+        long exactScanned = reference.getMetrics().getPostingsScanned();
+        long impactScanned = impacts.getMetrics().getPostingsScanned();
+        assertTrue(impactScanned * 2 < exactScanned, impactScanned + " of " + exactScanned + " postings");
+    }
+
+    @Test
+    void shardTest() {
+        // every shard quantizes on the scale of the whole corpus, so the results are those of a single index
+        ShardedQueryEngine sharded = new ShardedQueryEngine(tokens.toString(), 3);
+        for (int bits : new int[] { 8, 16 }) {
+            QueryEngine impacts = impactEngine(bits);
+            sharded.useImpacts(bits);
+            for (String query : queries) {
+                assertEquals(impacts.query(query, 10), sharded.query(query, 10), bits + " bits: " + query);
+            }
+        }
+
+        // turning impacts off brings back exact results
+        sharded.useImpacts(0);
+        for (String query : queries) {
+            assertEquals(exact.query(query, 10), sharded.query(query, 10), query);
+        }
+    }
+
+    @Test
+    void segmentTest() {
+        int size = 3 * CompressedPostingList.BLOCK_SIZE + 5;
+        int[] documentIDs = new int[size];
+        int[] impacts = new int[size];
+        for (int i = 0; i < size; i++) {
+            documentIDs[i] = i * 300;
+            impacts[i] = i % 7 == 0 ? 200 : 1 + i % 2;
+        }
+        ImpactPostingList postings = new ImpactPostingList(documentIDs, impacts, size);
+        assertEquals(size, postings.size());
+
+        int[] decoded = new int[CompressedPostingList.BLOCK_SIZE];
+        Set<Integer> seen = new HashSet<>();
+        int previousImpact = Integer.MAX_VALUE;
+        for (int segment = 0; segment < postings.getSegmentCount(); segment++) {
+            int impact = postings.getSegmentImpact(segment);
+            assertTrue(impact <= previousImpact);
+            previousImpact = impact;
+            int count = postings.decodeSegment(segment, decoded);
+            assertEquals(postings.getSegmentSize(segment), count);
+            for (int i = 0; i < count; i++) {
+                assertTrue(i == 0 || decoded[i - 1] < decoded[i]);
+                assertEquals(impact, impacts[decoded[i] / 300]);
+                seen.add(decoded[i]);
+            }
+        }
+        assertEquals(size, seen.size());
+        // 56 postings of impact 200, then more than a segment can hold of impact 2 and of impact 1
+        assertEquals(1 + 2 + 2, postings.getSegmentCount());
+    }
+
+    @Test
+    void unsupportedTest() {
+        assertThrows(IllegalArgumentException.class, () -> exact.useImpacts(4));
+    }
+
+}
@@ -0,0 +1,156 @@
+package lighthouse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IncrementalTest {
+    static final List<String> queries = List.of("program", "history music", "computer water game",
+            "+science student", "history -music", "comput*", "lighthouse", "keeper museum", "island");
+
+    @TempDir
+    Path corpus;
+    @TempDir
+    Path tokens;
+    String manifest;
+
+    @BeforeEach
+    void copyCorpus(@TempDir Path state) throws IOException {
+        manifest = state.resolve("manifest.csv").toString();
+        File[] files = new File("..\\corpus").listFiles();
+        Arrays.sort(files);
+        for (File file : Arrays.copyOf(files, 12)) {
+            Files.copy(file.toPath(), corpus.resolve(file.getName()));
+        }
+    }
+
+    @Test
+    void manifestTest() throws IOException {
+        CorpusManifest written = new CorpusManifest();
+        for (File file : corpus.toFile().listFiles()) {
+            written.put(CorpusManifest.Entry.of(file));
+        }
+        written.save(manifest);
+
+        // a saved manifest reads back with the same entries and fingerprint
+        CorpusManifest read = CorpusManifest.load(manifest);
+        assertEquals(written.names(), read.names());
+        for (String name : written.names()) {
+            assertEquals(written.get(name).getSize(), read.get(name).getSize(), name);
+            assertEquals(written.get(name).getModified(), read.get(name).getModified(), name);
+            assertEquals(written.get(name).getHash(), read.get(name).getHash(), name);
+        }
+        assertEquals(written.fingerprint(), read.fingerprint());
+
+        // the fingerprint follows the contents, not the modification times
+        String name = written.names().iterator().next();
+        CorpusManifest.Entry entry = written.get(name);
+        read.put(new CorpusManifest.Entry(name, entry.getSize(), entry.getModified() + 1000, entry.getHash()));
+        assertEquals(written.fingerprint(), read.fingerprint());
+        read.put(new CorpusManifest.Entry(name, entry.getSize(), entry.getModified(), "0"));
+        assertNotEquals(written.fingerprint(), read.fingerprint());
+
+        // a missing manifest is empty
+        assertTrue(CorpusManifest.load(corpus.resolve("missing.csv").toString()).names().isEmpty());
+    }
+
+    @Test
+    void updateTest() throws IOException {
+        CorpusChanges changes = Tokenizer.update(corpus.toString(), tokens.toString(), manifest);
+        assertEquals(12, changes.getUpdatedDocuments().size());
+        QueryEngine updated = new QueryEngine(tokens.toString());
+        updated.setCorpusFingerprint(changes.getFingerprint());
+        File[] files = corpus.toFile().listFiles();
+        Arrays.sort(files);
+
+        // added document
+        Files.writeString(corpus.resolve("lighthouse.html"), "<html><body>lighthouse keeper island</body></html>");
+        assertUpdated(updated, List.of("lighthouse.csv"));
+
+        // modified document
+        Files.writeString(files[3].toPath(), "<html><body>museum island history</body></html>");
+        assertUpdated(updated, List.of(Tokenizer.documentName(files[3])));
+
+        // removed document
+        Files.delete(files[5].toPath());
+        assertUpdated(updated, List.of());
+
+        // touched but unchanged document
+        assertTrue(files[7].setLastModified(files[7].lastModified() + 10_000));
+        long fingerprint = updated.getCorpusFingerprint();
+        changes = Tokenizer.update(corpus.toString(), tokens.toString(), manifest);
+        assertTrue(changes.isEmpty());
+        assertEquals(fingerprint, changes.getFingerprint());
+    }
+
+    @Test
+    void fingerprintTest(@TempDir Path directory) throws IOException {
+        // a saved index keeps the fingerprint that the next run's changes are checked against
+        CorpusChanges changes = Tokenizer.update(corpus.toString(), tokens.toString(), manifest);
+        QueryEngine engine = new QueryEngine(tokens.toString());
+        engine.setCorpusFingerprint(changes.getFingerprint());
+        String indexPath = directory.resolve("index.bin").toString();
+        engine.save(indexPath);
+
+        Files.writeString(corpus.resolve("lighthouse.html"), "<html><body>lighthouse keeper</body></html>");
+        changes = Tokenizer.update(corpus.toString(), tokens.toString(), manifest);
+        QueryEngine loaded = QueryEngine.load(indexPath);
+        assertEquals(loaded.getCorpusFingerprint(), changes.getPreviousFingerprint());
+        assertNotEquals(loaded.getCorpusFingerprint(), changes.getFingerprint());
+        loaded.update(tokens.toString(), changes);
+        assertEquals(changes.getFingerprint(), loaded.getCorpusFingerprint());
+    }
+
+    /**
+     * Runs an incremental update and checks that the updated index answers like one rebuilt from scratch
+     * @param updated index to be updated
+     * @param updatedDocuments documents the run is expected to re-tokenize
+     */
+    void assertUpdated(QueryEngine updated, List<String> updatedDocuments) {
+        CorpusChanges changes = Tokenizer.update(corpus.toString(), tokens.toString(), manifest);
+        assertEquals(updatedDocuments, changes.getUpdatedDocuments());
+        assertEquals(updated.getCorpusFingerprint(), changes.getPreviousFingerprint());
+        updated.update(tokens.toString(), changes);
+
+        QueryEngine rebuilt = new QueryEngine(tokens.toString());
+        assertEquals(corpus.toFile().list().length, tokens.toFile().list().length);
+        for (String query : queries) {
+            assertEquals(byName(rebuilt.query(query)), byName(updated.query(query)), query);
+            assertEquals(scores(rebuilt.query(query, 5)), scores(updated.query(query, 5)), query);
+        }
+    }
+
+    /**
+     * Orders results by document name, as an update moves the documents it re-indexes behind the others
+     * and so changes the order of documents with equal scores
+     * @param results ranked results of a query
+     * @return the same results, ordered by document name
+     */
+    static Map<String, Double> byName(List<Map.Entry<String, Double>> results) {
+        Map<String, Double> ordered = new TreeMap<>();
+        results.forEach(result -> ordered.put(result.getKey(), result.getValue()));
+        return ordered;
+    }
+
+    /**
+     * Obtains the scores of ranked results
+     * @param results ranked results of a query
+     * @return scores in rank order
+     */
+    static List<Double> scores(List<Map.Entry<String, Double>> results) {
+        return results.stream().map(Map.Entry::getValue).toList();
+    }
+}
@@ -0,0 +1,60 @@
+package lighthouse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IndexFileTest {
+
+    static QueryEngine engine;
+    static Path indexPath;
+
+    @BeforeAll
+    static void saveIndex(@TempDir Path directory) throws IOException {
+        engine = new QueryEngine("..\\tokens");
+        indexPath = directory.resolve("lighthouse.idx");
+        engine.save(indexPath.toString());
+    }
+
+    @Test
+    void roundTripTest() throws IOException {
+        QueryEngine loaded = QueryEngine.load(indexPath.toString());
+        assertEquals(engine.getNumDocuments(), loaded.getNumDocuments());
+        assertEquals(engine.getTotalDocumentLengths(), loaded.getTotalDocumentLengths());
+        assertEquals(engine.query("spaghetti"), loaded.query("spaghetti"));
+    }
+
+    @Test
+    void mappedTest(@TempDir Path directory) throws IOException {
+        Path mappedPath = directory.resolve("lighthouse-mapped.idx");
+        engine.save(mappedPath.toString());
+        QueryEngine loaded = QueryEngine.load(mappedPath.toString());
+        // the postings are read from the mapped file rather than copied onto the heap
+        assertTrue(loaded.getDictionary().get("spaghetti").getCompressedPostings().getData().isDirect());
+
+        // saving replaces the file, so the mapping of the loaded index stays valid
+        loaded.save(mappedPath.toString());
+        for (String query : List.of("spaghetti sauce", "+science student", "\"world war\"", "comput*")) {
+            assertEquals(engine.query(query), loaded.query(query), query);
+        }
+    }
+
+    @Test
+    void corruptIndexTest(@TempDir Path directory) throws IOException {
+        byte[] bytes = Files.readAllBytes(indexPath);
+        bytes[bytes.length / 2] ^= 1;
+        Path corruptPath = directory.resolve("lighthouse-corrupt.idx");
+        Files.write(corruptPath, bytes);
+
+        assertThrows(IOException.class, () -> QueryEngine.load(corruptPath.toString()));
+    }
+}
@@ -0,0 +1,103 @@
+package lighthouse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import lighthouse.util.Histogram;
+
+class MetricsTest {
+
+    static QueryEngine engine;
+
+    @BeforeAll
+    static void createQueryEngine() {
+        engine = new QueryEngine("..\\tokens");
+    }
+
+    @Test
+    void histogramTest() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000_000, histogram.getMax());
+        assertEquals(50_000_500, histogram.getMean(), 1e-6);
+        // every percentile is reported within 1% of the exact nearest-rank value, never below it
+        for (double percentile : new double[] { 1, 50, 90, 99, 99.9, 100 }) {
+            long exact = (long) Math.ceil(percentile * 1000) * 1000;
+            long reported = histogram.getValueAtPercentile(percentile);
+            assertTrue(reported >= exact && reported <= exact * 1.01, percentile + ": " + reported);
+        }
+        assertEquals(100_000_000, histogram.getValueAtPercentile(100));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(101));
+    }
+
+    @Test
+    void smallValuesTest() {
+        // values below 2^SUB_BUCKET_BITS are exact
+        Histogram histogram = new Histogram();
+        for (int value = 0; value < 100; value++) {
+            histogram.record(value);
+        }
+        assertEquals(49, histogram.getValueAtPercentile(50));
+        assertEquals(98, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    void queryMetricsTest() {
+        QueryEngineMetrics metrics = engine.getMetrics();
+        long queries = metrics.getQueryCount();
+        long cached = metrics.getCachedQueryCount();
+        long scanned = metrics.getPostingsScanned();
+
+        engine.query("metrics test history", 10);
+        assertEquals(queries + 1, metrics.getQueryCount());
+        assertTrue(metrics.getPostingsScanned() > scanned);
+        assertTrue(metrics.getMaxLatencyMillis() > 0);
+
+        // the same query again is answered from the cache, without decoding any postings
+        scanned = metrics.getPostingsScanned();
+        engine.query("metrics test history", 10);
+        assertEquals(queries + 2, metrics.getQueryCount());
+        assertEquals(cached + 1, metrics.getCachedQueryCount());
+        assertEquals(scanned, metrics.getPostingsScanned());
+    }
+
+    @Test
+    void indexSizeTest() {
+        QueryEngineMetrics metrics = engine.getMetrics();
+        assertEquals(engine.getNumDocuments(), metrics.getDocumentCount());
+        assertTrue(metrics.getTermCount() > 0);
+        assertTrue(metrics.getPostingCount() >= metrics.getTermCount());
+        assertTrue(metrics.getIndexBytes() > metrics.getPostingCount());
+        assertTrue(IndexingMetrics.getInstance().getLoadMillis() > 0);
+        assertTrue(IndexingMetrics.getInstance().getWeightDocumentsPerSecond() > 0);
+    }
+
+    @Test
+    void jmxTest() throws JMException {
+        new MetricsReporter(engine).registerMBeans();
+        engine.query("music", 10);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(MetricsReporter.QUERY_ENGINE_NAME);
+        assertEquals(engine.getMetrics().getQueryCount(), server.getAttribute(name, "QueryCount"));
+        assertTrue((Double) server.getAttribute(name, "LatencyP99Millis") > 0);
+        assertTrue((Double) server.getAttribute(new ObjectName(MetricsReporter.INDEXING_NAME), "LoadMillis") > 0);
+        // registering again replaces the MBeans
+        new MetricsReporter(engine).registerMBeans();
+        assertTrue(server.isRegistered(name));
+    }
+
+}
@@ -0,0 +1,156 @@
+package lighthouse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import lighthouse.util.OffHeapTermDictionary;
+import lighthouse.util.PostingList;
+import lighthouse.util.TDMHeader;
+import lighthouse.util.TermDictionary;
+
+class OffHeapTest {
+
+    static QueryEngine engine;
+    static QueryEngine offHeap;
+
+    /**
+     * Creates an engine with OFF_HEAP_PROPERTY set
+     */
+    static QueryEngine offHeap(Supplier<QueryEngine> engine) {
+        System.setProperty(QueryEngine.OFF_HEAP_PROPERTY, "true");
+        try {
+            return engine.get();
+        } finally {
+            System.clearProperty(QueryEngine.OFF_HEAP_PROPERTY);
+        }
+    }
+
+    @BeforeAll
+    static void createQueryEngines() {
+        engine = QueryFixtures.engine();
+        offHeap = offHeap(() -> new QueryEngine("..\\tokens"));
+    }
+
+    @Test
+    void resultsTest() {
+        assertTrue(offHeap.getDictionary() instanceof OffHeapTermDictionary);
+        QueryFixtures.assertSameResults(engine, offHeap, 1, 10, 100);
+        assertEquals(engine.getMetrics().getPostingCount(), offHeap.getMetrics().getPostingCount());
+    }
+
+    @Test
+    void dictionaryTest() {
+        TermDictionary heapDictionary = engine.getDictionary();
+        TermDictionary dictionary = offHeap.getDictionary();
+        assertEquals(heapDictionary.size(), dictionary.size());
+        for (TDMHeader expected : heapDictionary.getHeaders()) {
+            TDMHeader header = dictionary.get(expected.getTerm());
+            assertEquals(expected.getTerm(), header.getTerm());
+            assertEquals(expected.getMaxWeight(), header.getMaxWeight());
+            assertEquals(postings(expected), postings(header));
+            // every lookup creates a header, and those of one term are equal
+            assertEquals(header, dictionary.get(expected.getTerm()));
+        }
+        assertNull(dictionary.get("zzzqqq"));
+        assertNull(dictionary.get(""));
+        assertEquals(heapDictionary.getPrefixed("comput").stream().map(TDMHeader::getTerm).toList(),
+                dictionary.getPrefixed("comput").stream().map(TDMHeader::getTerm).toList());
+        assertTrue(dictionary.getPrefixed("zzzqqq").isEmpty());
+        assertNotEquals(dictionary.get("history"), dictionary.get("music"));
+    }
+
+    /**
+     * Decodes the postings of a header into document IDs and term counts
+     */
+    static String postings(TDMHeader header) {
+        PostingList postings = header.getCompressedPostings().toPostingList();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < postings.size(); i++) {
+            text.append(postings.getDocumentID(i)).append(':').append(postings.getTermCount(i)).append(' ');
+        }
+        return text.toString();
+    }
+
+    @Test
+    void saveLoadTest(@TempDir Path directory) throws IOException {
+        Path indexPath = directory.resolve("lighthouse-offheap.idx");
+        offHeap.save(indexPath.toString());
+        QueryEngine loaded = offHeap(() -> {
+            try {
+                return QueryEngine.load(indexPath.toString());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(loaded.getDictionary() instanceof OffHeapTermDictionary);
+        QueryEngine heapLoaded = QueryEngine.load(indexPath.toString());
+        QueryFixtures.assertSameResults(engine, loaded, 10);
+        QueryFixtures.assertSameResults(engine, heapLoaded, 10);
+    }
+
+    @Test
+    void impactTest() {
+        QueryEngine impacts = new QueryEngine("..\\tokens");
+        impacts.useImpacts(16);
+        QueryEngine offHeapImpacts = offHeap(() -> new QueryEngine("..\\tokens"));
+        offHeapImpacts.useImpacts(16);
+        QueryFixtures.assertSameTopResults(impacts, offHeapImpacts, 10);
+    }
+
+    @Test
+    void updateTest(@TempDir Path tokens) throws IOException {
+        Files.writeString(tokens.resolve("a.csv"), "lighthouse,3\nkeeper,1\n");
+        Files.writeString(tokens.resolve("b.csv"), "lighthouse,1\nmuseum,2\n");
+        QueryEngine updated = offHeap(() -> new QueryEngine(tokens.toString()));
+
+        Files.delete(tokens.resolve("b.csv"));
+        Files.writeString(tokens.resolve("c.csv"), "keeper,2\nmuseum,1\nisland,1\n");
+        updated.update(tokens.toString(), new CorpusChanges(List.of("c.csv"),
+                Map.of("b.csv", Set.of("lighthouse", "museum")), 0, 1));
+
+        assertTrue(updated.getDictionary() instanceof OffHeapTermDictionary);
+        QueryEngine rebuilt = new QueryEngine(tokens.toString());
+        for (String query : List.of("lighthouse", "keeper", "museum", "island", "keeper museum")) {
+            assertEquals(rebuilt.query(query), updated.query(query), query);
+        }
+    }
+
+    @Test
+    void builderTest() {
+        OffHeapTermDictionary.Builder builder = new OffHeapTermDictionary.Builder(2);
+        builder.add(header("keeper"));
+        assertThrows(IllegalArgumentException.class, () -> builder.add(header("island")));
+        assertThrows(IllegalStateException.class, builder::build);
+        builder.add(header("lighthouse"));
+        assertThrows(IllegalStateException.class, () -> builder.add(header("museum")));
+
+        OffHeapTermDictionary dictionary = builder.build();
+        assertEquals(2, dictionary.size());
+        assertEquals("1:2 ", postings(dictionary.get("lighthouse")));
+    }
+
+    /**
+     * Creates the header of a term found twice in document 1
+     */
+    static TDMHeader header(String term) {
+        TDMHeader header = new TDMHeader(term);
+        header.getPostings().add(1, 2);
+        return header;
+    }
+
+}
@@ -0,0 +1,59 @@
+package lighthouse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PhraseQueryTest {
+
+    static QueryEngine engine;
+
+    @BeforeAll
+    static void createQueryEngine(@TempDir Path corpus, @TempDir Path tokens) throws IOException {
+        // every document holds the same terms, so only their order tells the documents apart
+        Files.writeString(corpus.resolve("a.html"), "<p>The lighthouse keeper climbed the rock with a lamp</p>");
+        Files.writeString(corpus.resolve("b.html"), "<p>The keeper of the lighthouse climbed the rock with a lamp</p>");
+        Files.writeString(corpus.resolve("c.html"), "<p>The lighthouse climbed the rock with a lamp and a keeper</p>");
+        Tokenizer.tokenize(corpus.toString(), tokens.toString(), Tokenizer.ExecutorMode.SERIAL);
+        engine = new QueryEngine(tokens.toString());
+    }
+
+    @Test
+    void phraseTest() {
+        assertEquals(List.of("a.csv"), engine.query("\"lighthouse keeper\"").stream().map(r -> r.getKey()).toList());
+        // stopwords do not take up a position
+        assertEquals(List.of("b.csv"), engine.query("\"keeper of the lighthouse\"").stream().map(r -> r.getKey()).toList());
+        assertEquals(List.of(), engine.query("\"keeper lamp\""));
+        assertEquals(List.of("\"lighthouse keeper\""), engine.normalizeQuery("\"The Lighthouse Keeper\""));
+        // loose terms next to a phrase are optional
+        assertEquals(engine.query("\"lighthouse keeper\""), engine.query("\"lighthouse keeper\" zeppelin"));
+    }
+
+    @Test
+    void proximityTest() {
+        // the documents with adjacent terms get the full proximity boost
+        var results = engine.query("lighthouse keeper");
+        assertEquals(3, results.size());
+        assertEquals("c.csv", results.get(2).getKey());
+        assertEquals(results.get(0).getValue(), results.get(1).getValue());
+        assert results.get(1).getValue() > results.get(2).getValue();
+        assertEquals(results.subList(0, 2), engine.query("lighthouse keeper", 2));
+    }
+
+    @Test
+    void roundTripTest(@TempDir Path directory) throws IOException {
+        Path indexPath = directory.resolve("lighthouse.idx");
+        engine.save(indexPath.toString());
+        QueryEngine loaded = QueryEngine.load(indexPath.toString());
+        assertEquals(engine.query("\"lighthouse keeper\""), loaded.query("\"lighthouse keeper\""));
+        assertEquals(engine.query("lighthouse keeper"), loaded.query("lighthouse keeper"));
+    }
+
+}
@@ -0,0 +1,92 @@
+package lighthouse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import lighthouse.util.CompressedPostingList;
+import lighthouse.util.PostingCursor;
+import lighthouse.util.PostingList;
+import lighthouse.util.TDMHeader;
+
+class PostingCursorTest {
+
+    // spans several blocks, with gaps large enough to need multi-byte encodings
+    final static int postingCount = 3 * CompressedPostingList.BLOCK_SIZE + 17;
+    static TDMHeader header;
+
+    static int documentID(int index) {
+        return index * 5037 + (index % 5) * 1000;
+    }
+
+    @BeforeAll
+    static void createTDMHeader() {
+        header = new TDMHeader("test");
+        for (int i = 0; i < postingCount; i++) {
+            header.getPostings().add(documentID(i), i % 300 + 1);
+        }
+        header.compress();
+    }
+
+    @Test
+    void decodeTest() {
+        PostingList postings = header.getCompressedPostings().toPostingList();
+        assertEquals(postingCount, postings.size());
+
+        PostingCursor cursor = new PostingCursor(header);
+        for (int i = 0; i < postingCount; i++) {
+            assertEquals(postings.getDocumentID(i), cursor.getDocumentID());
+            assertEquals(documentID(i), cursor.getDocumentID());
+            assertEquals(i % 300 + 1, cursor.getTermCount());
+            cursor.next();
+        }
+        assertTrue(cursor.isExhausted());
+    }
+
+    @Test
+    void advanceTest() {
+        PostingCursor cursor = new PostingCursor(header);
+
+        // skip within the first block, then across whole blocks
+        int[] targets = { 0, 5001, documentID(40) + 1, documentID(300), documentID(300) + 1 };
+        int[] expected = { 0, 1, 41, 300, 301 };
+        for (int t = 0; t < targets.length; t++) {
+            cursor.advance(targets[t]);
+            int i = expected[t];
+            assertEquals(documentID(i), cursor.getDocumentID());
+        }
+
+        cursor.advance(Integer.MAX_VALUE);
+        assertTrue(cursor.isExhausted());
+    }
+
+    @Test
+    void findBlockTest() {
+        // galloping from any block finds the same block as a linear scan
+        CompressedPostingList postings = header.getCompressedPostings();
+        for (int from = 0; from < postings.getBlockCount(); from++) {
+            for (int i = 0; i < postingCount; i += 7) {
+                int target = documentID(i) - 1;
+                int expected = from;
+                while (expected < postings.getBlockCount() && postings.getBlockLastDocument(expected) < target) {
+                    expected++;
+                }
+                assertEquals(expected, postings.findBlock(from, target));
+            }
+        }
+    }
+
+    @Test
+    void skipTest() {
+        // term counts are right after skipping over the postings whose counts were never read
+        PostingCursor cursor = new PostingCursor(header);
+        for (int i = 3; i < postingCount; i += 61) {
+            cursor.advance(documentID(i));
+            assertEquals(documentID(i), cursor.getDocumentID());
+            assertEquals(i % 300 + 1, cursor.getTermCount());
+        }
+    }
+
+}
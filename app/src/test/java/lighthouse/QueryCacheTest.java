@@ -0,0 +1,60 @@
+package lighthouse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import lighthouse.util.QueryCache;
+
+class QueryCacheTest {
+
+    static final List<Map.Entry<String, Double>> results = List.of(Map.entry("038.csv", 1.5));
+
+    @Test
+    void evictionTest() {
+        QueryCache cache = new QueryCache(2);
+        cache.put(List.of("a"), 10, 0, results);
+        cache.put(List.of("b"), 10, 0, results);
+
+        // touching "a" makes "b" the least recently used entry
+        assertEquals(results, cache.get(List.of("a"), 10, 0));
+        cache.put(List.of("c"), 10, 0, results);
+
+        assertNull(cache.get(List.of("b"), 10, 0));
+        assertEquals(results, cache.get(List.of("a"), 10, 0));
+        assertNull(cache.get(List.of("a"), 5, 0));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    void generationTest() {
+        QueryCache cache = new QueryCache(10);
+        cache.put(List.of("a"), 10, 0, results);
+        assertEquals(1, cache.size());
+
+        // a newer index generation drops everything cached before it
+        assertNull(cache.get(List.of("a"), 10, 1));
+        assertEquals(0, cache.size());
+
+        // results computed on an older generation are not cached
+        cache.put(List.of("a"), 10, 0, results);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void engineTest() {
+        QueryEngine engine = new QueryEngine("..\\tokens");
+        var first = engine.query("Spaghetti!", 10);
+        var second = engine.query("spaghetti", 10);
+        assertSame(first, second);
+        assertEquals(1, engine.getCache().getHits());
+    }
+
+}
@@ -0,0 +1,72 @@
+package lighthouse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+/**
+ * QueryFixtures holds the queries that other ways of building or serving the index are checked with,
+ * and the index loaded from the token files that they are expected to agree with.
+ */
+final class QueryFixtures {
+
+    /** Queries of every kind: ranked, required and excluded terms, phrases, prefixes, unknown and stop words */
+    static final List<String> queries = List.of("program", "history music", "computer water game",
+            "spaghetti sauce", "+science student", "history -music", "music -\"world war\"", "\"world war\"",
+            "comput*", "zzzqqq", "the");
+
+    private static QueryEngine engine;
+
+    private QueryFixtures() {
+    }
+
+    /**
+     * Obtains the index loaded from the token files, which is shared by the tests that only query it
+     * @return index of the token files
+     */
+    static synchronized QueryEngine engine() {
+        if (engine == null) {
+            engine = new QueryEngine("..\\tokens");
+        }
+        return engine;
+    }
+
+    /**
+     * Checks that two indexes return the same results, both unlimited and top k, for every query
+     * @param expected index giving the expected results
+     * @param actual index under test
+     * @param ks numbers of top results to be compared
+     */
+    static void assertSameResults(SearchIndex expected, SearchIndex actual, int... ks) {
+        for (String query : queries) {
+            assertEquals(expected.query(query), actual.query(query), query);
+            assertSameTopResults(expected, actual, query, ks);
+        }
+    }
+
+    /**
+     * Checks that two indexes return the same top k results for every query, as is expected of indexes
+     * that only differ in how they rank top k queries
+     * @param expected index giving the expected results
+     * @param actual index under test
+     * @param ks numbers of top results to be compared
+     */
+    static void assertSameTopResults(SearchIndex expected, SearchIndex actual, int... ks) {
+        for (String query : queries) {
+            assertSameTopResults(expected, actual, query, ks);
+        }
+    }
+
+    /**
+     * Checks that two indexes return the same top k results for a query
+     * @param expected index giving the expected results
+     * @param actual index under test
+     * @param query query to be compared
+     * @param ks numbers of top results to be compared
+     */
+    private static void assertSameTopResults(SearchIndex expected, SearchIndex actual, String query, int... ks) {
+        for (int k : ks) {
+            assertEquals(expected.query(query, k), actual.query(query, k), query + " " + k);
+        }
+    }
+}
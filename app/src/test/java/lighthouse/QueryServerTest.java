@@ -0,0 +1,96 @@
+package lighthouse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class QueryServerTest {
+
+    static QueryEngine engine;
+    static QueryServer server;
+    static HttpClient client;
+
+    @BeforeAll
+    static void startServer() throws IOException {
+        engine = new QueryEngine("..\\tokens");
+        server = new QueryServer(engine, 0, 4, 10);
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop();
+    }
+
+    static HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        URI uri = URI.create("http://localhost:" + server.getPort() + path);
+        return client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void searchTest() throws IOException, InterruptedException {
+        var response = get("/search?q=spaghetti%20sauce&k=3");
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("application/json"));
+        // the documents are listed in the order of the engine's ranking
+        StringBuilder expected = new StringBuilder();
+        for (var entry : engine.query("spaghetti sauce", 3)) {
+            expected.append("{\"document\":\"").append(entry.getKey()).append("\",\"score\":")
+                    .append(entry.getValue()).append('}');
+        }
+        assertTrue(response.body().startsWith("{\"query\":\"spaghetti sauce\",\"k\":3,\"results\":["));
+        assertTrue(response.body().contains(expected.toString().replace("}{", "},{")));
+    }
+
+    @Test
+    void errorTest() throws IOException, InterruptedException {
+        assertEquals(400, get("/search").statusCode());
+        assertEquals(400, get("/search?q=+").statusCode());
+        assertEquals(400, get("/search?q=spaghetti&k=0").statusCode());
+        assertEquals(400, get("/search?q=spaghetti&k=ten").statusCode());
+        assertEquals(200, get("/health").statusCode());
+    }
+
+    @Test
+    void concurrentTest() throws Exception {
+        // queries from many clients at once get the same answers as queries made one at a time
+        String[] queries = { "program", "history music", "computer water game", "science student world food" };
+        List<String> expected = new ArrayList<>();
+        for (String query : queries) {
+            expected.add(get("/search?q=" + query.replace(' ', '+')).body());
+        }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String query = queries[i % queries.length];
+                responses.add(executor.submit(() -> get("/search?q=" + query.replace(' ', '+'))));
+            }
+            for (int i = 0; i < responses.size(); i++) {
+                assertEquals(expected.get(i % queries.length), responses.get(i).get().body());
+            }
+        }
+    }
+
+    @Test
+    void escapeTest() {
+        StringBuilder json = new StringBuilder();
+        QueryServer.appendString(json, "a \"b\"\\c\n\u0001");
+        assertEquals("\"a \\\"b\\\"\\\\c\\n\\u0001\"", json.toString());
+    }
+
+}
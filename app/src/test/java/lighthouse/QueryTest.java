@@ -31,4 +31,35 @@ class QueryTest {
         var testResult = result.stream().filter(r -> r.getKey().equals("038.csv")).findAny();
         assertEquals(true, testResult.isPresent());
     }
+
+    @Test
+    void topKTest() {
+        var allResults = engine.query("python java code program");
+        for (int k : new int[] { 1, 3, 10, allResults.size() + 5 }) {
+            var topResults = engine.query("python java code program", k);
+            assertEquals(allResults.subList(0, Math.min(k, allResults.size())), topResults);
+        }
+    }
+
+    @Test
+    void largeKTest() {
+        // the ranking only grows with the documents found, however many are asked for
+        var allResults = engine.query("spaghetti");
+        assertEquals(allResults, engine.query("spaghetti", Integer.MAX_VALUE - 8));
+        assertEquals(allResults, engine.query("spaghetti", 10_000_000));
+    }
+
+    @Test
+    void prefixTest() {
+        // every document matching a term also matches a prefix of it
+        var exactResults = engine.query("spaghetti");
+        var prefixResults = engine.query("spag*");
+        for (var exactResult : exactResults) {
+            assertEquals(true, prefixResults.stream().anyMatch(r -> r.getKey().equals(exactResult.getKey())));
+        }
+
+        var programResults = engine.query("program*");
+        assert programResults.size() > engine.query("program").size();
+        assertEquals(programResults.subList(0, 3), engine.query("program*", 3));
+    }
 }
@@ -0,0 +1,60 @@
+package lighthouse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ShardTest {
+
+    static QueryEngine engine;
+    static ShardedQueryEngine sharded;
+
+    @BeforeAll
+    static void createQueryEngines() {
+        engine = QueryFixtures.engine();
+        sharded = new ShardedQueryEngine("..\\tokens", 3);
+    }
+
+    @Test
+    void statisticsTest() {
+        assertEquals(engine.getNumDocuments(), sharded.getNumDocuments());
+        assertEquals(engine.getTotalDocumentLengths(), sharded.getTotalDocumentLengths());
+        assertEquals(engine.getMetrics().getTermCount(), sharded.getMetrics().getTermCount());
+        assertEquals(engine.getMetrics().getPostingCount(), sharded.getMetrics().getPostingCount());
+    }
+
+    @Test
+    void resultsTest() {
+        // shards weight their documents with the statistics of the whole corpus, so nothing changes
+        QueryFixtures.assertSameResults(engine, sharded, 1, 10, 100);
+    }
+
+    @Test
+    void moreShardsThanDocumentsTest(@TempDir Path corpus, @TempDir Path tokens) throws IOException {
+        Files.writeString(corpus.resolve("a.html"), "<p>The lighthouse keeper lit the lamp</p>");
+        Files.writeString(corpus.resolve("b.html"), "<p>The lighthouse museum keeps an old lamp</p>");
+        Files.writeString(corpus.resolve("c.html"), "<p>The keeper of the museum</p>");
+        Tokenizer.tokenize(corpus.toString(), tokens.toString(), Tokenizer.ExecutorMode.SERIAL);
+        QueryEngine single = new QueryEngine(tokens.toString());
+        ShardedQueryEngine empty = new ShardedQueryEngine(tokens.toString(), 8);
+        for (String query : List.of("lighthouse lamp", "+keeper -museum", "\"lighthouse museum\"")) {
+            assertEquals(single.query(query), empty.query(query), query);
+            assertEquals(single.query(query, 1), empty.query(query, 1), query);
+        }
+    }
+
+    @Test
+    void unsupportedTest() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedQueryEngine("..\\tokens", 0));
+        assertThrows(IllegalArgumentException.class, () -> sharded.useImpacts(4));
+    }
+
+}
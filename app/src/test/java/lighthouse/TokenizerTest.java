@@ -1,14 +1,20 @@
 package lighthouse;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Set;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class TokenizerTest {
+
     @Test
     void testLoadStoplist() throws IOException {
         Set<String> stoplist = Tokenizer.loadStoplist(Tokenizer.STOPLIST_PATH);
@@ -27,4 +33,65 @@ class TokenizerTest {
         int outfileCount = outputDir.list().length;
         assertEquals(infileCount, outfileCount);
     }
+
+    @Test
+    void testExecutorModes(@TempDir Path serial, @TempDir Path forkJoin) throws IOException {
+        // every executor writes the same token files as tokenizing one file at a time
+        Tokenizer.tokenize("..\\corpus", serial.toString(), Tokenizer.ExecutorMode.SERIAL);
+        Tokenizer.tokenize("..\\corpus", forkJoin.toString(), Tokenizer.ExecutorMode.FORK_JOIN);
+        File[] tokenFiles = serial.toFile().listFiles();
+        assertEquals(new File("..\\corpus").list().length, tokenFiles.length);
+        for (File tokenFile : tokenFiles) {
+            assertEquals(Files.readString(tokenFile.toPath()),
+                    Files.readString(forkJoin.resolve(tokenFile.getName())), tokenFile.getName());
+        }
+    }
+
+    @Test
+    void testFromCorpus(@TempDir Path tokens, @TempDir Path export) throws IOException {
+        Tokenizer.tokenize("..\\corpus", tokens.toString());
+        QueryEngine loaded = new QueryEngine(tokens.toString());
+
+        // tokenizing straight into the index builds the same index, with or without shards
+        QueryEngine tokenized = QueryEngine.fromCorpus("..\\corpus", export.toString());
+        ShardedQueryEngine sharded = ShardedQueryEngine.fromCorpus("..\\corpus", null, 3);
+        QueryFixtures.assertSameResults(loaded, tokenized, 10);
+        QueryFixtures.assertSameResults(loaded, sharded, 10);
+
+        // exported token files are those written by tokenize
+        for (File tokenFile : tokens.toFile().listFiles()) {
+            assertEquals(Files.readString(tokenFile.toPath()),
+                    Files.readString(export.resolve(tokenFile.getName())), tokenFile.getName());
+        }
+    }
+
+    @Test
+    void testUpdateFromCorpus(@TempDir Path corpus, @TempDir Path tokens, @TempDir Path state) throws IOException {
+        String manifest = state.resolve("manifest.csv").toString();
+        Files.writeString(corpus.resolve("a.html"), "<html><body>lighthouse keeper lighthouse</body></html>");
+        Files.writeString(corpus.resolve("b.html"), "<html><body>lighthouse museum museum</body></html>");
+        Files.writeString(corpus.resolve("c.html"), "<html><body>keeper island</body></html>");
+
+        CorpusChanges changes = Tokenizer.findChanges(corpus.toString(), tokens.toString(), manifest);
+        assertEquals(3, changes.getUpdatedFiles().size());
+        QueryEngine updated = QueryEngine.fromCorpus(corpus.toString(), null);
+        updated.setCorpusFingerprint(changes.getFingerprint());
+
+        Files.delete(corpus.resolve("b.html"));
+        Files.writeString(corpus.resolve("c.html"), "<html><body>museum island island</body></html>");
+        Files.writeString(corpus.resolve("d.html"), "<html><body>keeper museum lighthouse</body></html>");
+        changes = Tokenizer.findChanges(corpus.toString(), tokens.toString(), manifest);
+        assertEquals(List.of("c.csv", "d.csv"), changes.getUpdatedDocuments());
+        // without token files, the terms of the removed document are unknown
+        assertTrue(changes.getPreviousTerms().containsKey("b.csv"));
+        assertEquals(updated.getCorpusFingerprint(), changes.getPreviousFingerprint());
+        updated.updateFromCorpus(changes, null);
+
+        QueryEngine rebuilt = QueryEngine.fromCorpus(corpus.toString(), null);
+        for (String query : List.of("lighthouse", "keeper", "museum", "island", "keeper museum")) {
+            assertEquals(rebuilt.query(query), updated.query(query), query);
+        }
+        assertEquals(0, tokens.toFile().list().length);
+        assertTrue(Tokenizer.findChanges(corpus.toString(), tokens.toString(), manifest).isEmpty());
+    }
 }
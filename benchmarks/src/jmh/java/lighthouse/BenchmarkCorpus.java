@@ -0,0 +1,65 @@
+package lighthouse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * The BenchmarkCorpus class locates the corpus the benchmarks run on and prepares the token files
+ * that the QueryEngine is built from.
+ */
+final class BenchmarkCorpus {
+    /** system property holding the path of the corpus directory */
+    static final String CORPUS_PROPERTY = "lighthouse.benchmark.corpus";
+
+    /**
+     * Private default constructor, as BenchmarkCorpus only has static methods
+     */
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * Obtains the corpus directory, given by CORPUS_PROPERTY or INPUT_DIR by default
+     * @return directory containing the corpus documents
+     */
+    static File directory() {
+        return new File(System.getProperty(CORPUS_PROPERTY, Tokenizer.INPUT_DIR));
+    }
+
+    /**
+     * Tokenizes the corpus into a new temporary directory
+     * @return directory containing one token file per document
+     * @throws IOException if the temporary directory cannot be created
+     */
+    static Path tokenize() throws IOException {
+        Path tokens = Files.createTempDirectory("lighthouse-tokens");
+        Tokenizer.tokenize(directory().getPath(), tokens.toString(), Tokenizer.ExecutorMode.SERIAL);
+        return tokens;
+    }
+
+    /**
+     * Deletes a directory created by tokenize() along with its token files
+     * @param tokens directory to be deleted
+     * @throws IOException if a file cannot be deleted
+     */
+    static void delete(Path tokens) throws IOException {
+        try (Stream<Path> paths = Files.walk(tokens)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Discards standard output. Index builds and queries report their progress there, and printing
+     * it would otherwise be measured along with the work itself.
+     */
+    static void silenceOutput() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+}
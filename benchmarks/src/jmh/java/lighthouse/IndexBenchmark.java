@@ -0,0 +1,117 @@
+package lighthouse;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import lighthouse.util.PostingCursor;
+import lighthouse.util.PostingList;
+import lighthouse.util.TDMHeader;
+import lighthouse.util.TDMNode;
+
+/**
+ * The IndexBenchmark class measures building the QueryEngine from the token files of the corpus,
+ * and traversing every posting of the finished index. Traversing the same postings decoded into plain
+ * PostingList arrays is measured as the baseline the compressed form is compared against.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class IndexBenchmark {
+    private Path tokens;
+    private QueryEngine engine;
+    private List<PostingList> postingLists;
+
+    /**
+     * Tokenizes the corpus, builds the index traversed by the iteration benchmarks and decodes
+     * its postings for the uncompressed baseline
+     * @throws IOException if the token files cannot be written
+     */
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkCorpus.silenceOutput();
+        tokens = BenchmarkCorpus.tokenize();
+        engine = new QueryEngine(tokens.toString());
+        postingLists = new ArrayList<>();
+        for (TDMHeader header : engine.getDictionary().getHeaders()) {
+            postingLists.add(header.getCompressedPostings().toPostingList());
+        }
+    }
+
+    /**
+     * Deletes the token files
+     * @throws IOException if the token files cannot be deleted
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkCorpus.delete(tokens);
+    }
+
+    /**
+     * Builds a QueryEngine from the token files
+     * @return new QueryEngine
+     */
+    @Benchmark
+    public QueryEngine buildEngine() {
+        return new QueryEngine(tokens.toString());
+    }
+
+    /**
+     * Iterates over every posting of every term as TDMNode objects
+     * @return sum of all term counts
+     */
+    @Benchmark
+    public long iterateHeaders() {
+        long sum = 0;
+        for (TDMHeader header : engine.getDictionary().getHeaders()) {
+            for (TDMNode node : header) {
+                sum += node.getTermCount();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Iterates over every posting of every term with a PostingCursor, as queries do
+     * @return sum of all term counts
+     */
+    @Benchmark
+    public long scanCursors() {
+        long sum = 0;
+        for (TDMHeader header : engine.getDictionary().getHeaders()) {
+            PostingCursor cursor = new PostingCursor(header);
+            while (!cursor.isExhausted()) {
+                sum += cursor.getTermCount();
+                cursor.next();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Iterates over every posting of every term in uncompressed PostingList form, the baseline
+     * for scanCursors
+     * @return sum of all term counts
+     */
+    @Benchmark
+    public long scanPostingLists() {
+        long sum = 0;
+        for (PostingList postings : postingLists) {
+            for (int i = 0; i < postings.size(); i++) {
+                sum += postings.getTermCount(i);
+            }
+        }
+        return sum;
+    }
+}
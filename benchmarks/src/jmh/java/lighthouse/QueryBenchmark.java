@@ -0,0 +1,118 @@
+package lighthouse;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The QueryBenchmark class measures the latency of queries of 1, 3 and 10 terms against an index of
+ * the corpus, as optional terms, as required terms and as a phrase. The query cache is disabled, so every call evaluates the query.
+ * The index is either a single one or split into four shards ranked in parallel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueryBenchmark {
+    /** query terms, each occurring in between 17 and 44 documents of the corpus */
+    private static final String[] TERMS = { "program", "history", "music", "computer", "water", "game",
+        "science", "student", "world", "food" };
+
+    /** number of terms of the query */
+    @Param({ "1", "3", "10" })
+    public int termCount;
+
+    /** number of shards of the index */
+    @Param({ "1", "4" })
+    public int shardCount;
+
+    /** bits of the impacts of the postings, or 0 to rank exactly */
+    @Param({ "0", "16" })
+    public int impactBits;
+
+    private Path tokens;
+    private SearchIndex engine;
+    private String query;
+    private String conjunction;
+    private String phrase;
+
+    /**
+     * Builds the index and the query
+     * @throws IOException if the token files cannot be written
+     */
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkCorpus.silenceOutput();
+        System.setProperty(QueryEngine.CACHE_SIZE_PROPERTY, "0");
+        tokens = BenchmarkCorpus.tokenize();
+        if (shardCount == 1) {
+            QueryEngine single = new QueryEngine(tokens.toString());
+            single.useImpacts(impactBits);
+            engine = single;
+        } else {
+            ShardedQueryEngine sharded = new ShardedQueryEngine(tokens.toString(), shardCount);
+            sharded.useImpacts(impactBits);
+            engine = sharded;
+        }
+        query = String.join(" ", Arrays.copyOf(TERMS, termCount));
+        conjunction = ParsedQuery.REQUIRED + String.join(" " + ParsedQuery.REQUIRED, Arrays.copyOf(TERMS, termCount));
+        phrase = '"' + query + '"';
+    }
+
+    /**
+     * Deletes the token files
+     * @throws IOException if the token files cannot be deleted
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkCorpus.delete(tokens);
+    }
+
+    /**
+     * Ranks every document matching the query
+     * @return all matching documents and weights
+     */
+    @Benchmark
+    public List<Entry<String, Double>> query() {
+        return engine.query(query);
+    }
+
+    /**
+     * Finds the ten best documents for the query
+     * @return ten best documents and weights
+     */
+    @Benchmark
+    public List<Entry<String, Double>> queryTopTen() {
+        return engine.query(query, 10);
+    }
+
+    /**
+     * Finds the ten best documents containing every query term
+     * @return ten best documents and weights
+     */
+    @Benchmark
+    public List<Entry<String, Double>> queryConjunctionTopTen() {
+        return engine.query(conjunction, 10);
+    }
+
+    /**
+     * Finds the ten best documents containing the query terms as a phrase
+     * @return ten best documents and weights
+     */
+    @Benchmark
+    public List<Entry<String, Double>> queryPhraseTopTen() {
+        return engine.query(phrase, 10);
+    }
+}
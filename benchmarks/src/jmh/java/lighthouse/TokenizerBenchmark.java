@@ -0,0 +1,54 @@
+package lighthouse;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import lighthouse.util.TermCounts;
+
+/**
+ * The TokenizerBenchmark class measures the time taken to tokenize a single corpus page, from a 1 KB
+ * page up to the largest pages of the corpus, with each of the text extractors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TokenizerBenchmark {
+    /** corpus page to be tokenized: 1 KB, 590 KB and 2.6 MB */
+    @Param({ "024.html", "069.html", "050.html" })
+    public String document;
+
+    /** strategy used to extract the text of the page */
+    @Param({ "STREAMING", "DOM" })
+    public Tokenizer.ExtractorMode extractor;
+
+    private File file;
+
+    /**
+     * Locates the page to be tokenized
+     */
+    @Setup
+    public void setUp() {
+        file = new File(BenchmarkCorpus.directory(), document);
+        if (!file.isFile()) {
+            throw new IllegalStateException("Missing corpus page " + file);
+        }
+    }
+
+    /**
+     * Tokenizes the page and counts its terms
+     * @return counts of the terms of the page
+     */
+    @Benchmark
+    public TermCounts tokenizeFile() {
+        return Tokenizer.tokenizeFile(file, extractor);
+    }
+}